@@ -0,0 +1,135 @@
+package ca.uqam.latece.aspects.extractor.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.uqam.latece.aspects.extractor.lattice.LatticeBuilder;
+import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.RelationImpl;
+import ca.uqam.latece.aspects.extractor.tests.relations.TestRelations;
+
+/**
+ * JMH benchmarks of the lattice construction, on synthetic relations (see
+ * <code>TestRelations.buildRandomRelation()</code>) whose number of objects,
+ * number of attributes, density and seed are parameters, so that every
+ * optimisation can be measured on the same workloads.
+ *
+ * <code>buildLattice</code> measures the construction of the whole lattice.
+ * <code>add</code> measures the incremental addition of the last object of
+ * the relation to the lattice of the other objects, which is rebuilt before
+ * every invocation (see <code>AddFixture</code>), outside of the measured
+ * time. The GC profiler counts the allocations of the whole iteration though,
+ * so the allocation figures of <code>add</code> include those of the rebuild:
+ * compare them with those of <code>buildLattice</code>, which has no
+ * per-invocation setup, to tell them apart. The algorithm is a parameter
+ * too (see <code>LatticeBuilder.Algorithm</code>); the batch algorithms
+ * inherit the <code>add</code> of Godin et al.'s algorithm, so the incremental
+ * ones are the interesting ones for <code>add</code>.
+ *
+ * Run them with <code>RunBenchmarks</code>, which adds the GC profiler, to get
+ * the allocation rate along with the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LatticeConstructionBenchmark {
+
+	@Param({ "GODIN", "GODIN_BITSET", "ADD_INTENT" })
+	public String algorithm;
+
+	@Param({ "200" })
+	public int objects;
+
+	@Param({ "40" })
+	public int attributes;
+
+	@Param({ "0.15" })
+	public double density;
+
+	@Param({ "1" })
+	public long seed;
+
+	private LatticeBuilder builder;
+
+	private Relation relation;
+
+	/**
+	 * the relation without its last object, and that object with its image,
+	 * for the add benchmark
+	 */
+	private Relation relationButLast;
+
+	private Object lastObject;
+
+	private Set<Object> lastImage;
+
+	/**
+	 * the lattice that add modifies, in a state of its own so that
+	 * buildLattice does not rebuild it too
+	 */
+	@State(Scope.Thread)
+	public static class AddFixture {
+
+		/**
+		 * the lattice of relationButLast, rebuilt before every add
+		 */
+		private Lattice latticeButLast;
+
+		@Setup(Level.Invocation)
+		public void buildLatticeButLast(LatticeConstructionBenchmark benchmark) {
+			latticeButLast = benchmark.builder.buildLattice(benchmark.relationButLast, null);
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void createRelations() {
+		builder = LatticeBuilder.newLatticeBuilder(LatticeBuilder.Algorithm.valueOf(algorithm));
+		relation = TestRelations.buildRandomRelation(objects, attributes, density, seed);
+
+		// same relation, without its last object
+		List<Object> domain = new ArrayList<Object>(relation.getDomain());
+		lastObject = domain.get(domain.size() - 1);
+		lastImage = relation.getImage(lastObject);
+		relationButLast = new RelationImpl(null);
+		for (Object object : domain) {
+			if (object.equals(lastObject))
+				continue;
+			relationButLast.addToDomain(object);
+			for (Object attribute : relation.getImage(object))
+				relationButLast.addRelation(object, attribute);
+		}
+	}
+
+	@Benchmark
+	public Lattice buildLattice() {
+		return builder.buildLattice(relation, null);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Lattice add(AddFixture fixture) {
+		builder.add(fixture.latticeButLast, lastObject, lastImage);
+		return fixture.latticeButLast;
+	}
+
+}
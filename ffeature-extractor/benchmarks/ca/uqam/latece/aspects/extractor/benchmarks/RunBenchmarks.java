@@ -0,0 +1,40 @@
+package ca.uqam.latece.aspects.extractor.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * runs the benchmarks of this folder with the GC profiler, which reports the
+ * allocation rate (gc.alloc.rate and gc.alloc.rate.norm, i.e. bytes per
+ * operation) next to the throughput. The usual JMH options may be given on
+ * the command line, e.g. to change the size of the relations:
+ *
+ * <pre>
+ * RunBenchmarks LatticeConstructionBenchmark -p objects=400,800 -p attributes=60 -p density=0.1
+ * </pre>
+ *
+ * The classpath must hold the classes of the extractor, the jars of lib/, and
+ * those of JMH (jmh-core, jopt-simple and commons-math3), and the benchmarks
+ * must be compiled with the JMH annotation processor
+ * (jmh-generator-annprocess) on the classpath, so that it generates the
+ * benchmark list that the runner reads.
+ */
+public class RunBenchmarks {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.parent(commandLine);
+		if (commandLine.getIncludes().isEmpty())
+			builder.include(RunBenchmarks.class.getPackage().getName() + ".*");
+		builder.addProfiler(GCProfiler.class);
+		Options options = builder.build();
+		new Runner(options).run();
+	}
+
+}
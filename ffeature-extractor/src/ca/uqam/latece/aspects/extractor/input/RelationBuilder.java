@@ -1,5 +1,7 @@
 package ca.uqam.latece.aspects.extractor.input;
 
+import java.util.Collections;
+
 import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
 
 import org.eclipse.core.resources.IProject;
@@ -8,4 +10,27 @@ public interface RelationBuilder {
 	
 	public Relation buildRelationFrom(IProject aJavaProject);
 
+	/**
+	 * extracts the same relation as buildRelationFrom(), but hands its rows to
+	 * aSink as soon as they are complete, without building the relation. By
+	 * default, the relation is built, and its rows are then handed over one
+	 * by one: builders that can do better override this. If there is no
+	 * relation (e.g. the project is not a Java project), aSink gets an empty
+	 * one
+	 * @param aJavaProject
+	 * @param aSink
+	 */
+	public default void buildRelationFrom(IProject aJavaProject, RelationSink aSink) {
+		Relation relation = buildRelationFrom(aJavaProject);
+		if (relation == null) {
+			aSink.relationStarted(this, Collections.emptySet());
+			aSink.relationCompleted();
+			return;
+		}
+		aSink.relationStarted(this, relation.getAllImages());
+		for (Object domainElement : relation.getDomain())
+			aSink.rowCompleted(domainElement, relation.getImage(domainElement));
+		aSink.relationCompleted();
+	}
+
 }
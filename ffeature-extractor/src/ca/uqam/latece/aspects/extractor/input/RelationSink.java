@@ -0,0 +1,41 @@
+package ca.uqam.latece.aspects.extractor.input;
+
+import java.util.Set;
+
+/**
+ * receives a relation one row at a time, as a <code>RelationBuilder</code>
+ * completes the rows (e.g. the cumulative interface of a type), instead of the
+ * whole relation at the end. A sink can then build the lattice while the rows
+ * are still being extracted (see <code>LatticeBuildingSink</code>).
+ *
+ * The calls are never concurrent: relationStarted() first, then
+ * rowCompleted() once per element of the domain, then relationCompleted()
+ */
+public interface RelationSink {
+
+	/**
+	 * called once, before the first row
+	 *
+	 * @param aBuilder
+	 *            the builder that extracts the relation
+	 * @param allImages
+	 *            all the elements that the rows may contain (e.g. the
+	 *            methods), which the incremental builders need up front
+	 */
+	public void relationStarted(RelationBuilder aBuilder, Set<Object> allImages);
+
+	/**
+	 * called once per element of the domain. The image is not modified
+	 * afterwards, but the sink should not keep it
+	 *
+	 * @param domainElement
+	 * @param image
+	 */
+	public void rowCompleted(Object domainElement, Set<Object> image);
+
+	/**
+	 * called once, after the last row
+	 */
+	public void relationCompleted();
+
+}
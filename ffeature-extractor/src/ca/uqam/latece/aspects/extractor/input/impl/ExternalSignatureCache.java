@@ -0,0 +1,217 @@
+package ca.uqam.latece.aspects.extractor.input.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * the similarity keys (see <code>ReverseInheritanceRelationBuilder.similarityKey()</code>)
+ * of the methods of the types of the libraries (the jars, the JDK), which are
+ * the ancestors outside the project of nearly every type (e.g.
+ * <code>java.lang.Object</code>). The keys of a library type are computed once,
+ * and shared by all the builders and all the extractions.
+ *
+ * The keys are stored by library (its path and its time stamp) and by type
+ * (its fully qualified name), so they can be saved to a file, and loaded in
+ * the next session (see save() and load()): the libraries that have changed in
+ * between are left out when loading. The types of source folders (of this
+ * project or of another one) may change at any time, so their keys are not
+ * kept here.
+ */
+public class ExternalSignatureCache {
+
+	private static final int MAGIC = 0x53494753;
+
+	private static final int VERSION = 1;
+
+	private static ExternalSignatureCache defaultCache = new ExternalSignatureCache();
+
+	/**
+	 * the keys, by library and by type
+	 */
+	private ConcurrentMap<Library, Map<String, Set<String>>> libraries = new ConcurrentHashMap<Library, Map<String, Set<String>>>();
+
+	/**
+	 * a library, as of a time stamp
+	 */
+	private static class Library {
+
+		private String path;
+
+		private long timeStamp;
+
+		private Library(String path, long timeStamp) {
+			this.path = path;
+			this.timeStamp = timeStamp;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Library))
+				return false;
+			Library other = (Library) obj;
+			return timeStamp == other.timeStamp && path.equals(other.path);
+		}
+
+		@Override
+		public int hashCode() {
+			return path.hashCode() ^ (int) (timeStamp ^ (timeStamp >>> 32));
+		}
+	}
+
+	/**
+	 * returns the cache that the relation builders use by default
+	 *
+	 * @return
+	 */
+	public static ExternalSignatureCache getDefault() {
+		return defaultCache;
+	}
+
+	/**
+	 * returns the similarity keys of the methods of aType. They are cached if
+	 * aType comes from a library, and computed again otherwise. Callers must
+	 * NOT modify them
+	 *
+	 * @param aType
+	 * @return
+	 * @throws JavaModelException
+	 */
+	public Set<String> similarityKeysOf(IType aType) throws JavaModelException {
+		Library library = libraryOf(aType);
+		if (library == null)
+			return computeKeys(aType);
+		Map<String, Set<String>> types = libraries.get(library);
+		if (types == null) {
+			libraries.putIfAbsent(library, new ConcurrentHashMap<String, Set<String>>());
+			types = libraries.get(library);
+		}
+		String name = aType.getFullyQualifiedName();
+		Set<String> keys = types.get(name);
+		if (keys == null) {
+			// two threads may compute the same keys: they are equal anyway
+			keys = Collections.unmodifiableSet(computeKeys(aType));
+			types.put(name, keys);
+		}
+		return keys;
+	}
+
+	private static Set<String> computeKeys(IType aType) throws JavaModelException {
+		Set<String> keys = new HashSet<String>();
+		for (IMethod method : aType.getMethods())
+			keys.add(ReverseInheritanceRelationBuilder.similarityKey(method));
+		return keys;
+	}
+
+	/**
+	 * returns the library of aType, as of now, or null if aType comes from a
+	 * source folder
+	 */
+	private static Library libraryOf(IType aType) throws JavaModelException {
+		IPackageFragmentRoot root = (IPackageFragmentRoot) aType.getAncestor(IJavaElement.PACKAGE_FRAGMENT_ROOT);
+		if (root == null || root.getKind() != IPackageFragmentRoot.K_BINARY)
+			return null;
+		// a library of the workspace has a resource, an external one only a
+		// path in the file system
+		IResource resource = root.getResource();
+		File file = resource != null && resource.getLocation() != null ? resource.getLocation().toFile() : root
+				.getPath().toFile();
+		return new Library(file.getAbsolutePath(), file.lastModified());
+	}
+
+	public void clear() {
+		libraries.clear();
+	}
+
+	/**
+	 * adds the keys saved in aFile (see save()) to those of the cache, except
+	 * those of the libraries that have changed since, or no longer exist. Does
+	 * nothing if aFile does not exist
+	 *
+	 * @param aFile
+	 * @throws IOException
+	 */
+	public void load(File aFile) throws IOException {
+		if (!aFile.exists())
+			return;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(aFile)));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException(aFile + " is not a signature cache");
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException(aFile + ": unsupported version " + version);
+			int numberOfLibraries = in.readInt();
+			for (int i = 0; i < numberOfLibraries; i++) {
+				Library library = new Library(in.readUTF(), in.readLong());
+				boolean current = new File(library.path).lastModified() == library.timeStamp;
+				Map<String, Set<String>> types = new ConcurrentHashMap<String, Set<String>>();
+				int numberOfTypes = in.readInt();
+				for (int j = 0; j < numberOfTypes; j++) {
+					String name = in.readUTF();
+					Set<String> keys = new HashSet<String>();
+					int numberOfKeys = in.readInt();
+					for (int k = 0; k < numberOfKeys; k++)
+						keys.add(in.readUTF());
+					types.put(name, Collections.unmodifiableSet(keys));
+				}
+				if (current)
+					libraries.putIfAbsent(library, types);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * saves the keys of the cache to aFile, for load()
+	 *
+	 * @param aFile
+	 * @throws IOException
+	 */
+	public void save(File aFile) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(aFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			// a snapshot, since other threads may add libraries meanwhile
+			Map<Library, Map<String, Set<String>>> snapshot = new HashMap<Library, Map<String, Set<String>>>(
+					libraries);
+			out.writeInt(snapshot.size());
+			for (Map.Entry<Library, Map<String, Set<String>>> library : snapshot.entrySet()) {
+				out.writeUTF(library.getKey().path);
+				out.writeLong(library.getKey().timeStamp);
+				Map<String, Set<String>> types = new HashMap<String, Set<String>>(library.getValue());
+				out.writeInt(types.size());
+				for (Map.Entry<String, Set<String>> type : types.entrySet()) {
+					out.writeUTF(type.getKey());
+					out.writeInt(type.getValue().size());
+					for (String key : type.getValue())
+						out.writeUTF(key);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+}
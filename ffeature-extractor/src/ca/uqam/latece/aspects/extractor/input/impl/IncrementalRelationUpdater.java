@@ -0,0 +1,317 @@
+package ca.uqam.latece.aspects.extractor.input.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+
+import ca.uqam.latece.aspects.extractor.lattice.LatticeBuilder;
+import ca.uqam.latece.aspects.extractor.lattice.impl.FCbOLatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.impl.LatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.ReducedLatticeNodeImpl;
+
+/**
+ * keeps a relation extracted by a <code>ReverseInheritanceRelationBuilder</code>,
+ * and its lattice, up to date as the code of the project changes, instead of
+ * extracting the relation and building the lattice again after every edit.
+ *
+ * Once started, the updater listens to the changes of the Java model, and
+ * collects the compilation units of the project that were added, modified or
+ * removed. update() then hands them to the builder (see
+ * <code>ReverseInheritanceRelationBuilder.updateRelation()</code>), which only
+ * computes the interfaces of the types that may have changed, and applies the
+ * rows that changed to the lattice (see
+ * <code>LatticeBuilderImpl.updateRows()</code>). By default, update() runs in
+ * a job, shortly after a change comes (see setAutomatic()): the listener only
+ * collects the changes, and the changes that come while the job waits or runs
+ * are applied together by its next run.
+ *
+ * Some changes still take a full extraction: a change to the class path or to
+ * a library (the methods of the ancestors outside the project may have
+ * changed), or a change that the builder fails to apply. So do the lattices
+ * that cannot be modified in place: those with reduced labels, and the iceberg
+ * lattices, which miss concepts. The lattice is then built again with the
+ * lattice builder.
+ */
+public class IncrementalRelationUpdater implements IElementChangedListener {
+
+	private ReverseInheritanceRelationBuilder builder;
+
+	private Relation relation;
+
+	private LatticeBuilder latticeBuilder;
+
+	private Lattice lattice;
+
+	/**
+	 * how long the job waits for more changes before it applies them, in
+	 * milliseconds
+	 */
+	public static final long UPDATE_DELAY = 500;
+
+	/**
+	 * guards the changes collected so far, which the listener adds to while
+	 * update() applies the previous ones
+	 */
+	private final Object changesLock = new Object();
+
+	/**
+	 * the compilation units that changed since the last update
+	 */
+	private Set<ICompilationUnit> changedUnits = new LinkedHashSet<ICompilationUnit>();
+
+	/**
+	 * the packages removed since the last update, whose units update() looks up
+	 * among the types of the builder
+	 */
+	private Set<IPackageFragment> removedPackages = new LinkedHashSet<IPackageFragment>();
+
+	private boolean fullExtractionNeeded = false;
+
+	private boolean automatic = true;
+
+	private Map<Object, Set<Object>> lastChangedRows = Collections.emptyMap();
+
+	private Job updateJob = new Job("Updating the relation") {
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			update();
+			return Status.OK_STATUS;
+		}
+	};
+
+	/**
+	 * creates an updater for aRelation, which aBuilder extracted, and for
+	 * aLattice, which aLatticeBuilder built from aRelation. aLattice and
+	 * aLatticeBuilder may be null, to keep the relation only
+	 *
+	 * @param aBuilder
+	 * @param aRelation
+	 * @param aLatticeBuilder
+	 * @param aLattice
+	 */
+	public IncrementalRelationUpdater(ReverseInheritanceRelationBuilder aBuilder, Relation aRelation,
+			LatticeBuilder aLatticeBuilder, Lattice aLattice) {
+		builder = aBuilder;
+		relation = aRelation;
+		latticeBuilder = aLatticeBuilder;
+		lattice = aLattice;
+		updateJob.setSystem(true);
+	}
+
+	/**
+	 * starts listening to the changes of the Java model
+	 */
+	public void start() {
+		JavaCore.addElementChangedListener(this, ElementChangedEvent.POST_CHANGE);
+	}
+
+	/**
+	 * stops listening to the changes of the Java model, and drops the type
+	 * hierarchy of the project (see <code>TypeHierarchyIndex.forget()</code>).
+	 * The changes collected so far are left for the next call to update()
+	 */
+	public void stop() {
+		JavaCore.removeElementChangedListener(this);
+		updateJob.cancel();
+		if (builder.getJavaProject() != null)
+			TypeHierarchyIndex.forget(builder.getJavaProject());
+	}
+
+	public boolean isAutomatic() {
+		return automatic;
+	}
+
+	/**
+	 * if automatic is true (the default), the changes are applied by a job,
+	 * UPDATE_DELAY milliseconds after they come. Otherwise, they are only
+	 * collected, and applied by the next call to update(), e.g. once a batch of
+	 * edits is over
+	 *
+	 * @param automatic
+	 */
+	public void setAutomatic(boolean automatic) {
+		this.automatic = automatic;
+	}
+
+	public synchronized Relation getRelation() {
+		return relation;
+	}
+
+	public synchronized Lattice getLattice() {
+		return lattice;
+	}
+
+	/**
+	 * returns the rows that the last update changed (see
+	 * <code>ReverseInheritanceRelationBuilder.updateRelation()</code>), or null
+	 * if it extracted the whole relation again
+	 *
+	 * @return
+	 */
+	public synchronized Map<Object, Set<Object>> getLastChangedRows() {
+		return lastChangedRows;
+	}
+
+	public boolean hasPendingChanges() {
+		synchronized (changesLock) {
+			return fullExtractionNeeded || !changedUnits.isEmpty() || !removedPackages.isEmpty();
+		}
+	}
+
+	/**
+	 * collects the changes, and schedules the job if automatic. The job is
+	 * scheduled once however many changes come before it runs
+	 */
+	@Override
+	public void elementChanged(ElementChangedEvent event) {
+		synchronized (changesLock) {
+			collectChanges(event.getDelta());
+		}
+		if (automatic)
+			updateJob.schedule(UPDATE_DELAY);
+	}
+
+	/**
+	 * collects the compilation units of the project of the builder that
+	 * aDelta reports as changed, or notes that the relation has to be
+	 * extracted again
+	 *
+	 * @param aDelta
+	 */
+	protected void collectChanges(IJavaElementDelta aDelta) {
+		IJavaElement element = aDelta.getElement();
+		int flags = aDelta.getFlags();
+		switch (element.getElementType()) {
+		case IJavaElement.JAVA_MODEL:
+			break;
+		case IJavaElement.JAVA_PROJECT:
+			if (!element.equals(builder.getJavaProject()))
+				return;
+			if (aDelta.getKind() != IJavaElementDelta.CHANGED
+					|| (flags & (IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED)) != 0) {
+				fullExtractionNeeded = true;
+				return;
+			}
+			break;
+		case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+			if (aDelta.getKind() != IJavaElementDelta.CHANGED
+					|| (flags & (IJavaElementDelta.F_ADDED_TO_CLASSPATH | IJavaElementDelta.F_REMOVED_FROM_CLASSPATH
+							| IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED)) != 0) {
+				fullExtractionNeeded = true;
+				return;
+			}
+			break;
+		case IJavaElement.PACKAGE_FRAGMENT:
+			// a package that comes or goes may not report its units
+			if (aDelta.getKind() == IJavaElementDelta.REMOVED)
+				removedPackages.add((IPackageFragment) element);
+			else if (aDelta.getKind() == IJavaElementDelta.ADDED) {
+				try {
+					changedUnits.addAll(Arrays.asList(((IPackageFragment) element).getCompilationUnits()));
+				} catch (JavaModelException e) {
+					fullExtractionNeeded = true;
+				}
+			}
+			break;
+		case IJavaElement.COMPILATION_UNIT:
+			// a unit that only becomes (or stops being) a working copy has not
+			// changed
+			if (aDelta.getKind() != IJavaElementDelta.CHANGED || flags != IJavaElementDelta.F_PRIMARY_WORKING_COPY)
+				changedUnits.add(((ICompilationUnit) element).getPrimary());
+			return;
+		default:
+			return;
+		}
+		for (IJavaElementDelta child : aDelta.getAffectedChildren())
+			collectChanges(child);
+	}
+
+	/**
+	 * applies the changes collected so far to the relation and to the lattice.
+	 * The changes that come meanwhile are left for the next call. If the
+	 * project cannot be extracted anymore (e.g. it was closed, deleted, or
+	 * lost its Java nature), the updater stops, and the relation and the
+	 * lattice become null
+	 */
+	public synchronized void update() {
+		Set<ICompilationUnit> units;
+		Set<IPackageFragment> packages;
+		boolean fullExtraction;
+		synchronized (changesLock) {
+			if (!hasPendingChanges())
+				return;
+			units = new LinkedHashSet<ICompilationUnit>(changedUnits);
+			packages = new LinkedHashSet<IPackageFragment>(removedPackages);
+			fullExtraction = fullExtractionNeeded;
+			changedUnits.clear();
+			removedPackages.clear();
+			fullExtractionNeeded = false;
+		}
+		if (!packages.isEmpty() && builder.getDefinedTypes() != null) {
+			for (IType type : builder.getDefinedTypes()) {
+				if (packages.contains(type.getPackageFragment()))
+					units.add(type.getCompilationUnit());
+			}
+		}
+
+		Map<Object, Set<Object>> changedRows = null;
+		if (!fullExtraction) {
+			try {
+				changedRows = builder.updateRelation(relation, units);
+			} catch (JavaModelException e) {
+				e.printStackTrace();
+			}
+		}
+
+		if (changedRows == null) {
+			relation = builder.buildRelationFrom(builder.getJavaProject().getProject());
+			if (relation == null) {
+				stop();
+				lattice = null;
+				lastChangedRows = null;
+				return;
+			}
+			if (lattice != null)
+				lattice = latticeBuilder.buildLattice(relation, builder);
+		} else if (lattice != null && !changedRows.isEmpty()) {
+			if (isModifiable(lattice))
+				new LatticeBuilderImpl().updateRows(lattice, changedRows, relation.getAllImages());
+			else
+				lattice = latticeBuilder.buildLattice(relation, builder);
+		}
+		lastChangedRows = changedRows;
+	}
+
+	/**
+	 * true if the rows of aLattice can be changed in place. Any builder's
+	 * lattice will do, as long as it has all its concepts, with full labels
+	 *
+	 * @param aLattice
+	 * @return
+	 */
+	protected boolean isModifiable(Lattice aLattice) {
+		if (aLattice.getBottom() instanceof ReducedLatticeNodeImpl)
+			return false;
+		return !(latticeBuilder instanceof FCbOLatticeBuilderImpl)
+				|| !((FCbOLatticeBuilderImpl) latticeBuilder).isIceberg();
+	}
+
+}
@@ -0,0 +1,147 @@
+package ca.uqam.latece.aspects.extractor.input.impl;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import ca.uqam.latece.aspects.extractor.input.RelationBuilder;
+import ca.uqam.latece.aspects.extractor.input.RelationSink;
+
+/**
+ * hands the rows over to another sink on a thread of its own, through a
+ * bounded queue, so that the extraction of the relation (on the calling
+ * thread) and whatever the other sink does with the rows (e.g. build the
+ * lattice) run at the same time. When the queue is full, the extraction waits
+ * for the other sink to catch up.
+ *
+ * relationCompleted() returns once the other sink has received all the rows,
+ * and its own relationCompleted(). If the other sink throws, or its thread is
+ * interrupted, the rows that follow are dropped, and relationCompleted()
+ * throws an <code>IllegalStateException</code> whose cause is what the sink
+ * threw.
+ */
+public class QueuedRelationSink implements RelationSink {
+
+	/**
+	 * the default number of rows that may wait in the queue
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/**
+	 * marks the end of the rows in the queue
+	 */
+	private static final Object[] END = new Object[0];
+
+	/**
+	 * how often a full queue checks that the other sink is still taking rows,
+	 * in milliseconds
+	 */
+	private static final long POLL_INTERVAL = 100;
+
+	private RelationSink sink;
+
+	private int capacity;
+
+	private BlockingQueue<Object[]> queue = null;
+
+	private Thread consumer = null;
+
+	private volatile Throwable failure = null;
+
+	public QueuedRelationSink(RelationSink aSink) {
+		this(aSink, DEFAULT_CAPACITY);
+	}
+
+	public QueuedRelationSink(RelationSink aSink, int capacity) {
+		sink = aSink;
+		this.capacity = Math.max(1, capacity);
+	}
+
+	public RelationSink getSink() {
+		return sink;
+	}
+
+	/**
+	 * starts the thread of the other sink, which receives relationStarted()
+	 * first
+	 */
+	@Override
+	public void relationStarted(final RelationBuilder aBuilder, final Set<Object> allImages) {
+		queue = new ArrayBlockingQueue<Object[]>(capacity);
+		failure = null;
+		consumer = new Thread("relation sink") {
+			@Override
+			public void run() {
+				try {
+					sink.relationStarted(aBuilder, allImages);
+					for (Object[] row = queue.take(); row != END; row = queue.take())
+						sink.rowCompleted(row[0], castImage(row[1]));
+					sink.relationCompleted();
+				} catch (InterruptedException | RuntimeException | Error e) {
+					failure = e;
+					// keep on taking the rows, so that the extraction does not
+					// wait for good
+					drain();
+				}
+			}
+		};
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+	@Override
+	public void rowCompleted(Object domainElement, Set<Object> image) {
+		put(new Object[] { domainElement, image });
+	}
+
+	@Override
+	public void relationCompleted() {
+		put(END);
+		try {
+			consumer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while waiting for the sink", e);
+		}
+		if (failure != null)
+			throw new IllegalStateException("the sink failed", failure);
+	}
+
+	/**
+	 * queues anEntry. A full queue is not waited on for good: once the thread
+	 * of the other sink has ended, nothing takes the rows anymore, and the
+	 * entry is dropped. A sink that failed still drains the queue, down to
+	 * END, so its entries are queued as usual
+	 */
+	private void put(Object[] anEntry) {
+		try {
+			while (!queue.offer(anEntry, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+				if (!consumer.isAlive())
+					return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while handing a row over", e);
+		}
+	}
+
+	/**
+	 * takes the rows until the end. If interrupted (again), the thread ends,
+	 * and put() stops waiting on the queue
+	 */
+	private void drain() {
+		try {
+			while (queue.take() != END)
+				;
+		} catch (InterruptedException e) {
+			// the thread ends anyway
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Set<Object> castImage(Object anImage) {
+		return (Set<Object>) anImage;
+	}
+
+}
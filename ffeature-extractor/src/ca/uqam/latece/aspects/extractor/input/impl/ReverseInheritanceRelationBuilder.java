@@ -1,7 +1,9 @@
 package ca.uqam.latece.aspects.extractor.input.impl;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -11,13 +13,20 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IField;
 import org.eclipse.jdt.core.IJavaElement;
@@ -27,13 +36,14 @@ import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.IType;
-import org.eclipse.jdt.core.ITypeHierarchy;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.Signature;
 
 import ca.uqam.latece.aspects.extractor.input.RelationBuilder;
+import ca.uqam.latece.aspects.extractor.input.RelationSink;
 import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.RelationFile;
 import ca.uqam.latece.aspects.extractor.lattice.model.impl.ReverseInheritanceRelation;
 
 public class ReverseInheritanceRelationBuilder implements RelationBuilder {
@@ -100,10 +110,78 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 	
 	private HashMap<String, MethodEntry> methodImplementations = new HashMap<String, MethodEntry>();
 
+	/**
+	 * the header methods of methodImplementations, computed on demand by
+	 * getAllMethods(), and forgotten when purge() adds methods
+	 */
+	private Set<Object> allMethods = null;
+
+	/**
+	 * the number of threads of the extraction of the local domain interfaces
+	 */
+	private int parallelism = 1;
+
+	/**
+	 * the similarity keys of the methods of the ancestors, by ancestor (see
+	 * similarityKeysOf()). The local domain interfaces may be computed in
+	 * parallel, hence the concurrent map
+	 */
+	private Map<IType, Set<String>> similarityKeys = new ConcurrentHashMap<IType, Set<String>>();
+
+	/**
+	 * the keys of the methods of the library types, shared with the other
+	 * builders, and the file where they are kept between sessions (null if
+	 * they are not)
+	 */
+	private ExternalSignatureCache signatureCache = ExternalSignatureCache.getDefault();
+
+	private File signatureCacheFile = null;
+
 	
 	public IJavaProject getJavaProject() {
 		return javaProject;
 	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * sets the number of threads that collect the types of the compilation
+	 * units and compute their local domain interfaces (1, the default, for
+	 * the current thread only). The purge and the cumulation of the
+	 * interfaces run after them, on the current thread, and the relation is
+	 * the same whatever the number of threads
+	 * 
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	public ExternalSignatureCache getSignatureCache() {
+		return signatureCache;
+	}
+
+	public void setSignatureCache(ExternalSignatureCache signatureCache) {
+		this.signatureCache = signatureCache;
+	}
+
+	public File getSignatureCacheFile() {
+		return signatureCacheFile;
+	}
+
+	/**
+	 * sets the file where the keys of the methods of the library types are
+	 * kept between sessions: they are loaded from it before each extraction,
+	 * and saved to it after. A file that cannot be read or written only costs
+	 * the keys of the libraries (they are computed again)
+	 * 
+	 * @param signatureCacheFile
+	 */
+	public void setSignatureCacheFile(File signatureCacheFile) {
+		this.signatureCacheFile = signatureCacheFile;
+	}
 	
 
 
@@ -133,66 +211,222 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 
 
 	/**
-	 * a utility method used to collect all methods in the project
+	 * a utility method used to collect all methods in the project. The set is
+	 * computed once, and must not be modified
 	 * 
 	 * @return
 	 */
 	public Set<Object> getAllMethods() {
-		HashSet<Object> allMethods = new HashSet<Object>();
-
-		// iterate over the methods in methodImplementations
-		for (String methodSignature : methodImplementations.keySet()) {
-			// for each signature, use the header method (public field method of
-			// class MethodEntry)
-			allMethods.add(methodImplementations.get(methodSignature).method);
+		if (allMethods == null) {
+			HashSet<Object> methods = new HashSet<Object>();
+
+			// iterate over the methods in methodImplementations
+			for (String methodSignature : methodImplementations.keySet()) {
+				// for each signature, use the header method (public field method of
+				// class MethodEntry)
+				methods.add(methodImplementations.get(methodSignature).method);
+			}
+			allMethods = Collections.unmodifiableSet(methods);
 		}
 		return allMethods;
 	}
 
 	@Override
 	public Relation buildRelationFrom(IProject aProject) {
+		HashMap<IType, IMethod[]> purgedDomainInterfaces = purgedDomainInterfaces(aProject);
+		if (purgedDomainInterfaces == null)
+			return null;
+
+		// now, cumulate domain interfaces for a subhierarchy (reverse
+		// inheritance)
+		HashMap<IType, IMethod[]> cumulativeDomainInterfaces = cumulativeDomainInterfaces(purgedDomainInterfaces);
+
+		setSubhierarchyDomainInterfaces(cumulativeDomainInterfaces);
+
+		// now, build images from purgedDomainInterfaces
+		return buildImagesFrom(cumulativeDomainInterfaces);
+	}
+
+	/**
+	 * the local domain interfaces are all needed to purge the methods, but the
+	 * cumulative interfaces, which take a type hierarchy each, are handed to
+	 * aSink one at a time, as they are computed. The methods are all known
+	 * once purged, so they are handed to aSink first.
+	 *
+	 * The cumulative interfaces are still kept (see
+	 * getSubhierarchyDomainInterfaces()), since the visitors read them, but
+	 * the relation is not built. The types with an empty cumulative interface
+	 * are not handed to aSink, as they are not in the relation either
+	 */
+	@Override
+	public void buildRelationFrom(IProject aProject, RelationSink aSink) {
+		HashMap<IType, IMethod[]> purgedDomainInterfaces = purgedDomainInterfaces(aProject);
+		if (purgedDomainInterfaces == null) {
+			aSink.relationStarted(this, Collections.emptySet());
+			aSink.relationCompleted();
+			return;
+		}
+		aSink.relationStarted(this, getAllMethods());
+		setSubhierarchyDomainInterfaces(cumulativeDomainInterfaces(purgedDomainInterfaces, aSink));
+		aSink.relationCompleted();
+	}
+
+	/**
+	 * reads back a relation written with <code>RelationFile.write()</code>, and
+	 * the domain interfaces stored with it, instead of extracting them from a
+	 * project. The file must have been opened with
+	 * <code>MappedLattice.JAVA_ELEMENT_CODEC</code>, so that the types and
+	 * methods are Java elements again (which takes the workspace they come
+	 * from). The method implementations are found again from the methods of
+	 * the relation (see restoreImplementations())
+	 * 
+	 * @param aFile
+	 * @return
+	 */
+	public Relation restoreFrom(RelationFile aFile) {
+		if (!aFile.hasDomainInterfaces())
+			throw new IllegalArgumentException("the relation file has no domain interfaces");
+		setLocalDomainInterfaces(toJavaInterfaces(aFile.getLocalDomainInterfaces()));
+		setSubhierarchyDomainInterfaces(toJavaInterfaces(aFile.getSubhierarchyDomainInterfaces()));
+		definedTypes = new ArrayList<IType>(localDomainInterfaces.keySet());
+		javaProject = definedTypes.isEmpty() ? null : definedTypes.iterator().next().getJavaProject();
+		ReverseInheritanceRelation relation = new ReverseInheritanceRelation(this);
+		aFile.readInto(relation);
+		restoreImplementations(relation);
+		return relation;
+	}
+
+	/**
+	 * fills the method implementations again after restoreFrom(). The methods
+	 * of aRelation, like those of the local domain interfaces, are the
+	 * headers, and the implementations of a header are the methods with the
+	 * same key (see hashKey()) that the types of the interfaces that have it
+	 * declare
+	 * 
+	 * @param aRelation
+	 */
+	protected void restoreImplementations(Relation aRelation) {
+		methodImplementations.clear();
+		allMethods = null;
+		try {
+			for (Object header : aRelation.getAllImages())
+				methodImplementations.put(hashKey((IMethod) header), new MethodEntry((IMethod) header));
+			for (Map.Entry<IType, IMethod[]> entry : localDomainInterfaces.entrySet()) {
+				HashMap<String, IMethod> declaredMethods = new HashMap<String, IMethod>();
+				for (IMethod method : entry.getKey().getMethods())
+					declaredMethods.put(hashKey(method), method);
+				for (IMethod header : entry.getValue()) {
+					String key = hashKey(header);
+					MethodEntry methodEntry = methodImplementations.get(key);
+					if (methodEntry == null) {
+						methodEntry = new MethodEntry(header);
+						methodImplementations.put(key, methodEntry);
+					}
+					methodEntry.addImplementation(declaredMethods.get(key));
+				}
+			}
+		} catch (JavaModelException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private HashMap<IType, IMethod[]> toJavaInterfaces(Map<Object, Object[]> someInterfaces) {
+		if (someInterfaces == null)
+			return null;
+		HashMap<IType, IMethod[]> interfaces = new HashMap<IType, IMethod[]>();
+		for (Map.Entry<Object, Object[]> entry : someInterfaces.entrySet())
+			interfaces.put((IType) entry.getKey(),
+					Arrays.copyOf(entry.getValue(), entry.getValue().length, IMethod[].class));
+		return interfaces;
+	}
+
+	/**
+	 * collects the types defined in aProject, and computes their purged local
+	 * domain interfaces (see setLocalDomainInterfaces()). Returns null if
+	 * aProject is not a java project, or cannot be read
+	 * 
+	 * @param aProject
+	 * @return
+	 */
+	protected HashMap<IType, IMethod[]> purgedDomainInterfaces(IProject aProject) {
 
 		try {
 			if (!aProject.hasNature(JavaCore.NATURE_ID))
 				return null;
 
 			javaProject = JavaCore.create(aProject);
+
+			// resolve the hierarchy of the whole project once: the extraction,
+			// and the visitors after it, read it instead of resolving the
+			// hierarchy of every type
+			TypeHierarchyIndex.rebuild(javaProject);
+			similarityKeys.clear();
+			methodImplementations.clear();
+			allMethods = null;
+			if (signatureCacheFile != null) {
+				try {
+					signatureCache.load(signatureCacheFile);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
 			definedTypes = new ArrayList<IType>();
-			int numberCompilationUnits = 0;
 
 			// get info about packages
+			final List<ICompilationUnit> compUnits = new ArrayList<ICompilationUnit>();
 			IPackageFragment[] packages = javaProject.getPackageFragments();
 			for (IPackageFragment myPackage : packages) {
 				// for each package fragment, if it is a source package,
 				// then
 				// access its compilation units
-				if (myPackage.getKind() == IPackageFragmentRoot.K_SOURCE) {
-					ICompilationUnit[] compUnits = myPackage.getCompilationUnits();
-					for (ICompilationUnit compUnit : compUnits) {
-						numberCompilationUnits++;
-						IType[] compUnitTypes = compUnit.getAllTypes();
-						for (IType nextType : compUnitTypes)
-							definedTypes.add(nextType);
-						System.out.println("processing compilation unit: " + compUnit.getElementName());
-					}
+				if (myPackage.getKind() == IPackageFragmentRoot.K_SOURCE)
+					compUnits.addAll(Arrays.asList(myPackage.getCompilationUnits()));
+			}
+
+			// the types of the compilation units, each in its own slot, so that
+			// they are defined in the same order whatever the threads do
+			final IType[][] compUnitTypes = new IType[compUnits.size()][];
+			forEachCompilationUnit(compUnits.size(), new CompilationUnitTask() {
+				public void process(int unit) throws JavaModelException {
+					compUnitTypes[unit] = compUnits.get(unit).getAllTypes();
 				}
+			});
+			for (int unit = 0; unit < compUnitTypes.length; unit++) {
+				definedTypes.addAll(Arrays.asList(compUnitTypes[unit]));
+				System.out.println("processing compilation unit: " + compUnits.get(unit).getElementName());
 			}
 
-			System.out.println("Project " + aProject.getName() + " has : " + numberCompilationUnits
+			System.out.println("Project " + aProject.getName() + " has : " + compUnits.size()
 					+ " compilation units, and " + definedTypes.size() + " defined types");
 
 			// next, compute the domain interfaces of all the types
 			HashMap<IType, IMethod[]> unpurgedDomainInterfaces = new HashMap<IType, IMethod[]>(),
 					purgedDomainInterfaces = new HashMap<IType, IMethod[]>();
 
-			// compute the domain
-			boolean excludeAccessors = false;
-			for (IType type : definedTypes) {
-				IMethod[] typeLocalDomainInterface = localDomainInterface(definedTypes, type, excludeAccessors);
-				if (typeLocalDomainInterface == null) {
-					System.out.println("Type " + type + " has null domain interface");
+			// compute the domain, compilation unit by compilation unit
+			final boolean excludeAccessors = false;
+			final Collection<IType> allProjectTypes = Collections.unmodifiableCollection(definedTypes);
+			final IMethod[][][] compUnitInterfaces = new IMethod[compUnitTypes.length][][];
+			forEachCompilationUnit(compUnits.size(), new CompilationUnitTask() {
+				public void process(int unit) throws JavaModelException {
+					compUnitInterfaces[unit] = new IMethod[compUnitTypes[unit].length][];
+					for (int i = 0; i < compUnitTypes[unit].length; i++)
+						compUnitInterfaces[unit][i] = localDomainInterface(allProjectTypes, compUnitTypes[unit][i],
+								excludeAccessors);
+				}
+			});
+
+			// after the barrier, fill the map in the order of the types, as the
+			// sequential mode does: purge() then sees the same map
+			for (int unit = 0; unit < compUnitTypes.length; unit++) {
+				for (int i = 0; i < compUnitTypes[unit].length; i++) {
+					IType type = compUnitTypes[unit][i];
+					IMethod[] typeLocalDomainInterface = compUnitInterfaces[unit][i];
+					if (typeLocalDomainInterface == null) {
+						System.out.println("Type " + type + " has null domain interface");
+					}
+					unpurgedDomainInterfaces.put(type, typeLocalDomainInterface);
 				}
-				unpurgedDomainInterfaces.put(type, typeLocalDomainInterface);
 			}
 
 			// purge domainInterfaces by reducing references to different
@@ -202,14 +436,15 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 			
 			setLocalDomainInterfaces(purgedDomainInterfaces);
 
-			// now, cumulate domain interfaces for a subhierarchy (reverse
-			// inheritance)
-			HashMap<IType, IMethod[]> cumulativeDomainInterfaces = cumulativeDomainInterfaces(purgedDomainInterfaces);
+			if (signatureCacheFile != null) {
+				try {
+					signatureCache.save(signatureCacheFile);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
 
-			setSubhierarchyDomainInterfaces(cumulativeDomainInterfaces);
-			
-			// now, build images from purgedDomainInterfaces
-			return buildImagesFrom(cumulativeDomainInterfaces);
+			return purgedDomainInterfaces;
 
 		} catch (JavaModelException e1) {
 			e1.printStackTrace();
@@ -219,6 +454,61 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 		return null;
 	}
 
+	/**
+	 * a piece of work on the compilation unit whose number is unit
+	 */
+	private static interface CompilationUnitTask {
+		public void process(int unit) throws JavaModelException;
+	}
+
+	/**
+	 * runs aTask on the compilation units 0 to numberOfUnits - 1, on this
+	 * thread if the parallelism is 1, or else on a pool of parallelism
+	 * threads, and returns once they are all done. The tasks must only write
+	 * to the slots of their own unit
+	 * 
+	 * @param numberOfUnits
+	 * @param aTask
+	 * @throws JavaModelException
+	 */
+	private void forEachCompilationUnit(int numberOfUnits, final CompilationUnitTask aTask)
+			throws JavaModelException {
+		if (parallelism <= 1 || numberOfUnits <= 1) {
+			for (int unit = 0; unit < numberOfUnits; unit++)
+				aTask.process(unit);
+			return;
+		}
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numberOfUnits);
+		for (int unit = 0; unit < numberOfUnits; unit++) {
+			final int thisUnit = unit;
+			tasks.add(new Callable<Void>() {
+				public Void call() throws JavaModelException {
+					aTask.process(thisUnit);
+					return null;
+				}
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, numberOfUnits));
+		try {
+			for (Future<Void> result : executor.invokeAll(tasks)) {
+				try {
+					result.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof JavaModelException)
+						throw (JavaModelException) e.getCause();
+					if (e.getCause() instanceof RuntimeException)
+						throw (RuntimeException) e.getCause();
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while computing the domain interfaces", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
 	/**
 	 * 
 	 * @param domainInterfaces
@@ -226,43 +516,31 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 	 * @return
 	 */
 	protected HashMap<IType, IMethod[]> cumulativeDomainInterfaces(HashMap<IType, IMethod[]> domainInterfaces) {
+		return cumulativeDomainInterfaces(domainInterfaces, null);
+	}
+
+	/**
+	 * same as cumulativeDomainInterfaces(), and hands every non empty
+	 * cumulative interface to aSink (if not null) as soon as it is computed
+	 * 
+	 * @param domainInterfaces
+	 * @param aSink
+	 * @return
+	 */
+	protected HashMap<IType, IMethod[]> cumulativeDomainInterfaces(HashMap<IType, IMethod[]> domainInterfaces,
+			RelationSink aSink) {
 		HashMap<IType, IMethod[]> cumulativeDomainInterfaces = new HashMap<IType, IMethod[]>();
 
-		// use a set so that duplicates are counted only once
 		Set<IMethod> cumulativeInterface = null;
 
-		IProgressMonitor pMonitor = new NullProgressMonitor();
-		ITypeHierarchy typeHierarchy = null;
+		TypeHierarchyIndex typeHierarchy = null;
 
 		try {
 
 			// iterate over types
 			for (IType type : domainInterfaces.keySet()) {
-				cumulativeInterface = new HashSet<IMethod>();
-
-				// first, add the type's interface
-				cumulativeInterface.addAll(Arrays.asList(domainInterfaces.get(type)));
-
-				// next, get all the subtypes of type, and add their interfaces,
-				// as well.
-
-				typeHierarchy = type.newTypeHierarchy(pMonitor);
-
-				// get all the subtypes
-				IType[] subtypes = typeHierarchy.getAllSubtypes(type);
-
-				// now, add the domain interfaces of the subtypes
-				for (IType subtype : subtypes) {
-					// notice that if type is an interface, its implementing
-					// classes will be considered as part of its subtypes,
-					// including the anonymous classes. However, the anonymous classes
-					// are not considered as DEFINED in the compilation unit, and thus, will
-					// not have a domain interface associated with it
-					IMethod[] subtypeDomainInterface = domainInterfaces.get(subtype);
-					if (subtypeDomainInterface != null) {
-						cumulativeInterface.addAll(Arrays.asList(subtypeDomainInterface));
-					}
-				}
+				typeHierarchy = TypeHierarchyIndex.forType(type);
+				cumulativeInterface = cumulativeDomainInterface(typeHierarchy, type, domainInterfaces);
 
 				// now, create an array of IMethod from cumulativeInterface
 				IMethod[] cumulative = cumulativeInterface.toArray(new IMethod[cumulativeInterface.size()]);
@@ -270,6 +548,10 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 				// now, add the new <key,value> pair in
 				// cumulativeDomainInterfaces
 				cumulativeDomainInterfaces.put(type, cumulative);
+
+				// and hand it over
+				if (aSink != null && !cumulativeInterface.isEmpty())
+					aSink.rowCompleted(type, Collections.<Object> unmodifiableSet(cumulativeInterface));
 			}
 		} catch (JavaModelException jme) {
 
@@ -278,6 +560,232 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 		return cumulativeDomainInterfaces;
 	}
 
+	/**
+	 * returns the cumulative domain interface of type: its own interface, and
+	 * those of all its subtypes
+	 * 
+	 * @param typeHierarchy
+	 * @param type
+	 * @param domainInterfaces
+	 * @return
+	 * @throws JavaModelException
+	 */
+	protected Set<IMethod> cumulativeDomainInterface(TypeHierarchyIndex typeHierarchy, IType type,
+			HashMap<IType, IMethod[]> domainInterfaces) throws JavaModelException {
+		// use a set so that duplicates are counted only once
+		Set<IMethod> cumulativeInterface = new HashSet<IMethod>();
+
+		// first, add the type's interface
+		cumulativeInterface.addAll(Arrays.asList(domainInterfaces.get(type)));
+
+		// next, get all the subtypes of type, and add their interfaces,
+		// as well.
+		IType[] subtypes = typeHierarchy.getAllSubtypes(type);
+
+		// now, add the domain interfaces of the subtypes
+		for (IType subtype : subtypes) {
+			// notice that if type is an interface, its implementing
+			// classes will be considered as part of its subtypes,
+			// including the anonymous classes. However, the anonymous classes
+			// are not considered as DEFINED in the compilation unit, and thus, will
+			// not have a domain interface associated with it
+			IMethod[] subtypeDomainInterface = domainInterfaces.get(subtype);
+			if (subtypeDomainInterface != null) {
+				cumulativeInterface.addAll(Arrays.asList(subtypeDomainInterface));
+			}
+		}
+		return cumulativeInterface;
+	}
+
+	/**
+	 * updates aRelation, which this builder extracted (see
+	 * buildRelationFrom()), after changedUnits have been added, modified or
+	 * removed, and returns the rows that changed: the new cumulative interface
+	 * of each type whose row is not the same anymore, or an empty set for the
+	 * types that left the relation.
+	 * 
+	 * Only the types of changedUnits get their supertypes resolved again (see
+	 * <code>TypeHierarchyIndex.update()</code>), unless some of them are new
+	 * to the type hierarchy: other types may then resolve supertypes that
+	 * they could not find before (e.g. the subclasses of a class that is
+	 * restored after it was deleted), so the whole hierarchy is built again.
+	 * Only the types of changedUnits and their
+	 * subtypes (whose ancestors outside the project may have changed) get
+	 * their local domain interfaces computed again, and only
+	 * them and their supertypes get their cumulative interfaces computed again.
+	 * The domain interfaces (see getLocalDomainInterfaces() and
+	 * getSubhierarchyDomainInterfaces()) and the method implementations are
+	 * updated in place. A method keeps the same header as long as the type
+	 * that declares it does not change. Otherwise, another of its
+	 * implementations becomes the header (see forgetImplementations()), and
+	 * the rows of the types whose interfaces had the former header change too
+	 * 
+	 * @param aRelation
+	 * @param changedUnits
+	 * @return
+	 * @throws JavaModelException
+	 */
+	public Map<Object, Set<Object>> updateRelation(Relation aRelation, Collection<ICompilationUnit> changedUnits)
+			throws JavaModelException {
+		if (javaProject == null || localDomainInterfaces == null || subhierarchyDomainInterfaces == null)
+			throw new IllegalStateException("the relation has not been extracted yet");
+
+		TypeHierarchyIndex oldHierarchy = TypeHierarchyIndex.forProject(javaProject);
+		similarityKeys.clear();
+
+		// the types of the changed units, before and after the change
+		Set<ICompilationUnit> units = new HashSet<ICompilationUnit>(changedUnits);
+		Set<IType> oldTypes = new LinkedHashSet<IType>(), newTypes = new LinkedHashSet<IType>();
+		for (IType type : definedTypes) {
+			if (units.contains(type.getCompilationUnit()))
+				oldTypes.add(type);
+		}
+		for (ICompilationUnit unit : changedUnits) {
+			if (unit.exists())
+				newTypes.addAll(Arrays.asList(unit.getAllTypes()));
+		}
+		Set<IType> removedTypes = new LinkedHashSet<IType>(oldTypes);
+		removedTypes.removeAll(newTypes);
+		boolean unknownTypes = false;
+		for (IType type : newTypes) {
+			if (!oldHierarchy.contains(type)) {
+				unknownTypes = true;
+				break;
+			}
+		}
+		TypeHierarchyIndex newHierarchy = unknownTypes ? TypeHierarchyIndex.rebuild(javaProject)
+				: TypeHierarchyIndex.update(javaProject, removedTypes, newTypes);
+		definedTypes.removeAll(oldTypes);
+		definedTypes.addAll(newTypes);
+		Set<IType> projectTypes = new HashSet<IType>(definedTypes);
+
+		// the types whose local domain interface may have changed
+		Set<IType> recomputedTypes = new LinkedHashSet<IType>(newTypes);
+		for (IType type : oldTypes)
+			addProjectTypes(recomputedTypes, oldHierarchy.getAllSubtypes(type), projectTypes);
+		for (IType type : newTypes)
+			addProjectTypes(recomputedTypes, newHierarchy.getAllSubtypes(type), projectTypes);
+
+		// compute them again, one task per type
+		final List<IType> types = new ArrayList<IType>(recomputedTypes);
+		final Collection<IType> allProjectTypes = Collections.unmodifiableCollection(definedTypes);
+		final IMethod[][] interfaces = new IMethod[types.size()][];
+		forEachCompilationUnit(types.size(), new CompilationUnitTask() {
+			public void process(int unit) throws JavaModelException {
+				interfaces[unit] = localDomainInterface(allProjectTypes, types.get(unit), false);
+			}
+		});
+		HashMap<IType, IMethod[]> unpurgedDomainInterfaces = new HashMap<IType, IMethod[]>();
+		for (int i = 0; i < interfaces.length; i++)
+			unpurgedDomainInterfaces.put(types.get(i), interfaces[i]);
+
+		// forget the implementations of the types that changed or left, then
+		// purge the new interfaces against the methods that are left
+		Set<IType> changedTypes = new LinkedHashSet<IType>(oldTypes);
+		changedTypes.addAll(recomputedTypes);
+		Map<IMethod, IMethod> replacedHeaders = forgetImplementations(changedTypes);
+		HashMap<IType, IMethod[]> purgedDomainInterfaces = purge(unpurgedDomainInterfaces);
+		Iterator<MethodEntry> entries = methodImplementations.values().iterator();
+		while (entries.hasNext()) {
+			if (entries.next().method == null)
+				entries.remove();
+		}
+		allMethods = null;
+		for (IType type : oldTypes)
+			localDomainInterfaces.remove(type);
+		localDomainInterfaces.putAll(purgedDomainInterfaces);
+
+		// the other types that had a former header in their interface get the
+		// new one, and their rows change as well
+		if (!replacedHeaders.isEmpty()) {
+			for (Map.Entry<IType, IMethod[]> entry : localDomainInterfaces.entrySet()) {
+				if (changedTypes.contains(entry.getKey()))
+					continue;
+				IMethod[] domainInterface = entry.getValue();
+				for (int i = 0; i < domainInterface.length; i++) {
+					IMethod header = replacedHeaders.get(domainInterface[i]);
+					if (header != null) {
+						domainInterface[i] = header;
+						changedTypes.add(entry.getKey());
+					}
+				}
+			}
+		}
+
+		// the types whose cumulative interface may have changed: the types
+		// above, and their supertypes, before and after the change
+		Set<IType> cumulatedTypes = new LinkedHashSet<IType>();
+		for (IType type : changedTypes) {
+			if (projectTypes.contains(type))
+				cumulatedTypes.add(type);
+			if (oldHierarchy.contains(type))
+				addProjectTypes(cumulatedTypes, oldHierarchy.getAllSupertypes(type), projectTypes);
+			if (newHierarchy.contains(type))
+				addProjectTypes(cumulatedTypes, newHierarchy.getAllSupertypes(type), projectTypes);
+		}
+
+		Map<Object, Set<Object>> changedRows = new LinkedHashMap<Object, Set<Object>>();
+		for (IType type : oldTypes) {
+			if (!projectTypes.contains(type)) {
+				subhierarchyDomainInterfaces.remove(type);
+				if (aRelation.domainContains(type))
+					changedRows.put(type, Collections.emptySet());
+			}
+		}
+		for (IType type : cumulatedTypes) {
+			Set<IMethod> cumulativeInterface = cumulativeDomainInterface(newHierarchy, type, localDomainInterfaces);
+			subhierarchyDomainInterfaces.put(type, cumulativeInterface.toArray(new IMethod[cumulativeInterface.size()]));
+			Set<Object> row = new HashSet<Object>(cumulativeInterface);
+			if (!row.equals(aRelation.domainContains(type) ? aRelation.getImage(type) : Collections.emptySet()))
+				changedRows.put(type, row);
+		}
+
+		// and apply the new rows
+		for (Map.Entry<Object, Set<Object>> row : changedRows.entrySet()) {
+			aRelation.removeFromDomain(row.getKey());
+			for (Object method : row.getValue())
+				aRelation.addRelation(row.getKey(), method);
+		}
+		return changedRows;
+	}
+
+	private static void addProjectTypes(Set<IType> someTypes, IType[] candidates, Set<IType> projectTypes) {
+		for (IType candidate : candidates) {
+			if (projectTypes.contains(candidate))
+				someTypes.add(candidate);
+		}
+	}
+
+	/**
+	 * removes the implementations declared by someTypes from the method
+	 * implementations. A method whose header is declared by one of someTypes
+	 * (which may have changed, or be gone) gets one of the implementations
+	 * that are left as its new header, or no header at all if none is left,
+	 * so that purge() takes a new one, if need be. Returns the new headers,
+	 * by former header
+	 * 
+	 * @param someTypes
+	 * @return
+	 */
+	protected Map<IMethod, IMethod> forgetImplementations(Set<IType> someTypes) {
+		Map<IMethod, IMethod> replacedHeaders = new HashMap<IMethod, IMethod>();
+		for (MethodEntry entry : methodImplementations.values()) {
+			Iterator<IMethod> implementations = entry.allImplementations.iterator();
+			while (implementations.hasNext()) {
+				if (someTypes.contains(implementations.next().getDeclaringType()))
+					implementations.remove();
+			}
+			if (entry.allImplementations.isEmpty())
+				entry.method = null;
+			else if (someTypes.contains(entry.method.getDeclaringType())) {
+				IMethod header = entry.allImplementations.iterator().next();
+				replacedHeaders.put(entry.method, header);
+				entry.method = header;
+			}
+		}
+		return replacedHeaders;
+	}
+
 	protected Relation buildImagesFrom(HashMap<IType, IMethod[]> interfaces) {
 		ReverseInheritanceRelation relation = new ReverseInheritanceRelation(this);
 
@@ -317,6 +825,7 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 					if (entry == null) {
 						entry = new MethodEntry(method);
 						methodImplementations.put(key, entry);
+						allMethods = null;
 					} else {
 						entry.addImplementation(method);
 					}
@@ -354,6 +863,46 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 		return purged;
 	}
 
+	/**
+	 * returns a key that two methods share if and only if they are similar
+	 * (see <code>IMethod.isSimilar()</code>): their names, and the simple names
+	 * of the erasures of their parameter types. Looking keys up in a hash set
+	 * replaces comparing every method with every other one
+	 * 
+	 * @param method
+	 * @return
+	 */
+	protected static String similarityKey(IMethod method) {
+		StringBuilder key = new StringBuilder(method.getElementName()).append('(');
+		String[] parameterTypes = method.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (i > 0)
+				key.append(',');
+			key.append(Signature.getSimpleName(Signature.toString(Signature.getTypeErasure(parameterTypes[i]))));
+		}
+		return key.append(')').toString();
+	}
+
+	/**
+	 * returns the similarity keys of the methods of aType, which are computed
+	 * once per type (e.g. once per external ancestor) and per extraction, or
+	 * once and for all if aType comes from a library (see
+	 * <code>ExternalSignatureCache</code>)
+	 * 
+	 * @param aType
+	 * @return
+	 * @throws JavaModelException
+	 */
+	protected Set<String> similarityKeysOf(IType aType) throws JavaModelException {
+		Set<String> keys = similarityKeys.get(aType);
+		if (keys == null) {
+			// the keys of the library types come from the shared cache
+			keys = signatureCache.similarityKeysOf(aType);
+			similarityKeys.put(aType, keys);
+		}
+		return keys;
+	}
+
 	/**
 	 * returns the "string signature" of the method. I am not including the
 	 * exception types because they can be modified by a subclass implementation
@@ -797,8 +1346,9 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 		Collection<IMethod> domainMethods = new ArrayList<IMethod>();
 
 		// external methods are methods that are defined from classes external
-		// to the project
-		Collection<IMethod> externalMethods = new ArrayList<IMethod>();
+		// to the project. We keep their signatures (see similarityKey()), one
+		// set per class
+		Collection<Set<String>> externalMethods = new ArrayList<Set<String>>();
 
 		// will enclose non-domain methods, which, for the type being, are
 		// methods defined by classes along the type hierarchy that are not
@@ -815,8 +1365,7 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 		// project
 		Collection<IMethod> allMethods = new ArrayList<IMethod>();
 
-		IProgressMonitor pMonitor = new NullProgressMonitor();
-		ITypeHierarchy typeHierarchy = null;
+		TypeHierarchyIndex typeHierarchy = null;
 
 		try {
 			// add the methods defined in <code>type</code>
@@ -829,7 +1378,7 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 			allMethods.addAll(Arrays.asList(localMethods));
 
 			// now, get the type hierarchy to climb along it
-			typeHierarchy = type.newTypeHierarchy(pMonitor);
+			typeHierarchy = TypeHierarchyIndex.forType(type);
 
 			// get all the supertypes, both within the project, and outside
 
@@ -847,6 +1396,9 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 			withinProjectAncestorsSet.removeAll(outsideProjectAncestorsSet);
 
 			// collect methods defined within project
+			Set<String> allMethodKeys = new HashSet<String>();
+			for (IMethod localMethod : localMethods)
+				allMethodKeys.add(similarityKey(localMethod));
 			Iterator<IType> withinProjectAncestors = withinProjectAncestorsSet.iterator();
 			while (withinProjectAncestors.hasNext()) {
 				// get all methods defined in ancestor
@@ -855,13 +1407,7 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 				// i.e. those that have no similar
 				// method in localMethods
 				for (int i = 0; i < withinProjectAncestorMethods.length; i++) {
-					boolean found = false;
-					Iterator<IMethod> allMethodsIterator = allMethods.iterator();
-					while (!found && allMethodsIterator.hasNext()) {
-						IMethod nextMethod = allMethodsIterator.next();
-						found = nextMethod.isSimilar(withinProjectAncestorMethods[i]);
-					}
-					if (!found)
+					if (allMethodKeys.add(similarityKey(withinProjectAncestorMethods[i])))
 						allMethods.add(withinProjectAncestorMethods[i]);
 
 				}
@@ -870,7 +1416,7 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 			// collect methods defined outside project
 			Iterator<IType> outsideAncestors = outsideProjectAncestorsSet.iterator();
 			while (outsideAncestors.hasNext()) {
-				externalMethods.addAll(Arrays.asList(outsideAncestors.next().getMethods()));
+				externalMethods.add(similarityKeysOf(outsideAncestors.next()));
 			}
 
 			// now, we remove from allMethods those methods that are
@@ -880,12 +1426,11 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 			Iterator<IMethod> allMethodsIterator = allMethods.iterator();
 			while (allMethodsIterator.hasNext()) {
 				IMethod nextMethod = allMethodsIterator.next();
+				String nextKey = similarityKey(nextMethod);
 				boolean found = false;
-				Iterator<IMethod> externalMethodsIterator = externalMethods.iterator();
-				while (!found && externalMethodsIterator.hasNext()) {
-					IMethod nextExternalMethod = externalMethodsIterator.next();
-					found = nextExternalMethod.isSimilar(nextMethod);
-				}
+				Iterator<Set<String>> externalMethodsIterator = externalMethods.iterator();
+				while (!found && externalMethodsIterator.hasNext())
+					found = externalMethodsIterator.next().contains(nextKey);
 				if (!found)
 					remainingMethods.add(nextMethod);
 
@@ -972,16 +1517,16 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 		Collection<IMethod> domainMethods = new ArrayList<IMethod>();
 
 		// external methods are methods that are defined from classes external
-		// to the project
-		Collection<IMethod> externalMethods = new ArrayList<IMethod>();
+		// to the project. We keep their signatures (see similarityKey()), one
+		// set per class
+		Collection<Set<String>> externalMethods = new ArrayList<Set<String>>();
 
 		// will enclose non-domain methods, which, for the type being, are
 		// methods defined by classes along the type hierarchy that are not
 		// part of this project (i.e. types not included in allProjectTypes)
 		Collection<IMethod> nonDomainMethods = new ArrayList<IMethod>();
 
-		IProgressMonitor pMonitor = new NullProgressMonitor();
-		ITypeHierarchy typeHierarchy = null;
+		TypeHierarchyIndex typeHierarchy = null;
 
 		try {
 			// add the methods defined in <code>type</code>
@@ -1012,7 +1557,7 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 
 			// now, get the type hierarchy to climb along it
 			
-			typeHierarchy = type.newTypeHierarchy(pMonitor);
+			typeHierarchy = TypeHierarchyIndex.forType(type);
 
 			// get all the supertypes, both within the project, and outside
 
@@ -1032,7 +1577,7 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 			// collect methods defined outside project
 			Iterator<IType> outsideAncestors = outsideProjectAncestorsSet.iterator();
 			while (outsideAncestors.hasNext()) {
-				externalMethods.addAll(Arrays.asList(outsideAncestors.next().getMethods()));
+				externalMethods.add(similarityKeysOf(outsideAncestors.next()));
 			}
 
 			// now, we remove from allMethods those methods that are
@@ -1041,12 +1586,11 @@ public class ReverseInheritanceRelationBuilder implements RelationBuilder {
 			Iterator<IMethod> allMethodsIterator = allMethods.iterator();
 			while (allMethodsIterator.hasNext()) {
 				IMethod nextMethod = allMethodsIterator.next();
+				String nextKey = similarityKey(nextMethod);
 				boolean found = false;
-				Iterator<IMethod> externalMethodsIterator = externalMethods.iterator();
-				while (!found && externalMethodsIterator.hasNext()) {
-					IMethod nextExternalMethod = externalMethodsIterator.next();
-					found = nextExternalMethod.isSimilar(nextMethod);
-				}
+				Iterator<Set<String>> externalMethodsIterator = externalMethods.iterator();
+				while (!found && externalMethodsIterator.hasNext())
+					found = externalMethodsIterator.next().contains(nextKey);
 				if (!found)
 					remainingMethods.add(nextMethod);
 
@@ -0,0 +1,550 @@
+package ca.uqam.latece.aspects.extractor.input.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IRegion;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.ITypeHierarchy;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+
+/**
+ * the type hierarchy of a whole project, resolved once, instead of one
+ * <code>ITypeHierarchy</code> per type (each of which resolves a whole
+ * hierarchy again). The extraction of the relation, the purging of the
+ * extents and the detection of the features all read it.
+ *
+ * The index holds the types of the project and all their supertypes (within
+ * the project or not), numbered 0, 1, ..., and, for each of them, its direct
+ * supertypes, its direct subtypes and its implementing classes, and the
+ * closures (all the supertypes and all the subtypes) as bitsets over the
+ * numbers. The methods that return types follow those of
+ * <code>ITypeHierarchy</code>, so the callers read the index as they read a
+ * hierarchy.
+ *
+ * The subtypes are those of the project: a type of another project of the
+ * workspace that extends a type of the project is not in the index, which
+ * does not matter for the relation (it only covers the types of the project).
+ * A type that is not in the index (e.g. a type of another project) gets a
+ * hierarchy of its own, the first time it is asked for, as before.
+ *
+ * There is one index per project (see forProject()): the relation builder
+ * rebuilds it (see rebuild()) when it extracts the relation, since the code
+ * may have changed, and the visitors use the index of the project of the
+ * types they process. When only a few compilation units have changed, the
+ * index is updated instead (see update()): only their types get their
+ * supertypes resolved again. The index of a project is dropped when the
+ * project is closed or removed, or when its user is done with it (see
+ * forget()).
+ */
+public class TypeHierarchyIndex {
+
+	private static Map<IJavaProject, TypeHierarchyIndex> projectIndices = new HashMap<IJavaProject, TypeHierarchyIndex>();
+
+	/**
+	 * drops the indices of the projects that are closed or removed. It only
+	 * listens while there are indices
+	 */
+	private static IElementChangedListener projectListener = new IElementChangedListener() {
+		@Override
+		public void elementChanged(ElementChangedEvent event) {
+			IJavaElementDelta delta = event.getDelta();
+			if (delta.getElement().getElementType() != IJavaElement.JAVA_MODEL)
+				return;
+			for (IJavaElementDelta child : delta.getAffectedChildren()) {
+				if (child.getElement().getElementType() == IJavaElement.JAVA_PROJECT
+						&& (child.getKind() == IJavaElementDelta.REMOVED
+								|| (child.getFlags() & IJavaElementDelta.F_CLOSED) != 0))
+					forget((IJavaProject) child.getElement());
+			}
+		}
+	};
+
+	private static final IType[] NO_TYPES = new IType[0];
+
+	private IType[] types;
+
+	private Map<IType, Integer> ids = new HashMap<IType, Integer>();
+
+	private int[][] supertypes;
+
+	private int[][] subtypes;
+
+	private int[][] implementingClasses;
+
+	private BitSet[] allSupertypes;
+
+	private BitSet[] allSubtypes;
+
+	/**
+	 * the hierarchies of the types that are not in the index
+	 */
+	private Map<IType, ITypeHierarchy> typeHierarchies = new HashMap<IType, ITypeHierarchy>();
+
+	private static final int[] NO_IDS = new int[0];
+
+	private TypeHierarchyIndex() {
+	}
+
+	/**
+	 * indexes aHierarchy, which should contain all the types of interest
+	 * (e.g. the hierarchy of a region)
+	 *
+	 * @param aHierarchy
+	 */
+	public TypeHierarchyIndex(ITypeHierarchy aHierarchy) {
+		types = aHierarchy.getAllTypes();
+		for (int id = 0; id < types.length; id++)
+			ids.put(types[id], id);
+		supertypes = new int[types.length][];
+		subtypes = new int[types.length][];
+		implementingClasses = new int[types.length][];
+		for (int id = 0; id < types.length; id++) {
+			supertypes[id] = idsOf(aHierarchy.getSupertypes(types[id]));
+			subtypes[id] = idsOf(aHierarchy.getSubtypes(types[id]));
+			implementingClasses[id] = idsOf(aHierarchy.getImplementingClasses(types[id]));
+		}
+
+		// the closures: the supertypes first, depth first, then the subtypes
+		// by inverting them
+		allSupertypes = new BitSet[types.length];
+		for (int id = 0; id < types.length; id++)
+			closeSupertypes(id);
+		allSubtypes = new BitSet[types.length];
+		for (int id = 0; id < types.length; id++)
+			allSubtypes[id] = new BitSet();
+		for (int id = 0; id < types.length; id++) {
+			BitSet ancestors = allSupertypes[id];
+			for (int ancestor = ancestors.nextSetBit(0); ancestor >= 0; ancestor = ancestors.nextSetBit(ancestor + 1))
+				allSubtypes[ancestor].set(id);
+		}
+	}
+
+	/**
+	 * resolves the hierarchy of all the types of aProject, and indexes it
+	 *
+	 * @param aProject
+	 * @param aMonitor
+	 * @return
+	 * @throws JavaModelException
+	 */
+	public static TypeHierarchyIndex build(IJavaProject aProject, IProgressMonitor aMonitor)
+			throws JavaModelException {
+		IRegion region = JavaCore.newRegion();
+		region.add(aProject);
+		return new TypeHierarchyIndex(aProject.newTypeHierarchy(region, aMonitor));
+	}
+
+	/**
+	 * returns the index of aProject, which is built the first time
+	 *
+	 * @param aProject
+	 * @return
+	 * @throws JavaModelException
+	 */
+	public static synchronized TypeHierarchyIndex forProject(IJavaProject aProject) throws JavaModelException {
+		TypeHierarchyIndex index = projectIndices.get(aProject);
+		if (index == null)
+			index = rebuild(aProject);
+		return index;
+	}
+
+	/**
+	 * returns the index of the project of aType
+	 *
+	 * @param aType
+	 * @return
+	 * @throws JavaModelException
+	 */
+	public static TypeHierarchyIndex forType(IType aType) throws JavaModelException {
+		return forProject(aType.getJavaProject());
+	}
+
+	/**
+	 * builds the index of aProject again, and returns it. The following calls
+	 * to forProject() return it too
+	 *
+	 * @param aProject
+	 * @return
+	 * @throws JavaModelException
+	 */
+	public static synchronized TypeHierarchyIndex rebuild(IJavaProject aProject) throws JavaModelException {
+		TypeHierarchyIndex index = build(aProject, new NullProgressMonitor());
+		if (projectIndices.isEmpty())
+			JavaCore.addElementChangedListener(projectListener, ElementChangedEvent.POST_CHANGE);
+		projectIndices.put(aProject, index);
+		return index;
+	}
+
+	/**
+	 * drops the index of aProject, e.g. once its relation is not kept up to
+	 * date anymore. The next call to forProject() builds it again
+	 *
+	 * @param aProject
+	 */
+	public static synchronized void forget(IJavaProject aProject) {
+		if (projectIndices.remove(aProject) != null && projectIndices.isEmpty())
+			JavaCore.removeElementChangedListener(projectListener);
+	}
+
+	/**
+	 * updates the index of aProject after some of its compilation units have
+	 * changed (see updated()), or builds it if there is none, and returns it.
+	 * The following calls to forProject() return it too
+	 *
+	 * @param aProject
+	 * @param removedTypes
+	 * @param changedTypes
+	 * @return
+	 * @throws JavaModelException
+	 */
+	public static synchronized TypeHierarchyIndex update(IJavaProject aProject, Collection<IType> removedTypes,
+			Collection<IType> changedTypes) throws JavaModelException {
+		TypeHierarchyIndex index = projectIndices.get(aProject);
+		if (index == null)
+			return rebuild(aProject);
+		index = index.updated(removedTypes, changedTypes, new NullProgressMonitor());
+		projectIndices.put(aProject, index);
+		return index;
+	}
+
+	/**
+	 * returns a copy of this index without removedTypes, and in which
+	 * changedTypes (e.g. the types of the compilation units that changed)
+	 * have their supertypes resolved again, as well as the direct subtypes of
+	 * removedTypes, which lost a supertype. Each of them gets a supertype
+	 * hierarchy of its own, instead of the hierarchy of the whole project, and
+	 * the closures are only computed again for them and their subtypes. This
+	 * index is left as it is, so the callers can compare the hierarchies
+	 * before and after the change.
+	 *
+	 * The types whose supertypes could not be resolved, and that
+	 * changedTypes would now resolve (e.g. a subclass of a class that has
+	 * just been created, or restored after it was deleted), are not found
+	 * this way, so the callers rebuild() the index instead when changedTypes
+	 * has types that this index does not contain. The local and anonymous
+	 * types of the units are not found either
+	 *
+	 * @param removedTypes
+	 * @param changedTypes
+	 * @param aMonitor
+	 * @return
+	 * @throws JavaModelException
+	 */
+	public TypeHierarchyIndex updated(Collection<IType> removedTypes, Collection<IType> changedTypes,
+			IProgressMonitor aMonitor) throws JavaModelException {
+		TypeHierarchyIndex index = new TypeHierarchyIndex();
+		index.types = types;
+		index.ids = new HashMap<IType, Integer>(ids);
+		index.supertypes = supertypes.clone();
+		index.subtypes = subtypes.clone();
+		index.implementingClasses = implementingClasses.clone();
+
+		// 1. take the removed types out, and note their subtypes
+		Set<IType> resolvedTypes = new LinkedHashSet<IType>(changedTypes);
+		Set<Integer> removedIds = new HashSet<Integer>();
+		for (IType type : removedTypes) {
+			Integer id = index.ids.remove(type);
+			if (id == null)
+				continue;
+			removedIds.add(id);
+			for (int supertype : index.supertypes[id])
+				index.unlink(supertype, id);
+			for (int subtype : index.subtypes[id])
+				resolvedTypes.add(types[subtype]);
+			index.supertypes[id] = NO_IDS;
+			index.subtypes[id] = NO_IDS;
+			index.implementingClasses[id] = NO_IDS;
+		}
+		resolvedTypes.removeAll(removedTypes);
+
+		// 2. resolve the supertypes of the changed types, and of the subtypes
+		// of the removed ones, again
+		Set<Integer> resolvedIds = new LinkedHashSet<Integer>();
+		for (IType type : resolvedTypes) {
+			if (!type.exists())
+				continue;
+			ITypeHierarchy hierarchy = type.newSupertypeHierarchy(aMonitor);
+			int id = index.intern(type, hierarchy);
+			int[] newSupertypes = index.internSupertypes(type, hierarchy);
+			for (int supertype : index.supertypes[id])
+				index.unlink(supertype, id);
+			index.supertypes[id] = newSupertypes;
+			for (int supertype : newSupertypes)
+				index.link(supertype, id);
+			resolvedIds.add(id);
+		}
+
+		// 3. the closures of the resolved types and of their subtypes, which
+		// are the only ones that may have changed
+		int numberOfTypes = index.types.length;
+		Set<Integer> affectedIds = new LinkedHashSet<Integer>(removedIds);
+		List<Integer> toVisit = new ArrayList<Integer>(resolvedIds);
+		while (!toVisit.isEmpty()) {
+			int id = toVisit.remove(toVisit.size() - 1);
+			if (affectedIds.add(id)) {
+				for (int subtype : index.subtypes[id])
+					toVisit.add(subtype);
+			}
+		}
+		index.allSupertypes = Arrays.copyOf(allSupertypes, numberOfTypes);
+		index.allSubtypes = Arrays.copyOf(allSubtypes, numberOfTypes);
+		for (int id = types.length; id < numberOfTypes; id++)
+			index.allSubtypes[id] = new BitSet();
+		for (int id : affectedIds)
+			index.allSupertypes[id] = null;
+		for (int id : removedIds)
+			index.allSupertypes[id] = new BitSet();
+		for (int id : affectedIds)
+			index.closeSupertypes(id);
+
+		// the subtypes are the inverse of the supertypes: only the ancestors
+		// that an affected type gained or lost change, and they get a copy of
+		// their bitset the first time
+		Set<Integer> copiedIds = new HashSet<Integer>();
+		for (int id : affectedIds) {
+			BitSet before = id < types.length ? allSupertypes[id] : new BitSet();
+			BitSet after = index.allSupertypes[id];
+			BitSet lost = (BitSet) before.clone();
+			lost.andNot(after);
+			BitSet gained = (BitSet) after.clone();
+			gained.andNot(before);
+			for (int ancestor = lost.nextSetBit(0); ancestor >= 0; ancestor = lost.nextSetBit(ancestor + 1))
+				index.allSubtypesForUpdate(ancestor, copiedIds).clear(id);
+			for (int ancestor = gained.nextSetBit(0); ancestor >= 0; ancestor = gained.nextSetBit(ancestor + 1))
+				index.allSubtypesForUpdate(ancestor, copiedIds).set(id);
+		}
+		for (int id : removedIds)
+			index.allSubtypes[id] = new BitSet();
+		return index;
+	}
+
+	/**
+	 * returns the number of aType, and adds it at the end of the index if it
+	 * is not there yet, with the supertypes that aHierarchy (a supertype
+	 * hierarchy of aType) gives
+	 */
+	private int intern(IType aType, ITypeHierarchy aHierarchy) throws JavaModelException {
+		Integer id = ids.get(aType);
+		if (id != null)
+			return id;
+		id = types.length;
+		types = Arrays.copyOf(types, id + 1);
+		types[id] = aType;
+		ids.put(aType, id);
+		supertypes = Arrays.copyOf(supertypes, id + 1);
+		subtypes = Arrays.copyOf(subtypes, id + 1);
+		implementingClasses = Arrays.copyOf(implementingClasses, id + 1);
+		supertypes[id] = NO_IDS;
+		subtypes[id] = NO_IDS;
+		implementingClasses[id] = NO_IDS;
+		return id;
+	}
+
+	/**
+	 * returns the numbers of the direct supertypes of aType in aHierarchy (a
+	 * supertype hierarchy of aType). The supertypes that are not in the index
+	 * yet (e.g. a library class that no type extended before) are added, with
+	 * their own supertypes
+	 */
+	private int[] internSupertypes(IType aType, ITypeHierarchy aHierarchy) throws JavaModelException {
+		IType[] someSupertypes = aHierarchy.getSupertypes(aType);
+		int[] someIds = new int[someSupertypes.length];
+		for (int i = 0; i < someSupertypes.length; i++) {
+			IType supertype = someSupertypes[i];
+			if (ids.containsKey(supertype))
+				someIds[i] = ids.get(supertype);
+			else {
+				someIds[i] = intern(supertype, aHierarchy);
+				supertypes[someIds[i]] = internSupertypes(supertype, aHierarchy);
+				for (int ancestor : supertypes[someIds[i]])
+					link(ancestor, someIds[i]);
+			}
+		}
+		return someIds;
+	}
+
+	/**
+	 * makes the type whose number is subtype a direct subtype (and, if it is a
+	 * class and supertype an interface, an implementing class) of supertype.
+	 * The rows are replaced, not modified, since they may be shared with
+	 * another index
+	 */
+	private void link(int supertype, int subtype) throws JavaModelException {
+		subtypes[supertype] = with(subtypes[supertype], subtype);
+		if (types[supertype].isInterface() && !types[subtype].isInterface())
+			implementingClasses[supertype] = with(implementingClasses[supertype], subtype);
+	}
+
+	private void unlink(int supertype, int subtype) {
+		subtypes[supertype] = without(subtypes[supertype], subtype);
+		implementingClasses[supertype] = without(implementingClasses[supertype], subtype);
+	}
+
+	private static int[] with(int[] someIds, int id) {
+		for (int other : someIds) {
+			if (other == id)
+				return someIds;
+		}
+		int[] newIds = Arrays.copyOf(someIds, someIds.length + 1);
+		newIds[someIds.length] = id;
+		return newIds;
+	}
+
+	private static int[] without(int[] someIds, int id) {
+		for (int i = 0; i < someIds.length; i++) {
+			if (someIds[i] == id) {
+				int[] newIds = new int[someIds.length - 1];
+				System.arraycopy(someIds, 0, newIds, 0, i);
+				System.arraycopy(someIds, i + 1, newIds, i, newIds.length - i);
+				return newIds;
+			}
+		}
+		return someIds;
+	}
+
+	private BitSet allSubtypesForUpdate(int id, Set<Integer> copiedIds) {
+		if (copiedIds.add(id))
+			allSubtypes[id] = (BitSet) allSubtypes[id].clone();
+		return allSubtypes[id];
+	}
+
+	private int[] idsOf(IType[] someTypes) {
+		int[] someIds = new int[someTypes.length];
+		int length = 0;
+		for (IType type : someTypes) {
+			Integer id = ids.get(type);
+			if (id != null)
+				someIds[length++] = id;
+		}
+		return length == someIds.length ? someIds : Arrays.copyOf(someIds, length);
+	}
+
+	private BitSet closeSupertypes(int id) {
+		if (allSupertypes[id] == null) {
+			BitSet ancestors = new BitSet();
+			// a cycle (in broken code) must not loop forever
+			allSupertypes[id] = ancestors;
+			for (int supertype : supertypes[id]) {
+				ancestors.set(supertype);
+				ancestors.or(closeSupertypes(supertype));
+			}
+			ancestors.clear(id);
+		}
+		return allSupertypes[id];
+	}
+
+	public int getNumberOfTypes() {
+		return types.length;
+	}
+
+	/**
+	 * returns the number of aType, or -1 if it is not in the index
+	 *
+	 * @param aType
+	 * @return
+	 */
+	public int idOf(IType aType) {
+		Integer id = ids.get(aType);
+		return id == null ? -1 : id;
+	}
+
+	public IType typeAt(int id) {
+		return types[id];
+	}
+
+	public boolean contains(IType aType) {
+		return ids.containsKey(aType);
+	}
+
+	/**
+	 * returns the numbers of all the supertypes of the type whose number is
+	 * id. Callers must NOT modify it
+	 *
+	 * @param id
+	 * @return
+	 */
+	public BitSet getAllSupertypeIds(int id) {
+		return allSupertypes[id];
+	}
+
+	/**
+	 * returns the numbers of all the subtypes of the type whose number is id.
+	 * Callers must NOT modify it
+	 *
+	 * @param id
+	 * @return
+	 */
+	public BitSet getAllSubtypeIds(int id) {
+		return allSubtypes[id];
+	}
+
+	public IType[] getSupertypes(IType aType) throws JavaModelException {
+		int id = idOf(aType);
+		return id < 0 ? hierarchyOf(aType).getSupertypes(aType) : typesOf(supertypes[id]);
+	}
+
+	public IType[] getSubtypes(IType aType) throws JavaModelException {
+		int id = idOf(aType);
+		return id < 0 ? hierarchyOf(aType).getSubtypes(aType) : typesOf(subtypes[id]);
+	}
+
+	public IType[] getImplementingClasses(IType aType) throws JavaModelException {
+		int id = idOf(aType);
+		return id < 0 ? hierarchyOf(aType).getImplementingClasses(aType) : typesOf(implementingClasses[id]);
+	}
+
+	public IType[] getAllSupertypes(IType aType) throws JavaModelException {
+		int id = idOf(aType);
+		return id < 0 ? hierarchyOf(aType).getAllSupertypes(aType) : typesOf(allSupertypes[id]);
+	}
+
+	public IType[] getAllSubtypes(IType aType) throws JavaModelException {
+		int id = idOf(aType);
+		return id < 0 ? hierarchyOf(aType).getAllSubtypes(aType) : typesOf(allSubtypes[id]);
+	}
+
+	private IType[] typesOf(int[] someIds) {
+		if (someIds.length == 0)
+			return NO_TYPES;
+		IType[] someTypes = new IType[someIds.length];
+		for (int i = 0; i < someIds.length; i++)
+			someTypes[i] = types[someIds[i]];
+		return someTypes;
+	}
+
+	private IType[] typesOf(BitSet someIds) {
+		if (someIds.isEmpty())
+			return NO_TYPES;
+		List<IType> someTypes = new ArrayList<IType>(someIds.cardinality());
+		for (int id = someIds.nextSetBit(0); id >= 0; id = someIds.nextSetBit(id + 1))
+			someTypes.add(types[id]);
+		return someTypes.toArray(new IType[someTypes.size()]);
+	}
+
+	private synchronized ITypeHierarchy hierarchyOf(IType aType) throws JavaModelException {
+		ITypeHierarchy hierarchy = typeHierarchies.get(aType);
+		if (hierarchy == null) {
+			hierarchy = aType.newTypeHierarchy(new NullProgressMonitor());
+			typeHierarchies.put(aType, hierarchy);
+		}
+		return hierarchy;
+	}
+
+}
@@ -0,0 +1,29 @@
+package ca.uqam.latece.aspects.extractor.lattice;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * receives the candidate features found by a <code>CandidateFeatureMiner</code>,
+ * one at a time, as they are mined. The sets passed to the sink are not
+ * modified afterwards, so the sink may keep them
+ */
+public interface CandidateFeatureSink {
+
+	/**
+	 * called once per candidate feature, i.e. per concept whose extent has more
+	 * than one element and whose intent is not empty (see
+	 * <code>FeatureDetectorVisitor.processNode()</code>). The calls are never
+	 * concurrent, but they may come from different threads, in any order
+	 * 
+	 * @param extent
+	 *            the types that have the feature
+	 * @param intent
+	 *            the methods of the feature
+	 * @param childIntents
+	 *            the intents of the candidate features right below this one,
+	 *            i.e. of its children in the lattice
+	 */
+	public void candidateFeatureFound(Set<Object> extent, Set<Object> intent, Collection<Set<Object>> childIntents);
+
+}
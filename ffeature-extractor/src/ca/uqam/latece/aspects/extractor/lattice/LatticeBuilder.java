@@ -3,10 +3,69 @@ package ca.uqam.latece.aspects.extractor.lattice;
 import java.util.Set;
 
 import ca.uqam.latece.aspects.extractor.input.RelationBuilder;
+import ca.uqam.latece.aspects.extractor.lattice.impl.AddIntentLatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.impl.CoronLatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.impl.DivideAndConquerLatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.impl.FCbOLatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.impl.LatticeBuilderImpl;
 import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
 import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
 
 public interface LatticeBuilder {
+
+	/**
+	 * the lattice construction algorithms we have. GODIN is the incremental
+	 * algorithm of Godin et al. with hash sets, GODIN_BITSET the same with
+	 * bitset extents and intents, ADD_INTENT the incremental algorithm of van
+	 * der Merwe et al., FCBO the parallel batch enumeration,
+	 * DIVIDE_AND_CONQUER the batch construction by parts, and CORON_CHARM the
+	 * Charm closed itemset miner of the Coron platform
+	 */
+	public enum Algorithm {
+		GODIN, GODIN_BITSET, ADD_INTENT, FCBO, DIVIDE_AND_CONQUER, CORON_CHARM
+	}
+
+	/**
+	 * returns a new builder that implements anAlgorithm
+	 * @param anAlgorithm
+	 * @return
+	 */
+	public static LatticeBuilder newLatticeBuilder(Algorithm anAlgorithm) {
+		switch (anAlgorithm) {
+		case GODIN_BITSET:
+			return new LatticeBuilderImpl(true);
+		case ADD_INTENT:
+			return new AddIntentLatticeBuilderImpl(true);
+		case FCBO:
+			return new FCbOLatticeBuilderImpl();
+		case DIVIDE_AND_CONQUER:
+			return new DivideAndConquerLatticeBuilderImpl();
+		case CORON_CHARM:
+			return new CoronLatticeBuilderImpl();
+		default:
+			return new LatticeBuilderImpl();
+		}
+	}
+
+	/**
+	 * returns a new builder that implements anAlgorithm, and that only builds
+	 * the concepts whose extents have at least minimumSupport objects (an
+	 * iceberg lattice, with a synthetic bottom). Only the batch algorithms
+	 * support this: the incremental ones need all the concepts to go on, so
+	 * the builder cannot add() rows to its lattices when minimumSupport is
+	 * more than 1
+	 * @param anAlgorithm
+	 * @param minimumSupport
+	 * @return
+	 */
+	public static LatticeBuilder newLatticeBuilder(Algorithm anAlgorithm, int minimumSupport) {
+		LatticeBuilder builder = newLatticeBuilder(anAlgorithm);
+		if (builder instanceof FCbOLatticeBuilderImpl)
+			((FCbOLatticeBuilderImpl) builder).setMinimumSupport(minimumSupport);
+		else if (minimumSupport > 0)
+			throw new IllegalArgumentException(anAlgorithm + " does not support a minimum support");
+		return builder;
+	}
 	
 	/**
 	 * builds a lattice from a relation. We pass the relationbuilder along because it may carry
@@ -28,7 +87,12 @@ public interface LatticeBuilder {
 	
 	
 	/**
-	 * this method implements Godin et al.'s incremental algorithm
+	 * this method implements Godin et al.'s incremental algorithm. The builders
+	 * of iceberg lattices (e.g. an <code>FCbOLatticeBuilderImpl</code> with a
+	 * minimum support, see isIceberg()) leave concepts out, so they do not
+	 * support it, and throw an <code>UnsupportedOperationException</code>:
+	 * callers that insert rows one by one should check the builder before the
+	 * first row, as initializeTopBottom() does for those builders
 	 * @param entity
 	 * @param image
 	 */
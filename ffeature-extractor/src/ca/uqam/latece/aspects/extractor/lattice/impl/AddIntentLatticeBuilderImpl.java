@@ -0,0 +1,200 @@
+package ca.uqam.latece.aspects.extractor.lattice.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.BitSetElementSet;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.NodeIdSet;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.ReducedLatticeNodeImpl;
+
+/**
+ * this class implements the AddIntent incremental algorithm, proposed by van
+ * der Merwe, Obiedkov and Kourie in "AddIntent: a new incremental algorithm
+ * for constructing concept lattices" (ICFCA 2004).
+ *
+ * Where Algorithm 1 of Godin et al. (see <code>LatticeBuilderImpl</code>)
+ * walks all the nodes of the lattice, bucket by bucket, for every new object,
+ * AddIntent starts from the bottom and climbs towards the node whose intent
+ * is the closure of the image of the new object (the canonical generator).
+ * The missing concepts are created recursively, from the parents of the
+ * generator, so only the part of the lattice that is above the new object is
+ * ever looked at. The extent of the new object is then propagated upwards from
+ * its object concept.
+ *
+ * The builder keeps the same contract as <code>LatticeBuilderImpl</code>:
+ * same initialisation of the top and bottom (the bottom must have all the
+ * properties), same <code>add(Lattice, Object, Set)</code>, same storage modes
+ * and same resulting graph, so the two can be swapped. The intent index of the
+ * lattice is kept up to date, and used to find existing concepts with a single
+ * probe.
+ */
+public class AddIntentLatticeBuilderImpl extends LatticeBuilderImpl {
+
+	public AddIntentLatticeBuilderImpl() {
+		super();
+	}
+
+	public AddIntentLatticeBuilderImpl(boolean useBitSets) {
+		super(useBitSets);
+	}
+
+	@Override
+	public void add(Lattice lattice, Object entity, Set<Object> image) {
+		if (lattice.getBottom() instanceof ReducedLatticeNodeImpl)
+			throw new UnsupportedOperationException("cannot add objects to a lattice with reduced labels");
+		if (lattice.getIntentIndex().size() == 0)
+			indexNodes(lattice);
+
+		// 1. get (or create) the concept whose intent is the image of entity,
+		// starting from the bottom
+		LatticeNode bottom = lattice.getBottom();
+		LatticeNode objectConcept = addIntent(lattice, intentLike(bottom, image), bottom);
+
+		// 2. add entity to the extent of the object concept and of all the
+		// concepts above it. An extent that already has entity is the extent
+		// of a concept whose ancestors already have it too (e.g. the top), so
+		// we do not need to go above such concepts
+		NodeIdSet visited = new NodeIdSet();
+		List<LatticeNode> toVisit = new ArrayList<LatticeNode>();
+		toVisit.add(objectConcept);
+		while (!toVisit.isEmpty()) {
+			LatticeNode node = toVisit.remove(toVisit.size() - 1);
+			if (!visited.add(node) || node.getExtent().contains(entity))
+				continue;
+			node.addToExtent(entity);
+			toVisit.addAll(node.getParents());
+		}
+	}
+
+	/**
+	 * this method implements the function AddIntent of the paper: it returns
+	 * the node whose intent is anIntent, creating it (and the nodes that are
+	 * missing above it) if needed. aGenerator is a node whose intent contains
+	 * anIntent
+	 *
+	 * @param lattice
+	 * @param anIntent
+	 * @param aGenerator
+	 * @return
+	 */
+	protected LatticeNode addIntent(Lattice lattice, Set<Object> anIntent, LatticeNode aGenerator) {
+		// the intent index gives us the existing nodes for free
+		LatticeNode existingNode = lattice.getIntentIndex().find(anIntent);
+		if (existingNode != null)
+			return existingNode;
+
+		// 1. GeneratorConcept <- GetMaximalConcept(intent, GeneratorConcept, L)
+		LatticeNode generator = getMaximalConcept(anIntent, aGenerator);
+		// 2. IF GeneratorConcept.Intent = intent THEN return GeneratorConcept
+		// (we know that the intent of generator contains anIntent)
+		if (generator.getIntent().size() == anIntent.size())
+			return generator;
+
+		// 3. GeneratorParents <- Parents(GeneratorConcept); NewParents <- {}
+		// we take a copy, since the recursive calls add links in the lattice
+		List<LatticeNode> generatorParents = new ArrayList<LatticeNode>(generator.getParents());
+		List<LatticeNode> newParents = new ArrayList<LatticeNode>();
+		// 4. FOR each Candidate in GeneratorParents
+		for (LatticeNode candidate : generatorParents) {
+			// 5. IF Candidate.Intent is not included in intent
+			if (!anIntent.containsAll(candidate.getIntent())) {
+				// 6. Candidate <- AddIntent(Candidate.Intent INTER intent,
+				// Candidate, L)
+				Set<Object> intersection = intentLike(candidate, candidate.getIntent());
+				intersection.retainAll(anIntent);
+				candidate = addIntent(lattice, intersection, candidate);
+			}
+			// 7. keep only the most specific candidates
+			boolean addParent = true;
+			for (Iterator<LatticeNode> iterator = newParents.iterator(); iterator.hasNext();) {
+				LatticeNode parent = iterator.next();
+				if (parent.getIntent().containsAll(candidate.getIntent())) {
+					addParent = false;
+					break;
+				} else if (candidate.getIntent().containsAll(parent.getIntent())) {
+					iterator.remove();
+				}
+			}
+			if (addParent)
+				newParents.add(candidate);
+		}
+
+		// 8. NewConcept <- (GeneratorConcept.Extent, intent)
+		LatticeNode newNode = createNodeLike(generator);
+		newNode.addCollectionToExtent(generator.getExtent());
+		newNode.addCollectionToIntent(anIntent);
+		lattice.getIntentIndex().add(newNode);
+
+		// 9. move the links between the new parents and the generator to the
+		// new node, and put the new node above the generator
+		for (LatticeNode parent : newParents) {
+			removeLink(parent, generator);
+			parent.addChild(newNode);
+			newNode.addParent(parent);
+		}
+		newNode.addChild(generator);
+		generator.addParent(newNode);
+		return newNode;
+	}
+
+	/**
+	 * this method implements the function GetMaximalConcept of the paper: it
+	 * climbs from aGenerator as long as there is a parent whose intent
+	 * contains anIntent, and returns the node where it stops, i.e. the node with
+	 * the smallest intent that contains anIntent
+	 *
+	 * @param anIntent
+	 * @param aGenerator
+	 * @return
+	 */
+	protected LatticeNode getMaximalConcept(Set<Object> anIntent, LatticeNode aGenerator) {
+		LatticeNode generator = aGenerator;
+		boolean parentIsMaximal = true;
+		while (parentIsMaximal) {
+			parentIsMaximal = false;
+			for (LatticeNode parent : generator.getParents()) {
+				if (parent.getIntent().containsAll(anIntent)) {
+					generator = parent;
+					parentIsMaximal = true;
+					break;
+				}
+			}
+		}
+		return generator;
+	}
+
+	/**
+	 * removes the edge parent -> child, if any
+	 *
+	 * @param parent
+	 * @param child
+	 */
+	protected void removeLink(LatticeNode parent, LatticeNode child) {
+		parent.removeChild(child);
+		child.removeParent(parent);
+	}
+
+	/**
+	 * returns a copy of someProperties that uses the same storage (hash set or
+	 * bitset) as the intent of aNode
+	 *
+	 * @param aNode
+	 * @param someProperties
+	 * @return
+	 */
+	protected Set<Object> intentLike(LatticeNode aNode, Set<Object> someProperties) {
+		Set<Object> intent = null;
+		if (aNode.getIntent() instanceof BitSetElementSet)
+			intent = new BitSetElementSet(((BitSetElementSet) aNode.getIntent()).getIndex());
+		else
+			intent = new HashSet<Object>();
+		intent.addAll(someProperties);
+		return intent;
+	}
+
+}
@@ -0,0 +1,148 @@
+package ca.uqam.latece.aspects.extractor.lattice.impl;
+
+/**
+ * word-wise operations on bitsets stored as <code>long[]</code>, used by the
+ * batch builders. All the arrays of a given context have the same length, so
+ * the methods below do not deal with arrays of different lengths.
+ */
+final class Bits {
+
+	private Bits() {
+	}
+
+	static int wordsFor(int nbits) {
+		return nbits == 0 ? 0 : ((nbits - 1) >>> 6) + 1;
+	}
+
+	static boolean get(long[] words, int bit) {
+		return (words[bit >>> 6] & (1L << bit)) != 0;
+	}
+
+	static void set(long[] words, int bit) {
+		words[bit >>> 6] |= 1L << bit;
+	}
+
+	static void clear(long[] words, int bit) {
+		words[bit >>> 6] &= ~(1L << bit);
+	}
+
+	/**
+	 * sets the first nbits bits of words, and clears the others
+	 *
+	 * @param words
+	 * @param nbits
+	 */
+	static void setFirst(long[] words, int nbits) {
+		for (int i = 0; i < words.length; i++) {
+			int remaining = nbits - (i << 6);
+			if (remaining >= 64)
+				words[i] = -1L;
+			else if (remaining <= 0)
+				words[i] = 0L;
+			else
+				words[i] = (1L << remaining) - 1;
+		}
+	}
+
+	static int cardinality(long[] words) {
+		int cardinality = 0;
+		for (long word : words)
+			cardinality += Long.bitCount(word);
+		return cardinality;
+	}
+
+	static boolean isEmpty(long[] words) {
+		for (long word : words) {
+			if (word != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * dest <- a AND b. dest may be a or b
+	 */
+	static void and(long[] a, long[] b, long[] dest) {
+		for (int i = 0; i < dest.length; i++)
+			dest[i] = a[i] & b[i];
+	}
+
+	/**
+	 * dest <- a OR b. dest may be a or b
+	 */
+	static void or(long[] a, long[] b, long[] dest) {
+		for (int i = 0; i < dest.length; i++)
+			dest[i] = a[i] | b[i];
+	}
+
+	/**
+	 * true if a is included in b
+	 */
+	static boolean isSubset(long[] a, long[] b) {
+		for (int i = 0; i < a.length; i++) {
+			if ((a[i] & ~b[i]) != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * true if a and b have the same bits among the bits 0 .. bit - 1
+	 */
+	static boolean equalBelow(long[] a, long[] b, int bit) {
+		int fullWords = bit >>> 6;
+		for (int i = 0; i < fullWords; i++) {
+			if (a[i] != b[i])
+				return false;
+		}
+		int remaining = bit & 63;
+		if (remaining == 0)
+			return true;
+		long mask = (1L << remaining) - 1;
+		return ((a[fullWords] ^ b[fullWords]) & mask) == 0;
+	}
+
+	/**
+	 * true if the bits 0 .. bit - 1 of a are all included in b
+	 */
+	static boolean isSubsetBelow(long[] a, long[] b, int bit) {
+		int fullWords = bit >>> 6;
+		for (int i = 0; i < fullWords; i++) {
+			if ((a[i] & ~b[i]) != 0)
+				return false;
+		}
+		int remaining = bit & 63;
+		if (remaining == 0)
+			return true;
+		long mask = (1L << remaining) - 1;
+		return (a[fullWords] & ~b[fullWords] & mask) == 0;
+	}
+
+	/**
+	 * returns the index of the first set bit at or after fromBit, or -1
+	 */
+	static int nextSetBit(long[] words, int fromBit) {
+		int wordIndex = fromBit >>> 6;
+		if (wordIndex >= words.length)
+			return -1;
+		long word = words[wordIndex] & (-1L << fromBit);
+		while (true) {
+			if (word != 0)
+				return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+			if (++wordIndex == words.length)
+				return -1;
+			word = words[wordIndex];
+		}
+	}
+
+	/**
+	 * returns the number of bits set in (a AND NOT b)
+	 */
+	static int cardinalityOfDifference(long[] a, long[] b) {
+		int cardinality = 0;
+		for (int i = 0; i < a.length; i++)
+			cardinality += Long.bitCount(a[i] & ~b[i]);
+		return cardinality;
+	}
+
+}
@@ -0,0 +1,117 @@
+package ca.uqam.latece.aspects.extractor.lattice.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import ca.uqam.latece.aspects.extractor.lattice.CandidateFeatureSink;
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+
+/**
+ * this class mines the candidate features of a relation directly, without
+ * building its lattice.
+ *
+ * <code>FeatureDetectorVisitor.processNode()</code> retains the nodes whose
+ * extent has more than one element, whose intent is not empty, and that have
+ * no child with the same extent size. In a concept lattice, the extent of a
+ * child is strictly smaller than that of its parent, so the last condition
+ * only rules out the extra top (G, {}) that the builders add above (G, G'):
+ * the candidate features are exactly the concepts with at least two objects
+ * and at least one attribute, i.e. the closed itemsets of support 2 or more.
+ *
+ * These are enumerated with FCbO (see <code>FCbOEnumerator</code>), with a
+ * minimum support of 2, so the branches below are pruned, and each concept is
+ * handed to a <code>CandidateFeatureSink</code> as soon as it is found,
+ * together with its children among the candidate features. The children are
+ * computed locally, as in <code>ConceptLatticeAssembler</code>: for every
+ * attribute m not in B, D = ((A INTER {m}')' is the intent of a child iff it is
+ * obtained from all the attributes of D - B. Nothing is kept once a concept
+ * is handed to the sink, so the memory used does not grow with the number of
+ * candidate features.
+ */
+public class CandidateFeatureMiner {
+
+	/**
+	 * a candidate feature is shared by more than one type
+	 */
+	public static final int MINIMUM_SUPPORT = 2;
+
+	private static final int DEFAULT_PARALLEL_DEPTH = 4;
+
+	private int parallelism;
+
+	public CandidateFeatureMiner() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public CandidateFeatureMiner(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * mines the candidate features of aRelation, and hands them to aSink
+	 *
+	 * @param aRelation
+	 * @param aSink
+	 */
+	public void mine(Relation aRelation, final CandidateFeatureSink aSink) {
+		final FormalContext context = new FormalContext(aRelation);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			new FCbOEnumerator(context, MINIMUM_SUPPORT, DEFAULT_PARALLEL_DEPTH).enumerate(pool,
+					context.allObjects(), new Consumer<Concept>() {
+						@Override
+						public void accept(Concept aConcept) {
+							// the enumeration starts with the concept of all the
+							// objects, which may be too small or have no attribute
+							if (Bits.cardinality(aConcept.extent) >= MINIMUM_SUPPORT && !Bits.isEmpty(aConcept.intent))
+								emit(context, aConcept, aSink);
+						}
+					});
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * computes the children of aConcept among the candidate features, and
+	 * hands the lot to aSink
+	 *
+	 * @param aContext
+	 * @param aConcept
+	 * @param aSink
+	 */
+	protected void emit(FormalContext aContext, Concept aConcept, CandidateFeatureSink aSink) {
+		// child (by intent) -> number of attributes that generate it
+		Map<Concept, int[]> generators = new HashMap<Concept, int[]>();
+		for (int attributeId = 0; attributeId < aContext.getNumberOfAttributes(); attributeId++) {
+			if (Bits.get(aConcept.intent, attributeId))
+				continue;
+			long[] childExtent = aContext.newObjectSet();
+			Bits.and(aConcept.extent, aContext.getColumn(attributeId), childExtent);
+			if (Bits.cardinality(childExtent) < MINIMUM_SUPPORT)
+				continue;
+			Concept child = new Concept(childExtent, aContext.intentOf(childExtent));
+			int[] count = generators.get(child);
+			if (count == null)
+				generators.put(child, new int[] { 1 });
+			else
+				count[0]++;
+		}
+		List<Set<Object>> childIntents = new ArrayList<Set<Object>>();
+		for (Map.Entry<Concept, int[]> entry : generators.entrySet()) {
+			if (entry.getValue()[0] == Bits.cardinalityOfDifference(entry.getKey().intent, aConcept.intent))
+				childIntents.add(aContext.toAttributeSet(entry.getKey().intent));
+		}
+		Set<Object> extent = aContext.toObjectSet(aConcept.extent);
+		Set<Object> intent = aContext.toAttributeSet(aConcept.intent);
+		synchronized (aSink) {
+			aSink.candidateFeatureFound(extent, intent, childIntents);
+		}
+	}
+
+}
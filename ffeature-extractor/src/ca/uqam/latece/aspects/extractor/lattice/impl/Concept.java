@@ -0,0 +1,42 @@
+package ca.uqam.latece.aspects.extractor.lattice.impl;
+
+import java.util.Arrays;
+
+/**
+ * a formal concept (extent, intent) as produced by the batch builders, with
+ * both sides stored as bitsets over the ids of a <code>FormalContext</code>.
+ *
+ * Two concepts of the same context are equal iff their intents are equal, and
+ * they hash on their intent, so that concepts can be looked up by intent
+ * without building lattice nodes.
+ */
+final class Concept {
+
+	final long[] extent;
+
+	final long[] intent;
+
+	private final int hash;
+
+	Concept(long[] anExtent, long[] anIntent) {
+		extent = anExtent;
+		intent = anIntent;
+		hash = Arrays.hashCode(anIntent);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object anObject) {
+		if (anObject == this)
+			return true;
+		if (!(anObject instanceof Concept))
+			return false;
+		Concept other = (Concept) anObject;
+		return hash == other.hash && Arrays.equals(intent, other.intent);
+	}
+
+}
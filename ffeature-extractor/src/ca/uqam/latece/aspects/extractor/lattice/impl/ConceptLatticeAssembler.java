@@ -0,0 +1,337 @@
+package ca.uqam.latece.aspects.extractor.lattice.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.LabelCache;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.LatticeImpl;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.LatticeNodeImpl;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.ReducedLatticeNodeImpl;
+
+/**
+ * this class turns the complete set of concepts of a context, as enumerated by
+ * a batch builder, into a <code>LatticeImpl</code> made of
+ * <code>LatticeNodeImpl</code>s, i.e. the same graph as the one built by
+ * <code>LatticeBuilderImpl</code>.
+ *
+ * The lower covers (children) of a concept (A,B) are found as in Lindig's
+ * algorithm: for every attribute m not in B, we compute D = ((A INTER {m}')',
+ * the intent of the smallest concept below (A,B) that has m. A concept D
+ * obtained this way is a child of (A,B) iff it is obtained from exactly
+ * ||D - B|| attributes, i.e. from all its attributes that are not in B. The
+ * covers of different concepts are independent, so they are computed in
+ * parallel, and the edges are then wired sequentially.
+ *
+ * The result follows the conventions of <code>LatticeBuilderImpl</code>: the
+ * top has an empty intent, and the bottom has all the attributes. If the
+ * objects share some attributes, the top (G, {}) is added on top of the
+ * concept (G, G'), as in the incremental algorithm. The nodes store their
+ * extents and intents as bitsets, and are registered in the intent index of
+ * the lattice, so the incremental algorithm can go on from the result.
+ *
+ * With a minimum support k > 0, the concepts are those of an iceberg lattice
+ * (extents of k objects or more). Since the concepts above a kept concept are
+ * kept too, the covers among the kept concepts are the covers of the full
+ * lattice: we just ignore the closures whose extents are too small. If the
+ * bottom (M', M) is not among the concepts, a synthetic bottom with that
+ * extent and intent is put below the concepts that have no children.
+ *
+ * With reduced labelling (see <code>ReducedLatticeNodeImpl</code>), each node
+ * only gets the objects whose object concept it is, i.e. the objects g such
+ * that g' is its intent, and the attributes whose attribute concept it is,
+ * i.e. the attributes m such that m' is its extent. The full extents and
+ * intents are never stored in the nodes, and the nodes are not put in the
+ * intent index. An iceberg lattice cannot have reduced labels, since the
+ * object concepts of most objects are missing.
+ */
+class ConceptLatticeAssembler {
+
+	/**
+	 * below this number of concepts, covers are computed in the current thread
+	 */
+	private static final int SEQUENTIAL_THRESHOLD = 64;
+
+	private FormalContext context;
+
+	private List<Concept> concepts;
+
+	/**
+	 * concept (i.e. intent) -> position in concepts
+	 */
+	private Map<Concept, Integer> positions;
+
+	/**
+	 * position of a concept -> positions of its children
+	 */
+	private int[][] children;
+
+	private int minimumSupport;
+
+	/**
+	 * see LatticeBuilderImpl.setReducedLabelling()
+	 */
+	private int labelCacheSize;
+
+	/**
+	 * the caches shared by the nodes, with reduced labels
+	 */
+	private LabelCache extents;
+
+	private LabelCache intents;
+
+	/**
+	 * the concepts are taken over by the assembler: their arrays become the
+	 * extents and intents of the nodes
+	 *
+	 * @param aContext
+	 * @param someConcepts
+	 */
+	ConceptLatticeAssembler(FormalContext aContext, Collection<Concept> someConcepts) {
+		this(aContext, someConcepts, 0);
+	}
+
+	/**
+	 * creates an assembler for the concepts of an iceberg lattice, whose
+	 * extents have at least minimumSupport objects
+	 *
+	 * @param aContext
+	 * @param someConcepts
+	 * @param minimumSupport
+	 */
+	ConceptLatticeAssembler(FormalContext aContext, Collection<Concept> someConcepts, int minimumSupport) {
+		this(aContext, someConcepts, minimumSupport, LatticeBuilderImpl.FULL_LABELLING);
+	}
+
+	/**
+	 * creates an assembler for the concepts of a lattice whose nodes have
+	 * reduced labels, unless labelCacheSize is
+	 * <code>LatticeBuilderImpl.FULL_LABELLING</code>
+	 *
+	 * @param aContext
+	 * @param someConcepts
+	 * @param minimumSupport
+	 * @param labelCacheSize
+	 */
+	ConceptLatticeAssembler(FormalContext aContext, Collection<Concept> someConcepts, int minimumSupport,
+			int labelCacheSize) {
+		if (minimumSupport > 1 && labelCacheSize != LatticeBuilderImpl.FULL_LABELLING)
+			throw new UnsupportedOperationException("an iceberg lattice cannot have reduced labels");
+		this.minimumSupport = minimumSupport;
+		this.labelCacheSize = labelCacheSize;
+		context = aContext;
+		concepts = new ArrayList<Concept>(someConcepts);
+		positions = new HashMap<Concept, Integer>(2 * concepts.size());
+		for (int position = 0; position < concepts.size(); position++)
+			positions.put(concepts.get(position), position);
+		children = new int[concepts.size()][];
+	}
+
+	LatticeImpl assemble(ForkJoinPool aPool) {
+		// 1. compute the lower covers, in parallel
+		aPool.invoke(new CoversTask(0, concepts.size()));
+
+		// 2. create the nodes
+		LatticeNode[] nodes = new LatticeNode[concepts.size()];
+		List<List<Object>> ownObjects = null, ownAttributes = null;
+		if (isReducedLabelling()) {
+			extents = new LabelCache(labelCacheSize);
+			intents = new LabelCache(labelCacheSize);
+			ownObjects = ownElements(true);
+			ownAttributes = ownElements(false);
+		}
+		for (int position = 0; position < nodes.length; position++) {
+			if (isReducedLabelling())
+				nodes[position] = createReducedNode(ownObjects.get(position), ownAttributes.get(position));
+			else
+				nodes[position] = createNode(concepts.get(position).extent, concepts.get(position).intent);
+		}
+
+		// 3. wire the edges
+		for (int position = 0; position < nodes.length; position++) {
+			for (int child : children[position]) {
+				nodes[position].addChild(nodes[child]);
+				nodes[child].addParent(nodes[position]);
+			}
+		}
+
+		// 4. top and bottom
+		LatticeImpl lattice = new LatticeImpl();
+		List<LatticeNode> addedNodes = new ArrayList<LatticeNode>();
+		long[] allObjects = context.allObjects();
+		int topPosition = positionOf(context.intentOf(allObjects));
+		LatticeNode top = nodes[topPosition];
+		if (!Bits.isEmpty(concepts.get(topPosition).intent)) {
+			LatticeNode realTop = top;
+			top = createNode(allObjects, context.newAttributeSet());
+			top.addChild(realTop);
+			realTop.addParent(top);
+			addedNodes.add(top);
+		}
+		LatticeNode bottom = null;
+		Integer bottomPosition = positions.get(new Concept(null, context.allAttributes()));
+		if (bottomPosition == null) {
+			// iceberg lattice: synthetic bottom below the concepts that have no
+			// children left
+			bottom = createNode(context.extentOf(context.allAttributes()), context.allAttributes());
+			for (LatticeNode node : nodes) {
+				if (node.getChildren().isEmpty()) {
+					node.addChild(bottom);
+					bottom.addParent(node);
+				}
+			}
+			addedNodes.add(bottom);
+		} else
+			bottom = nodes[bottomPosition];
+		if (bottom == top) {
+			// no attributes at all: the incremental algorithm keeps a bottom
+			// with an empty extent below the top
+			LatticeNode realBottom = bottom;
+			bottom = createNode(context.newObjectSet(), context.allAttributes());
+			realBottom.addChild(bottom);
+			bottom.addParent(realBottom);
+			addedNodes.add(bottom);
+		}
+		lattice.setTop(top);
+		lattice.setBottom(bottom);
+
+		// 5. index the nodes by intent
+		if (!isReducedLabelling()) {
+			for (LatticeNode node : nodes)
+				lattice.getIntentIndex().add(node);
+			for (LatticeNode node : addedNodes)
+				lattice.getIntentIndex().add(node);
+		}
+		return lattice;
+	}
+
+	private boolean isReducedLabelling() {
+		return labelCacheSize != LatticeBuilderImpl.FULL_LABELLING;
+	}
+
+	/**
+	 * creates a bitset node with anExtent and anIntent. With reduced labels,
+	 * this is one of the nodes that we add to the concepts (the top, or the
+	 * bottom), which introduce no object and no attribute
+	 *
+	 * @param anExtent
+	 * @param anIntent
+	 * @return
+	 */
+	private LatticeNode createNode(long[] anExtent, long[] anIntent) {
+		if (isReducedLabelling())
+			return createReducedNode(Collections.emptyList(), Collections.emptyList());
+		LatticeNodeImpl node = new LatticeNodeImpl(context.getObjectIndex(), context.getAttributeIndex());
+		node.setExtent(context.toObjectSet(anExtent));
+		node.setIntent(context.toAttributeSet(anIntent));
+		return node;
+	}
+
+	private LatticeNode createReducedNode(List<Object> someObjects, List<Object> someAttributes) {
+		return new ReducedLatticeNodeImpl(someObjects, someAttributes, context.getObjectIndex(),
+				context.getAttributeIndex(), extents, intents);
+	}
+
+	/**
+	 * returns, for each concept, the objects whose object concept it is (if
+	 * objects is true), or the attributes whose attribute concept it is. The
+	 * object concept of g has g' as its intent, and the attribute concept of m
+	 * has m' as its extent
+	 *
+	 * @param objects
+	 * @return
+	 */
+	private List<List<Object>> ownElements(boolean objects) {
+		List<List<Object>> ownElements = new ArrayList<List<Object>>(concepts.size());
+		for (int position = 0; position < concepts.size(); position++)
+			ownElements.add(new ArrayList<Object>(0));
+		if (objects) {
+			for (int objectId = 0; objectId < context.getNumberOfObjects(); objectId++)
+				ownElements.get(positionOf(context.getRow(objectId)))
+						.add(context.getObjectIndex().elementAt(objectId));
+		} else {
+			for (int attributeId = 0; attributeId < context.getNumberOfAttributes(); attributeId++)
+				ownElements.get(positionOf(context.intentOf(context.getColumn(attributeId))))
+						.add(context.getAttributeIndex().elementAt(attributeId));
+		}
+		return ownElements;
+	}
+
+	private int positionOf(long[] anIntent) {
+		Integer position = positions.get(new Concept(null, anIntent));
+		if (position == null)
+			throw new IllegalStateException("the concepts given to the assembler are not all the concepts of the context");
+		return position;
+	}
+
+	/**
+	 * returns the positions of the children of aConcept
+	 *
+	 * @param aConcept
+	 * @return
+	 */
+	private int[] lowerCovers(Concept aConcept) {
+		// position of D -> number of attributes m that generate D
+		Map<Integer, int[]> generators = new HashMap<Integer, int[]>();
+		long[] scratch = context.newObjectSet();
+		for (int attributeId = 0; attributeId < context.getNumberOfAttributes(); attributeId++) {
+			if (Bits.get(aConcept.intent, attributeId))
+				continue;
+			Bits.and(aConcept.extent, context.getColumn(attributeId), scratch);
+			if (minimumSupport > 0 && Bits.cardinality(scratch) < minimumSupport)
+				continue;
+			int position = positionOf(context.intentOf(scratch));
+			int[] count = generators.get(position);
+			if (count == null)
+				generators.put(position, new int[] { 1 });
+			else
+				count[0]++;
+		}
+		int[] covers = new int[generators.size()];
+		int numberOfCovers = 0;
+		for (Map.Entry<Integer, int[]> entry : generators.entrySet()) {
+			long[] childIntent = concepts.get(entry.getKey()).intent;
+			if (entry.getValue()[0] == Bits.cardinalityOfDifference(childIntent, aConcept.intent))
+				covers[numberOfCovers++] = entry.getKey();
+		}
+		int[] result = new int[numberOfCovers];
+		System.arraycopy(covers, 0, result, 0, numberOfCovers);
+		return result;
+	}
+
+	/**
+	 * computes the covers of the concepts from start (inclusive) to end
+	 * (exclusive), splitting the range until it is small enough
+	 */
+	private class CoversTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private int start;
+
+		private int end;
+
+		CoversTask(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= SEQUENTIAL_THRESHOLD) {
+				for (int position = start; position < end; position++)
+					children[position] = lowerCovers(concepts.get(position));
+			} else {
+				int middle = (start + end) >>> 1;
+				invokeAll(new CoversTask(start, middle), new CoversTask(middle, end));
+			}
+		}
+	}
+
+}
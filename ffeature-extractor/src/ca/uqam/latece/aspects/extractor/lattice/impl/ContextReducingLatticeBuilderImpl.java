@@ -0,0 +1,71 @@
+package ca.uqam.latece.aspects.extractor.lattice.impl;
+
+import java.util.Set;
+
+import ca.uqam.latece.aspects.extractor.input.RelationBuilder;
+import ca.uqam.latece.aspects.extractor.lattice.LatticeBuilder;
+import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+
+/**
+ * this class builds the lattice of a relation with another builder, but on
+ * the clarified and reduced relation (see <code>ContextReduction</code>):
+ * the types with the same interface are inserted once, the methods that always
+ * come together are carried by one of them, and the methods whose types are
+ * exactly the types that have some other methods are left out. The lattice of
+ * the reduced relation has the same shape as the lattice of the relation, and
+ * the left-out elements are put back in its extents and intents once it is
+ * built.
+ *
+ * This pays off on the relations of real code bases, where many types share
+ * their interface (e.g. the subclasses that override nothing) and many
+ * methods come in groups (e.g. getters and setters).
+ *
+ * The wrapped builder must build complete, fully labelled lattices: the
+ * reduced labels and the minimum support (which counts the merged types
+ * once) are not supported.
+ */
+public class ContextReducingLatticeBuilderImpl implements LatticeBuilder {
+
+	private LatticeBuilder builder;
+
+	public ContextReducingLatticeBuilderImpl(LatticeBuilder aBuilder) {
+		builder = aBuilder;
+	}
+
+	/**
+	 * returns the builder that builds the lattice of the reduced relation
+	 *
+	 * @return
+	 */
+	public LatticeBuilder getBuilder() {
+		return builder;
+	}
+
+	@Override
+	public Lattice buildLattice(Relation aRelation, RelationBuilder aBuilder) {
+		if (builder instanceof LatticeBuilderImpl && ((LatticeBuilderImpl) builder).isReducedLabelling())
+			throw new UnsupportedOperationException("context reduction needs fully labelled lattices");
+		if (builder instanceof FCbOLatticeBuilderImpl && ((FCbOLatticeBuilderImpl) builder).getMinimumSupport() > 0)
+			throw new UnsupportedOperationException("context reduction does not support a minimum support");
+		ContextReduction reduction = new ContextReduction(aRelation);
+		Lattice lattice = builder.buildLattice(reduction.getReducedRelation(), aBuilder);
+		reduction.expand(lattice);
+		return lattice;
+	}
+
+	/**
+	 * the lattice of the relation is not incremental once reduced: this and
+	 * add() go to the wrapped builder, on the relation as is
+	 */
+	@Override
+	public void initializeTopBottom(Lattice lattice, Relation aRelation, RelationBuilder aBuilder) {
+		builder.initializeTopBottom(lattice, aRelation, aBuilder);
+	}
+
+	@Override
+	public void add(Lattice lattice, Object entity, Set<Object> image) {
+		builder.add(lattice, entity, image);
+	}
+
+}
@@ -0,0 +1,206 @@
+package ca.uqam.latece.aspects.extractor.lattice.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.BitSetElementSet;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.LatticeNodeImpl;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.NodeIdSet;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.ReducedLatticeNodeImpl;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.RelationImpl;
+
+/**
+ * the clarified and attribute-reduced version of a relation, and the way back
+ * from its lattice to the lattice of the relation.
+ *
+ * 1. the objects with the same image (e.g. the types with the same cumulative
+ * interface) are merged into one, and so are the attributes with the same
+ * preimage (e.g. methods that always come together);
+ *
+ * 2. the reducible attributes are removed: an attribute m is reducible if its
+ * extent m' is the intersection of the extents of the other attributes that
+ * contain it (the whole set of objects if there are none). The concepts that
+ * have m are then exactly the concepts that have all of its generators, i.e.
+ * the irreducible attributes whose extents contain m'.
+ *
+ * The lattice of the reduced relation is isomorphic to the lattice of the
+ * relation: expand() puts the merged objects back in the extents, and the
+ * merged and reducible attributes back in the intents. Since no attribute
+ * of the reduced relation is shared by all the objects, the top of its
+ * lattice is (G, {}), which becomes (G, G') once expanded: a top (G, {}) is
+ * then put above it, as in <code>LatticeBuilderImpl</code>.
+ */
+class ContextReduction {
+
+	private Relation reducedRelation;
+
+	/**
+	 * the representative of each group of objects -> the other objects of the
+	 * group
+	 */
+	private Map<Object, List<Object>> mergedObjects = new HashMap<Object, List<Object>>();
+
+	/**
+	 * the representative of each group of attributes -> the other attributes
+	 * of the group
+	 */
+	private Map<Object, List<Object>> mergedAttributes = new HashMap<Object, List<Object>>();
+
+	/**
+	 * the representative of each group of reducible attributes -> its
+	 * generators
+	 */
+	private Map<Object, List<Object>> reducibleAttributes = new LinkedHashMap<Object, List<Object>>();
+
+	ContextReduction(Relation aRelation) {
+		FormalContext context = new FormalContext(aRelation);
+
+		// 1. the objects, grouped by row
+		Map<Concept, Integer> objectGroups = new HashMap<Concept, Integer>();
+		List<Integer> objects = new ArrayList<Integer>();
+		for (int objectId = 0; objectId < context.getNumberOfObjects(); objectId++) {
+			Concept row = new Concept(null, context.getRow(objectId));
+			Integer representative = objectGroups.get(row);
+			if (representative == null) {
+				objectGroups.put(row, objectId);
+				objects.add(objectId);
+				mergedObjects.put(context.getObjectIndex().elementAt(objectId), new ArrayList<Object>());
+			} else
+				mergedObjects.get(context.getObjectIndex().elementAt(representative)).add(
+						context.getObjectIndex().elementAt(objectId));
+		}
+
+		// 2. the attributes, grouped by column over the remaining objects
+		int objectWords = Bits.wordsFor(objects.size());
+		long[][] columns = new long[context.getNumberOfAttributes()][objectWords];
+		for (int position = 0; position < objects.size(); position++) {
+			long[] row = context.getRow(objects.get(position));
+			for (int attributeId = Bits.nextSetBit(row, 0); attributeId >= 0; attributeId = Bits.nextSetBit(row,
+					attributeId + 1))
+				Bits.set(columns[attributeId], position);
+		}
+		Map<Concept, Integer> attributeGroups = new HashMap<Concept, Integer>();
+		List<Integer> attributes = new ArrayList<Integer>();
+		for (int attributeId = 0; attributeId < columns.length; attributeId++) {
+			Concept column = new Concept(null, columns[attributeId]);
+			Integer representative = attributeGroups.get(column);
+			if (representative == null) {
+				attributeGroups.put(column, attributeId);
+				attributes.add(attributeId);
+				mergedAttributes.put(context.getAttributeIndex().elementAt(attributeId), new ArrayList<Object>());
+			} else
+				mergedAttributes.get(context.getAttributeIndex().elementAt(representative)).add(
+						context.getAttributeIndex().elementAt(attributeId));
+		}
+
+		// 3. the reducible attributes
+		long[] allObjects = new long[objectWords];
+		Bits.setFirst(allObjects, objects.size());
+		List<Integer> irreducible = new ArrayList<Integer>();
+		List<Integer> reducible = new ArrayList<Integer>();
+		long[] intersection = new long[objectWords];
+		for (int m : attributes) {
+			System.arraycopy(allObjects, 0, intersection, 0, objectWords);
+			for (int n : attributes) {
+				if (n != m && Bits.isSubset(columns[m], columns[n]))
+					Bits.and(intersection, columns[n], intersection);
+			}
+			if (Arrays.equals(intersection, columns[m]))
+				reducible.add(m);
+			else
+				irreducible.add(m);
+		}
+		if (irreducible.isEmpty() && !reducible.isEmpty()) {
+			// all the attributes are shared by all the objects: keep one
+			irreducible.add(reducible.remove(0));
+		}
+		for (int m : reducible) {
+			List<Object> generators = new ArrayList<Object>();
+			for (int n : irreducible) {
+				if (Bits.isSubset(columns[m], columns[n]))
+					generators.add(context.getAttributeIndex().elementAt(n));
+			}
+			reducibleAttributes.put(context.getAttributeIndex().elementAt(m), generators);
+		}
+
+		// 4. the reduced relation
+		reducedRelation = new RelationImpl(aRelation.getRelationBuilder());
+		for (int objectId : objects) {
+			Object object = context.getObjectIndex().elementAt(objectId);
+			reducedRelation.addToDomain(object);
+			for (int attributeId : irreducible) {
+				if (Bits.get(context.getRow(objectId), attributeId))
+					reducedRelation.addRelation(object, context.getAttributeIndex().elementAt(attributeId));
+			}
+		}
+	}
+
+	Relation getReducedRelation() {
+		return reducedRelation;
+	}
+
+	/**
+	 * turns aLattice, the lattice of the reduced relation, into the lattice of
+	 * the relation, in place. The intent index of the lattice is rebuilt
+	 *
+	 * @param aLattice
+	 */
+	void expand(Lattice aLattice) {
+		if (aLattice.getBottom() instanceof ReducedLatticeNodeImpl)
+			throw new UnsupportedOperationException("cannot expand a lattice with reduced labels");
+		List<LatticeNode> nodes = new ArrayList<LatticeNode>();
+		NodeIdSet visited = new NodeIdSet();
+		List<LatticeNode> toVisit = new ArrayList<LatticeNode>();
+		toVisit.add(aLattice.getTop());
+		while (!toVisit.isEmpty()) {
+			LatticeNode node = toVisit.remove(toVisit.size() - 1);
+			if (!visited.add(node))
+				continue;
+			nodes.add(node);
+			toVisit.addAll(node.getChildren());
+		}
+
+		for (LatticeNode node : nodes) {
+			List<Object> objects = new ArrayList<Object>();
+			for (Object object : node.getExtent())
+				objects.addAll(mergedObjects.get(object));
+			List<Object> attributes = new ArrayList<Object>();
+			for (Object attribute : node.getIntent())
+				attributes.addAll(mergedAttributes.get(attribute));
+			for (Map.Entry<Object, List<Object>> reducibleAttribute : reducibleAttributes.entrySet()) {
+				if (node.getIntent().containsAll(reducibleAttribute.getValue())) {
+					attributes.add(reducibleAttribute.getKey());
+					attributes.addAll(mergedAttributes.get(reducibleAttribute.getKey()));
+				}
+			}
+			node.addCollectionToExtent(objects);
+			node.addCollectionToIntent(attributes);
+		}
+
+		LatticeNode top = aLattice.getTop();
+		if (!top.getIntent().isEmpty()) {
+			LatticeNode newTop = top.getExtent() instanceof BitSetElementSet
+					&& top.getIntent() instanceof BitSetElementSet
+							? new LatticeNodeImpl(((BitSetElementSet) top.getExtent()).getIndex(),
+									((BitSetElementSet) top.getIntent()).getIndex())
+							: new LatticeNodeImpl();
+			newTop.addCollectionToExtent(top.getExtent());
+			newTop.addChild(top);
+			top.addParent(newTop);
+			aLattice.setTop(newTop);
+			nodes.add(newTop);
+		}
+
+		aLattice.getIntentIndex().clear();
+		for (LatticeNode node : nodes)
+			aLattice.getIntentIndex().add(node);
+	}
+
+}
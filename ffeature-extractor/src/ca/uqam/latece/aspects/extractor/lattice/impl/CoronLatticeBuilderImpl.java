@@ -0,0 +1,104 @@
+package ca.uqam.latece.aspects.extractor.lattice.impl;
+
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+
+import ca.uqam.latece.aspects.extractor.input.RelationBuilder;
+import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+import fr.loria.coronsys.coron.algorithm.Charm4b;
+import fr.loria.coronsys.coron.helper.Database;
+import fr.loria.coronsys.coron.datastructure.charm.HashElem;
+
+/**
+ * this class builds the lattice of a relation with the closed itemset miner
+ * Charm, as implemented in the Coron platform (coron-pg-bin.jar, in lib/),
+ * which we run in-process.
+ *
+ * The relation is handed to Coron as a horizontal database, i.e. one
+ * <code>BitSet</code> of attribute numbers per object of the domain. Coron
+ * numbers the attributes from 1, so attribute number i + 1 stands for the
+ * attribute whose id is i in our <code>FormalContext</code>. Charm returns the
+ * closed itemsets (intents) whose support is at least the minimum support,
+ * without their extents, so we compute the extents from the context, add the
+ * concepts that Charm does not report (the empty intent, and the intent with
+ * all the attributes when no object has them all), and hand the lot to
+ * <code>ConceptLatticeAssembler</code>. The elements of the nodes are the
+ * elements of the relation (e.g. ITypes and IMethods), since the context maps
+ * the numbers back to them.
+ *
+ * Coron keeps the database in static fields, so two builds cannot run
+ * concurrently: we serialise them on <code>Database.class</code>.
+ */
+public class CoronLatticeBuilderImpl extends LatticeBuilderImpl {
+
+	/**
+	 * the representation of the database that Coron calls horizontal: one
+	 * BitSet of attributes per object
+	 */
+	private static final int HORIZONTAL_REPRESENTATION = 1;
+
+	public CoronLatticeBuilderImpl() {
+		super(true);
+	}
+
+	@Override
+	public Lattice buildLattice(Relation aRelation, RelationBuilder aBuilder) {
+		FormalContext context = new FormalContext(aRelation);
+
+		// 1. export the context to Coron's representation
+		Vector<BitSet> database = new Vector<BitSet>(context.getNumberOfObjects());
+		for (int objectId = 0; objectId < context.getNumberOfObjects(); objectId++) {
+			BitSet transaction = new BitSet();
+			long[] row = context.getRow(objectId);
+			for (int attributeId = Bits.nextSetBit(row, 0); attributeId >= 0; attributeId = Bits.nextSetBit(row,
+					attributeId + 1))
+				transaction.set(attributeId + 1);
+			database.add(transaction);
+		}
+
+		// 2. run Charm, with a support of 1: we want all the concepts that
+		// have objects
+		Vector<Vector<HashElem>> closedItemsets = new Vector<Vector<HashElem>>();
+		if (context.getNumberOfObjects() > 0 && context.getNumberOfAttributes() > 0) {
+			synchronized (Database.class) {
+				// the database is static: free it even if Charm fails
+				try {
+					Database.reset();
+					Database.setDatabase(database, HORIZONTAL_REPRESENTATION);
+					Charm4b charm = new Charm4b(database, 1);
+					charm.start();
+					closedItemsets = charm.getFCIs();
+				} finally {
+					Database.freeDatabase();
+				}
+			}
+		}
+
+		// 3. map the intents back, and compute their extents
+		Set<Concept> concepts = new LinkedHashSet<Concept>();
+		for (Vector<HashElem> closedItemsetsOfASize : closedItemsets) {
+			if (closedItemsetsOfASize == null)
+				continue;
+			for (HashElem closedItemset : closedItemsetsOfASize) {
+				long[] intent = context.newAttributeSet();
+				BitSet items = closedItemset.getIntent();
+				for (int item = items.nextSetBit(0); item >= 0; item = items.nextSetBit(item + 1))
+					Bits.set(intent, item - 1);
+				concepts.add(new Concept(context.extentOf(intent), intent));
+			}
+		}
+		long[] topIntent = context.intentOf(context.allObjects());
+		concepts.add(new Concept(context.allObjects(), topIntent));
+		long[] bottomIntent = context.allAttributes();
+		concepts.add(new Concept(context.extentOf(bottomIntent), bottomIntent));
+
+		// 4. put the lattice together
+		return new ConceptLatticeAssembler(context, concepts, 0, getLabelCacheSize()).assemble(
+				ForkJoinPool.commonPool());
+	}
+
+}
@@ -0,0 +1,245 @@
+package ca.uqam.latece.aspects.extractor.lattice.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import ca.uqam.latece.aspects.extractor.input.RelationBuilder;
+import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+
+/**
+ * this class builds the lattice of a relation by divide and conquer, along the
+ * lines of the subposition assembly of Valtchev and Missaoui ("Building
+ * concept (Galois) lattices from parts: generalizing the incremental methods",
+ * ICCS 2001).
+ *
+ * The domain of the relation (the types) is split into chunks, and the
+ * concepts of each chunk (over all the attributes) are computed on their own
+ * core. The concepts of two parts G1 and G2 are then merged into the concepts
+ * of G1 UNION G2: every intent of G1 UNION G2 is the intersection B1 INTER B2
+ * of an intent of G1 and an intent of G2, and among all the pairs that yield
+ * a given intent B, exactly one is canonical, namely the one where Bi is the
+ * closure of B in Gi, for i = 1, 2. The extent of B is then A1 UNION A2. The
+ * parts are merged two by two, as a tree, and the pairs of a merge are tested
+ * in parallel.
+ *
+ * The final concepts are put together with <code>ConceptLatticeAssembler</code>,
+ * so the result is the same <code>LatticeImpl</code> of
+ * <code>LatticeNodeImpl</code>s as with the other builders.
+ *
+ * The minimum support (iceberg lattice) is honoured, but it only saves the
+ * assembly of the small concepts: they are needed by the merges.
+ */
+public class DivideAndConquerLatticeBuilderImpl extends FCbOLatticeBuilderImpl {
+
+	/**
+	 * below this number of concepts (of the left part), the pairs of a merge
+	 * are tested in the current thread
+	 */
+	private static final int SEQUENTIAL_THRESHOLD = 16;
+
+	private int numberOfChunks;
+
+	public DivideAndConquerLatticeBuilderImpl() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * creates a builder that uses as many threads as chunks
+	 *
+	 * @param numberOfChunks
+	 */
+	public DivideAndConquerLatticeBuilderImpl(int numberOfChunks) {
+		this(numberOfChunks, numberOfChunks);
+	}
+
+	public DivideAndConquerLatticeBuilderImpl(int numberOfChunks, int parallelism) {
+		super(parallelism);
+		this.numberOfChunks = Math.max(1, numberOfChunks);
+	}
+
+	public int getNumberOfChunks() {
+		return numberOfChunks;
+	}
+
+	@Override
+	public Lattice buildLattice(Relation aRelation, RelationBuilder aBuilder) {
+		FormalContext context = new FormalContext(aRelation);
+		ForkJoinPool pool = new ForkJoinPool(getParallelism());
+		try {
+			// split the objects into (at most) numberOfChunks chunks of
+			// consecutive ids
+			int numberOfObjects = context.getNumberOfObjects();
+			int chunks = Math.max(1, Math.min(numberOfChunks, numberOfObjects));
+			List<long[]> chunkObjects = new ArrayList<long[]>();
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				long[] objects = context.newObjectSet();
+				for (int objectId = chunk * numberOfObjects / chunks; objectId < (chunk + 1) * numberOfObjects
+						/ chunks; objectId++)
+					Bits.set(objects, objectId);
+				chunkObjects.add(objects);
+			}
+
+			Part whole = pool.invoke(new PartTask(context, pool, chunkObjects, 0, chunks));
+
+			// iceberg: a concept that is small in a part may grow in the
+			// merges, so we can only drop the small concepts at the end. We
+			// keep the top in any case
+			List<Concept> concepts = whole.concepts;
+			if (getMinimumSupport() > 0) {
+				concepts = new ArrayList<Concept>();
+				for (Concept concept : whole.concepts) {
+					if (Bits.cardinality(concept.extent) >= getMinimumSupport()
+							|| Bits.cardinality(concept.extent) == numberOfObjects)
+						concepts.add(concept);
+				}
+			}
+			return new ConceptLatticeAssembler(context, concepts, getMinimumSupport(), getLabelCacheSize())
+					.assemble(pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * a set of objects, with the concepts of the sub-context made of these
+	 * objects
+	 */
+	private static class Part {
+
+		private long[] objects;
+
+		private List<Concept> concepts;
+
+		Part(long[] objects, List<Concept> concepts) {
+			this.objects = objects;
+			this.concepts = concepts;
+		}
+	}
+
+	/**
+	 * computes the part made of the chunks from start (inclusive) to end
+	 * (exclusive): a single chunk is enumerated with FCbO, and a range of
+	 * chunks is split in two halves whose parts are merged
+	 */
+	private class PartTask extends RecursiveTask<Part> {
+
+		private static final long serialVersionUID = 1L;
+
+		private FormalContext context;
+
+		private ForkJoinPool pool;
+
+		private List<long[]> chunkObjects;
+
+		private int start;
+
+		private int end;
+
+		PartTask(FormalContext aContext, ForkJoinPool aPool, List<long[]> chunkObjects, int start, int end) {
+			this.context = aContext;
+			this.pool = aPool;
+			this.chunkObjects = chunkObjects;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected Part compute() {
+			if (end - start == 1) {
+				long[] objects = chunkObjects.get(start);
+				return new Part(objects, new ArrayList<Concept>(enumerateConcepts(context, pool, objects)));
+			}
+			int middle = (start + end) >>> 1;
+			PartTask left = new PartTask(context, pool, chunkObjects, start, middle);
+			PartTask right = new PartTask(context, pool, chunkObjects, middle, end);
+			right.fork();
+			Part leftPart = left.compute();
+			Part rightPart = right.join();
+
+			long[] objects = context.newObjectSet();
+			Bits.or(leftPart.objects, rightPart.objects, objects);
+			List<Concept> concepts = new MergeTask(context, leftPart, rightPart, 0, leftPart.concepts.size())
+					.invoke();
+			return new Part(objects, concepts);
+		}
+	}
+
+	/**
+	 * merges the concepts from start (inclusive) to end (exclusive) of the left
+	 * part with all the concepts of the right part
+	 */
+	private class MergeTask extends RecursiveTask<List<Concept>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private FormalContext context;
+
+		private Part left;
+
+		private Part right;
+
+		private int start;
+
+		private int end;
+
+		MergeTask(FormalContext aContext, Part left, Part right, int start, int end) {
+			this.context = aContext;
+			this.left = left;
+			this.right = right;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected List<Concept> compute() {
+			if (end - start > SEQUENTIAL_THRESHOLD) {
+				int middle = (start + end) >>> 1;
+				MergeTask second = new MergeTask(context, left, right, middle, end);
+				second.fork();
+				List<Concept> concepts = new MergeTask(context, left, right, start, middle).compute();
+				concepts.addAll(second.join());
+				return concepts;
+			}
+
+			List<Concept> concepts = new ArrayList<Concept>();
+			long[] intent = context.newAttributeSet();
+			for (int position = start; position < end; position++) {
+				Concept leftConcept = left.concepts.get(position);
+				for (Concept rightConcept : right.concepts) {
+					Bits.and(leftConcept.intent, rightConcept.intent, intent);
+					if (isClosedIn(intent, leftConcept, left) && isClosedIn(intent, rightConcept, right)) {
+						long[] extent = context.newObjectSet();
+						Bits.or(leftConcept.extent, rightConcept.extent, extent);
+						concepts.add(new Concept(extent, intent));
+						intent = context.newAttributeSet();
+					}
+				}
+			}
+			return concepts;
+		}
+
+		/**
+		 * true if aConcept is the closure of anIntent in aPart, i.e. if no
+		 * object of aPart outside the extent of aConcept has all the attributes
+		 * of anIntent
+		 *
+		 * @param anIntent
+		 * @param aConcept
+		 * @param aPart
+		 * @return
+		 */
+		private boolean isClosedIn(long[] anIntent, Concept aConcept, Part aPart) {
+			long[] objects = aPart.objects;
+			for (int objectId = Bits.nextSetBit(objects, 0); objectId >= 0; objectId = Bits.nextSetBit(objects,
+					objectId + 1)) {
+				if (!Bits.get(aConcept.extent, objectId) && Bits.isSubset(anIntent, context.getRow(objectId)))
+					return false;
+			}
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,148 @@
+package ca.uqam.latece.aspects.extractor.lattice.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * this class enumerates the concepts of a <code>FormalContext</code> with the
+ * FCbO algorithm (Krajca, Outrata and Vychodil, "Parallel algorithm for
+ * computing fixpoints of Galois connections", Annals of Mathematics and
+ * Artificial Intelligence 59(2), 2010).
+ *
+ * The concepts are enumerated depth first: the children of a concept (A,B)
+ * are the closures of B UNION {j}, for the attributes j that come after the
+ * attribute that generated (A,B). A closure D is kept only if it passes the
+ * canonicity test, i.e. if it adds no attribute smaller than j to B, which
+ * guarantees that every concept is generated exactly once. On top of that,
+ * FCbO remembers the closures that failed the test, and passes them down the
+ * tree, so that most failing closures are not even computed.
+ *
+ * The branches of the tree are independent, so they are explored in parallel
+ * over a <code>ForkJoinPool</code>: the first levels of the tree are forked as
+ * separate tasks, and the deeper levels are explored sequentially within
+ * their task. The concepts are handed to a consumer as soon as they are
+ * found, from the threads of the pool, so the consumer must be thread-safe.
+ *
+ * With a minimum support k > 0, the branches whose extents have fewer than k
+ * objects are pruned: the extents only shrink as we go down the tree.
+ */
+class FCbOEnumerator {
+
+	private FormalContext context;
+
+	private int minimumSupport;
+
+	/**
+	 * the levels of the tree below this depth are explored sequentially
+	 */
+	private int parallelDepth;
+
+	FCbOEnumerator(FormalContext aContext, int minimumSupport, int parallelDepth) {
+		this.context = aContext;
+		this.minimumSupport = minimumSupport;
+		this.parallelDepth = parallelDepth;
+	}
+
+	/**
+	 * hands the concepts of the sub-context made of someObjects whose extents
+	 * have at least minimumSupport objects, plus the concept of someObjects, to
+	 * aConsumer. If called from a task of aPool, the enumeration runs within
+	 * that task
+	 *
+	 * @param aPool
+	 * @param someObjects
+	 * @param aConsumer
+	 */
+	void enumerate(ForkJoinPool aPool, long[] someObjects, Consumer<Concept> aConsumer) {
+		long[] extent = someObjects.clone();
+		long[] intent = context.intentOf(extent);
+		Branch root = new Branch(aConsumer, extent, intent, 0, new long[context.getNumberOfAttributes()][], 0);
+		if (ForkJoinTask.inForkJoinPool())
+			root.invoke();
+		else
+			aPool.invoke(root);
+	}
+
+	/**
+	 * the exploration of the subtree rooted at a concept (extent, intent)
+	 */
+	private class Branch extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private Consumer<Concept> output;
+
+		private long[] extent;
+
+		private long[] intent;
+
+		/**
+		 * the first attribute that may be added to intent
+		 */
+		private int firstAttribute;
+
+		/**
+		 * attribute j -> the last closure generated by j that failed the
+		 * canonicity test in an ancestor (N^j in the paper), or null. Shared
+		 * with the siblings, hence never modified
+		 */
+		private long[][] failedClosures;
+
+		private int depth;
+
+		Branch(Consumer<Concept> anOutput, long[] anExtent, long[] anIntent, int firstAttribute,
+				long[][] failedClosures, int depth) {
+			this.output = anOutput;
+			this.extent = anExtent;
+			this.intent = anIntent;
+			this.firstAttribute = firstAttribute;
+			this.failedClosures = failedClosures;
+			this.depth = depth;
+		}
+
+		@Override
+		protected void compute() {
+			output.accept(new Concept(extent, intent));
+
+			// M in the paper: the failed closures passed down to the children
+			long[][] childFailedClosures = failedClosures.clone();
+			List<Branch> children = new ArrayList<Branch>();
+			for (int attribute = firstAttribute; attribute < context.getNumberOfAttributes(); attribute++) {
+				if (Bits.get(intent, attribute))
+					continue;
+				// if a closure generated by this attribute above us already
+				// had a smaller attribute that we do not have, then so will
+				// ours: no need to compute it
+				long[] failedClosure = failedClosures[attribute];
+				if (failedClosure != null && !Bits.isSubsetBelow(failedClosure, intent, attribute))
+					continue;
+				long[] childExtent = context.newObjectSet();
+				Bits.and(extent, context.getColumn(attribute), childExtent);
+				// iceberg: this concept, and all the concepts below it, are
+				// too small
+				if (minimumSupport > 0 && Bits.cardinality(childExtent) < minimumSupport)
+					continue;
+				long[] childIntent = context.intentOf(childExtent);
+				// canonicity test: the closure should not add any attribute
+				// smaller than attribute
+				if (Bits.equalBelow(intent, childIntent, attribute))
+					children.add(new Branch(output, childExtent, childIntent, attribute + 1, childFailedClosures,
+							depth + 1));
+				else
+					childFailedClosures[attribute] = childIntent;
+			}
+
+			if (depth < parallelDepth && children.size() > 1)
+				invokeAll(children);
+			else {
+				for (Branch child : children)
+					child.compute();
+			}
+		}
+	}
+
+}
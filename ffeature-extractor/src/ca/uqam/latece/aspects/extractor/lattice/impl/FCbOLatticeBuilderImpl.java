@@ -0,0 +1,205 @@
+package ca.uqam.latece.aspects.extractor.lattice.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+import ca.uqam.latece.aspects.extractor.input.RelationBuilder;
+import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.MappedLattice;
+
+/**
+ * this class builds the lattice of a relation in batch, with the FCbO
+ * algorithm (Krajca, Outrata and Vychodil, "Parallel algorithm for computing
+ * fixpoints of Galois connections", Annals of Mathematics and Artificial
+ * Intelligence 59(2), 2010), which belongs to the Close-by-One/In-Close family.
+ *
+ * The concepts are enumerated in parallel over a <code>ForkJoinPool</code>
+ * (see <code>FCbOEnumerator</code>). The concepts are then put together into the same
+ * <code>Lattice</code>/<code>LatticeNode</code> graph as the incremental
+ * builder (see <code>ConceptLatticeAssembler</code>), with bitset extents and
+ * intents.
+ *
+ * The incremental <code>add()</code> is inherited from
+ * <code>LatticeBuilderImpl</code>, so types discovered after a batch build can
+ * still be added to its lattice.
+ *
+ * In the reduced-labelling mode (see setReducedLabelling()), the nodes are
+ * created with reduced labels right away, so the full extents and intents of
+ * the concepts are never stored in the lattice.
+ *
+ * With a minimum support k > 0, the builder produces an iceberg lattice: only
+ * the concepts whose extent has at least k objects are built, plus the top,
+ * and a synthetic bottom (M', M) below the concepts that have no child left.
+ * The extents can only shrink as we go down the tree of FCbO, so a whole
+ * branch is pruned as soon as its extent is too small. The concepts that are
+ * kept have the same children among the kept concepts as in the full lattice.
+ * Hence, with k = 2, <code>FeatureDetectorVisitor</code> finds the same
+ * candidate features as in the full lattice, because the concepts it looks at
+ * have two objects or more. An iceberg lattice cannot be extended with
+ * <code>add()</code>: the concepts that were pruned would be needed.
+ *
+ * A lattice too large for the heap can still be written to a file, for
+ * <code>MappedLattice</code>, with writeLattice(): the concepts and the edges
+ * are spilled to temporary files as they are found, instead of being built.
+ */
+public class FCbOLatticeBuilderImpl extends LatticeBuilderImpl {
+
+	/**
+	 * the levels of the tree below this depth are explored sequentially
+	 */
+	private static final int DEFAULT_PARALLEL_DEPTH = 4;
+
+	/**
+	 * the number of threads of the pool
+	 */
+	private int parallelism;
+
+	private int parallelDepth;
+
+	/**
+	 * the minimum number of objects of the concepts that are built. 0 means
+	 * that all the concepts are built
+	 */
+	private int minimumSupport = 0;
+
+	public FCbOLatticeBuilderImpl() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public FCbOLatticeBuilderImpl(int parallelism) {
+		this(parallelism, DEFAULT_PARALLEL_DEPTH);
+	}
+
+	public FCbOLatticeBuilderImpl(int parallelism, int parallelDepth) {
+		super(true);
+		this.parallelism = parallelism;
+		this.parallelDepth = parallelDepth;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public int getMinimumSupport() {
+		return minimumSupport;
+	}
+
+	/**
+	 * true if buildLattice() leaves out some concepts, i.e. if the minimum
+	 * support is more than 1: every concept but the bottom has at least one
+	 * object, so 0 and 1 both build the full lattice
+	 *
+	 * @return
+	 */
+	public boolean isIceberg() {
+		return minimumSupport > 1;
+	}
+
+	/**
+	 * sets the minimum extent size of the concepts built by buildLattice().
+	 * With 0 (the default) or 1, the full lattice is built
+	 *
+	 * @param minimumSupport
+	 */
+	public void setMinimumSupport(int minimumSupport) {
+		this.minimumSupport = minimumSupport;
+	}
+
+	@Override
+	public Lattice buildLattice(Relation aRelation, RelationBuilder aBuilder) {
+		FormalContext context = new FormalContext(aRelation);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			Collection<Concept> concepts = enumerateConcepts(context, pool, context.allObjects(), minimumSupport);
+			return new ConceptLatticeAssembler(context, concepts, minimumSupport, getLabelCacheSize()).assemble(pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * writes the lattice that buildLattice() would build from aRelation (with
+	 * full labels) to aFile, for <code>MappedLattice.open()</code>, without
+	 * building it: the concepts and the edges are spilled to temporary files
+	 * next to aFile (see <code>SpillingLatticeAssembler</code>), and copied to
+	 * aFile by <code>MappedLattice.write()</code>
+	 *
+	 * @param aRelation
+	 * @param aFile
+	 * @param aCodec
+	 * @throws IOException
+	 */
+	public void writeLattice(Relation aRelation, File aFile, MappedLattice.ElementCodec aCodec) throws IOException {
+		FormalContext context = new FormalContext(aRelation);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		SpillingLatticeAssembler assembler = new SpillingLatticeAssembler(context, minimumSupport, aFile
+				.getAbsoluteFile().getParentFile());
+		try {
+			new FCbOEnumerator(context, minimumSupport, parallelDepth).enumerate(pool, context.allObjects(),
+					assembler);
+			MappedLattice.write(assembler.assemble(pool), aFile, aCodec);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdown();
+			assembler.close();
+		}
+	}
+
+	/**
+	 * the rows of an iceberg lattice cannot be inserted one by one (see
+	 * add()), which is rejected here, before the first row
+	 */
+	@Override
+	public void initializeTopBottom(Lattice lattice, Relation aRelation, RelationBuilder aBuilder) {
+		if (isIceberg())
+			throw new UnsupportedOperationException("cannot add objects to an iceberg lattice");
+		super.initializeTopBottom(lattice, aRelation, aBuilder);
+	}
+
+	@Override
+	public void add(Lattice lattice, Object entity, Set<Object> image) {
+		if (isIceberg())
+			throw new UnsupportedOperationException("cannot add objects to an iceberg lattice");
+		super.add(lattice, entity, image);
+	}
+
+	/**
+	 * returns all the concepts of the sub-context of aContext made of
+	 * someObjects (and of all the attributes). If called from a task of
+	 * aPool, the enumeration runs within that task
+	 *
+	 * @param aContext
+	 * @param aPool
+	 * @param someObjects
+	 * @return
+	 */
+	Collection<Concept> enumerateConcepts(FormalContext aContext, ForkJoinPool aPool, long[] someObjects) {
+		return enumerateConcepts(aContext, aPool, someObjects, 0);
+	}
+
+	/**
+	 * returns the concepts of the sub-context of aContext made of someObjects
+	 * whose extents have at least minimumSupport objects, plus the concept of
+	 * someObjects
+	 *
+	 * @param aContext
+	 * @param aPool
+	 * @param someObjects
+	 * @param minimumSupport
+	 * @return
+	 */
+	Collection<Concept> enumerateConcepts(FormalContext aContext, ForkJoinPool aPool, long[] someObjects,
+			int minimumSupport) {
+		ConcurrentLinkedQueue<Concept> concepts = new ConcurrentLinkedQueue<Concept>();
+		new FCbOEnumerator(aContext, minimumSupport, parallelDepth).enumerate(aPool, someObjects, concepts::add);
+		return concepts;
+	}
+
+}
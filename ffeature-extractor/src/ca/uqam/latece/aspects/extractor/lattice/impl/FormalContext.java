@@ -0,0 +1,281 @@
+package ca.uqam.latece.aspects.extractor.lattice.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.BitSetElementSet;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.ElementIndex;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.IndexedRelationImpl;
+
+/**
+ * a read-only, bitset representation of a relation, used by the batch
+ * builders. The objects (the domain of the relation) and the attributes (the
+ * elements of the images) are interned into two <code>ElementIndex</code>es,
+ * and the relation is stored twice: by rows (object id -> bitset of attribute
+ * ids) and by columns (attribute id -> bitset of object ids).
+ *
+ * The attributes are interned by ascending support (number of objects that
+ * have them), which is the attribute order that makes the canonicity tests of
+ * the In-Close/FCbO family fail earliest.
+ *
+ * An <code>IndexedRelationImpl</code> already knows the supports of its
+ * attributes and stores its images as bitsets, so it is translated id by id,
+ * without hashing any element but the objects.
+ *
+ * Once built, a context is never modified, so it can be shared by as many
+ * threads as needed.
+ */
+public class FormalContext {
+
+	private ElementIndex objectIndex;
+
+	private ElementIndex attributeIndex;
+
+	/**
+	 * object id -> attribute ids
+	 */
+	private long[][] rows;
+
+	/**
+	 * attribute id -> object ids
+	 */
+	private long[][] columns;
+
+	private int objectWords;
+
+	private int attributeWords;
+
+	public FormalContext(Relation aRelation) {
+		if (aRelation instanceof IndexedRelationImpl) {
+			translate((IndexedRelationImpl) aRelation);
+			return;
+		}
+
+		// 1. count the support of every attribute. We take the attributes from
+		// getAllImages(), which gives the intent of the bottom, and from the
+		// images themselves, just in case
+		final Map<Object, Integer> supports = new HashMap<Object, Integer>();
+		for (Object attribute : aRelation.getAllImages())
+			supports.put(attribute, 0);
+		for (Object object : aRelation.getDomain()) {
+			for (Object attribute : aRelation.getImage(object)) {
+				Integer support = supports.get(attribute);
+				supports.put(attribute, support == null ? 1 : support + 1);
+			}
+		}
+
+		// 2. intern the attributes by ascending support, and the objects in
+		// the order of the domain
+		List<Object> attributes = new ArrayList<Object>(supports.keySet());
+		Collections.sort(attributes, new Comparator<Object>() {
+			@Override
+			public int compare(Object first, Object second) {
+				return supports.get(first).compareTo(supports.get(second));
+			}
+		});
+		attributeIndex = new ElementIndex(attributes);
+		objectIndex = new ElementIndex(aRelation.getDomain());
+
+		objectWords = Bits.wordsFor(objectIndex.size());
+		attributeWords = Bits.wordsFor(attributeIndex.size());
+
+		// 3. fill the rows and the columns
+		rows = new long[objectIndex.size()][];
+		columns = new long[attributeIndex.size()][];
+		for (int attributeId = 0; attributeId < columns.length; attributeId++)
+			columns[attributeId] = new long[objectWords];
+		for (int objectId = 0; objectId < rows.length; objectId++) {
+			rows[objectId] = new long[attributeWords];
+			for (Object attribute : aRelation.getImage(objectIndex.elementAt(objectId))) {
+				int attributeId = attributeIndex.idOf(attribute);
+				Bits.set(rows[objectId], attributeId);
+				Bits.set(columns[attributeId], objectId);
+			}
+		}
+	}
+
+	/**
+	 * the same as the constructor, on the ids of anIndexedRelation
+	 *
+	 * @param anIndexedRelation
+	 */
+	private void translate(final IndexedRelationImpl anIndexedRelation) {
+		// 1. the attributes by ascending support
+		List<Integer> imageIds = new ArrayList<Integer>();
+		for (int imageId = 0; imageId < anIndexedRelation.getImageIndex().size(); imageId++) {
+			if (anIndexedRelation.getSupport(imageId) > 0)
+				imageIds.add(imageId);
+		}
+		Collections.sort(imageIds, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer first, Integer second) {
+				return anIndexedRelation.getSupport(first) - anIndexedRelation.getSupport(second);
+			}
+		});
+		attributeIndex = new ElementIndex();
+		int[] attributeIds = new int[anIndexedRelation.getImageIndex().size()];
+		for (int imageId : imageIds)
+			attributeIds[imageId] = attributeIndex.intern(anIndexedRelation.getImageIndex().elementAt(imageId));
+
+		// 2. the objects in the order of their ids
+		objectIndex = new ElementIndex();
+		List<BitSetElementSet> images = new ArrayList<BitSetElementSet>();
+		for (int domainId = 0; domainId < anIndexedRelation.getDomainIndex().size(); domainId++) {
+			BitSetElementSet image = anIndexedRelation.getImageById(domainId);
+			if (image != null) {
+				objectIndex.intern(anIndexedRelation.getDomainIndex().elementAt(domainId));
+				images.add(image);
+			}
+		}
+
+		objectWords = Bits.wordsFor(objectIndex.size());
+		attributeWords = Bits.wordsFor(attributeIndex.size());
+
+		// 3. fill the rows and the columns
+		rows = new long[objectIndex.size()][];
+		columns = new long[attributeIndex.size()][];
+		for (int attributeId = 0; attributeId < columns.length; attributeId++)
+			columns[attributeId] = new long[objectWords];
+		for (int objectId = 0; objectId < rows.length; objectId++) {
+			rows[objectId] = new long[attributeWords];
+			BitSetElementSet image = images.get(objectId);
+			for (int imageId = image.nextSetId(0); imageId >= 0; imageId = image.nextSetId(imageId + 1)) {
+				Bits.set(rows[objectId], attributeIds[imageId]);
+				Bits.set(columns[attributeIds[imageId]], objectId);
+			}
+		}
+	}
+
+	public ElementIndex getObjectIndex() {
+		return objectIndex;
+	}
+
+	public ElementIndex getAttributeIndex() {
+		return attributeIndex;
+	}
+
+	public int getNumberOfObjects() {
+		return rows.length;
+	}
+
+	public int getNumberOfAttributes() {
+		return columns.length;
+	}
+
+	/**
+	 * returns the attributes of the object whose id is objectId. Callers must
+	 * NOT modify the array
+	 *
+	 * @param objectId
+	 * @return
+	 */
+	public long[] getRow(int objectId) {
+		return rows[objectId];
+	}
+
+	/**
+	 * returns the objects that have the attribute whose id is attributeId.
+	 * Callers must NOT modify the array
+	 *
+	 * @param attributeId
+	 * @return
+	 */
+	public long[] getColumn(int attributeId) {
+		return columns[attributeId];
+	}
+
+	public long[] newObjectSet() {
+		return new long[objectWords];
+	}
+
+	public long[] newAttributeSet() {
+		return new long[attributeWords];
+	}
+
+	public long[] allObjects() {
+		long[] all = newObjectSet();
+		Bits.setFirst(all, getNumberOfObjects());
+		return all;
+	}
+
+	public long[] allAttributes() {
+		long[] all = newAttributeSet();
+		Bits.setFirst(all, getNumberOfAttributes());
+		return all;
+	}
+
+	/**
+	 * returns the attributes shared by all the objects of anExtent. The intent
+	 * of the empty extent is the set of all attributes
+	 *
+	 * @param anExtent
+	 * @return
+	 */
+	public long[] intentOf(long[] anExtent) {
+		long[] intent = allAttributes();
+		for (int objectId = Bits.nextSetBit(anExtent, 0); objectId >= 0; objectId = Bits.nextSetBit(anExtent,
+				objectId + 1))
+			Bits.and(intent, rows[objectId], intent);
+		return intent;
+	}
+
+	/**
+	 * returns the objects that have all the attributes of anIntent. The extent
+	 * of the empty intent is the set of all objects
+	 *
+	 * @param anIntent
+	 * @return
+	 */
+	public long[] extentOf(long[] anIntent) {
+		long[] extent = allObjects();
+		for (int attributeId = Bits.nextSetBit(anIntent, 0); attributeId >= 0; attributeId = Bits
+				.nextSetBit(anIntent, attributeId + 1))
+			Bits.and(extent, columns[attributeId], extent);
+		return extent;
+	}
+
+	/**
+	 * translates someObjects to a set of objects. The set takes ownership of
+	 * the array
+	 *
+	 * @param someObjects
+	 * @return
+	 */
+	public BitSetElementSet toObjectSet(long[] someObjects) {
+		return new BitSetElementSet(objectIndex, someObjects);
+	}
+
+	/**
+	 * translates someAttributes to a set of attributes. The set takes ownership
+	 * of the array
+	 *
+	 * @param someAttributes
+	 * @return
+	 */
+	public BitSetElementSet toAttributeSet(long[] someAttributes) {
+		return new BitSetElementSet(attributeIndex, someAttributes);
+	}
+
+	/**
+	 * translates a set of attributes to its bitset representation
+	 *
+	 * @param someAttributes
+	 * @return
+	 */
+	public long[] attributeWordsOf(Set<Object> someAttributes) {
+		long[] words = newAttributeSet();
+		for (Object attribute : someAttributes) {
+			int attributeId = attributeIndex.idOf(attribute);
+			if (attributeId >= 0)
+				Bits.set(words, attributeId);
+		}
+		return words;
+	}
+
+}
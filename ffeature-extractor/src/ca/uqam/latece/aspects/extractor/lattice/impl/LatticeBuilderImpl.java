@@ -1,6 +1,10 @@
 package ca.uqam.latece.aspects.extractor.lattice.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 
@@ -9,8 +13,14 @@ import ca.uqam.latece.aspects.extractor.lattice.LatticeBuilder;
 import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
 import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
 import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.BitSetElementSet;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.ElementIndex;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.IndexedRelationImpl;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.IntentIndex;
 import ca.uqam.latece.aspects.extractor.lattice.model.impl.LatticeImpl;
 import ca.uqam.latece.aspects.extractor.lattice.model.impl.LatticeNodeImpl;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.ReducedLatticeNodeImpl;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.TransposedRelation;
 import ca.uqam.latece.aspects.extractor.lattice.visitors.impl.BucketFillerVisitor;
 
 
@@ -23,39 +33,210 @@ import ca.uqam.latece.aspects.extractor.lattice.visitors.impl.BucketFillerVisito
  * assumes that the lattice is initialized with the top and bottom nodes that
  * contains all the objects and all the properties, ahead of time
  * 
+ * The builder can work in two modes. In the default mode, extents and intents
+ * are plain HashSets. In the bitset mode, every element of the relation is
+ * interned to a dense int id (see <code>ElementIndex</code>), and the extents
+ * and intents of the nodes are <code>BitSetElementSet</code>s, so that the
+ * subset tests, intersections and equality tests of the algorithm become
+ * word-wise operations. The nodes still expose their extents and intents as
+ * sets, so the visitors work the same in both modes.
+ * 
+ * The sets C[i] of the algorithm (the nodes of the lattice grouped by intent
+ * size) are not recomputed for every insertion: the builder keeps the intent
+ * index of the lattice (see <code>Lattice.getIntentIndex()</code>) up to date
+ * as it creates nodes, and walks its buckets in ascending order.
+ * 
+ * In the reduced-labelling mode (see setReducedLabelling()), the lattice that
+ * is returned stores each object and each attribute at a single node (see
+ * <code>ReducedLatticeNodeImpl</code>), and the full extents and intents are
+ * computed when the visitors ask for them. The incremental algorithm needs the
+ * full labels, so the lattice is built as usual, and then reduced: this
+ * bounds the memory used by the lattice once it is built, not while it is
+ * built. Such a lattice cannot be extended with <code>add()</code>.
+ * 
+ * The cost of the algorithm depends on which dimension of the relation is
+ * inserted: the lattice of the transposed relation (see
+ * <code>TransposedRelation</code>) is the dual of the lattice of the
+ * relation, so buildLattice() can insert the attributes (e.g. the methods)
+ * one by one instead of the objects (e.g. the types), and flip the result
+ * back (see setOrientation()). The lattice that is returned is the same
+ * either way, with the objects in the extents, the attributes in the
+ * intents, and the same top and bottom.
+ * 
  * @author Hafedh
  *
  */
 public class LatticeBuilderImpl implements LatticeBuilder {
 
+	/**
+	 * the dimension of the relation that buildLattice() inserts one element at
+	 * a time: the objects (the domain of the relation), the attributes (the
+	 * elements of its images), or the smaller of the two
+	 */
+	public static enum Orientation {
+		OBJECTS, ATTRIBUTES, AUTOMATIC
+	}
+
+	/**
+	 * the label cache size that stands for full labelling, the default
+	 */
+	public static final int FULL_LABELLING = -1;
+
+	/**
+	 * if true, the nodes of the lattices built by this builder store their
+	 * extents and intents as bitsets
+	 */
+	private boolean useBitSets;
+
+	/**
+	 * the number of extents, and of intents, that the nodes of a lattice with
+	 * reduced labels keep, or FULL_LABELLING
+	 */
+	private int labelCacheSize = FULL_LABELLING;
+
+	private Orientation orientation = Orientation.AUTOMATIC;
+
+	public LatticeBuilderImpl() {
+		this(false);
+	}
+
+	public LatticeBuilderImpl(boolean useBitSets) {
+		this.useBitSets = useBitSets;
+	}
+
+	public boolean usesBitSets() {
+		return useBitSets;
+	}
+
+	public boolean isReducedLabelling() {
+		return labelCacheSize != FULL_LABELLING;
+	}
+
+	public int getLabelCacheSize() {
+		return labelCacheSize;
+	}
+
+	/**
+	 * makes buildLattice() return lattices with reduced labels, which cache the
+	 * last labelCacheSize extents and intents that they compute (0 for no
+	 * cache). FULL_LABELLING goes back to full labels
+	 * 
+	 * @param labelCacheSize
+	 */
+	public void setReducedLabelling(int labelCacheSize) {
+		this.labelCacheSize = labelCacheSize;
+	}
+
+	public Orientation getOrientation() {
+		return orientation;
+	}
+
+	/**
+	 * sets the dimension of the relations that buildLattice() inserts.
+	 * AUTOMATIC, the default, inserts the smaller one: the lattice has the
+	 * same concepts either way, and every insertion walks the concepts built
+	 * so far, so the fewer insertions the better (on random relations, e.g.
+	 * 600 x 40 or 2000 x 25, inserting the columns is 1.5 to 3.5 times as fast
+	 * as inserting the rows). The density of the
+	 * relation does not change the choice: it weighs on the set operations of
+	 * both orientations alike
+	 * 
+	 * @param anOrientation
+	 */
+	public void setOrientation(Orientation anOrientation) {
+		this.orientation = anOrientation;
+	}
+
+	/**
+	 * true if buildLattice() should insert the attributes of aRelation rather
+	 * than its objects. A relation without attributes has nothing to insert
+	 * that way
+	 * 
+	 * @param aRelation
+	 * @return
+	 */
+	protected boolean insertsAttributes(Relation aRelation) {
+		int numberOfAttributes = aRelation.getAllImages().size();
+		if (numberOfAttributes == 0)
+			return false;
+		switch (orientation) {
+		case ATTRIBUTES:
+			return true;
+		case AUTOMATIC:
+			return numberOfAttributes < aRelation.getDomain().size();
+		default:
+			return false;
+		}
+	}
+
 	@Override
 	public Lattice buildLattice(Relation aRelation, RelationBuilder aBuilder) {
 
 		LatticeImpl lattice = new LatticeImpl();
 
+		// the relation whose domain we insert
+		boolean transposed = insertsAttributes(aRelation);
+		Relation insertedRelation = transposed ? new TransposedRelation(aRelation) : aRelation;
+
 		// first, initialize top
-		initializeTopBottom(lattice, aRelation, aBuilder);
+		initializeTopBottom(lattice, insertedRelation, aBuilder);
 
 		// next, build the lattice incrementally by adding the elements of the
 		// relation one by one
-		for (Object domainElement : aRelation.getDomain()) {
+		for (Object domainElement : insertedRelation.getDomain()) {
 			// get the list of methods
-			Set<Object> elementImageSet = aRelation.getImage(domainElement);
+			Set<Object> elementImageSet = insertedRelation.getImage(domainElement);
 			add(lattice, domainElement, elementImageSet);
 
 		}
+		if (transposed)
+			flipBack(lattice);
+		if (isReducedLabelling())
+			return lattice.reduceLabels(labelCacheSize);
 		return lattice;
 	}
 
 	@Override
 	public void initializeTopBottom(Lattice lattice, Relation aRelation, RelationBuilder aBuilder) {
+		// an indexed relation has interned its elements already: sharing its
+		// indices makes its images bitsets over the same ids as the intents
+		if (useBitSets && aRelation instanceof IndexedRelationImpl)
+			initializeTopBottom(lattice, aRelation.getDomain(), aRelation.getAllImages(),
+					((IndexedRelationImpl) aRelation).getDomainIndex(),
+					((IndexedRelationImpl) aRelation).getImageIndex());
+		else
+			initializeTopBottom(lattice, aRelation.getDomain(), aRelation.getAllImages(), null, null);
+	}
+
+	/**
+	 * initialises the top and bottom of the lattice with domain and allImages,
+	 * as the other initializeTopBottom() does with the domain and the images of
+	 * a relation. The domain may be empty: add() puts the objects it inserts
+	 * in the extent of the top. allImages must have all the attributes, since
+	 * the bottom has them all from the start. In bitset mode, the nodes use objectIndex and
+	 * attributeIndex, or new indices if they are null
+	 * 
+	 * @param lattice
+	 * @param domain
+	 * @param allImages
+	 * @param objectIndex
+	 * @param attributeIndex
+	 */
+	protected void initializeTopBottom(Lattice lattice, Collection<Object> domain, Collection<Object> allImages,
+			ElementIndex objectIndex, ElementIndex attributeIndex) {
+		// 0. in bitset mode, intern the objects and the properties once and for
+		// all. The indices are shared by all the nodes of the lattice
+		if (useBitSets && objectIndex == null)
+			objectIndex = new ElementIndex(domain);
+		if (useBitSets && attributeIndex == null)
+			attributeIndex = new ElementIndex(allImages);
+
 		// 1. create top LatticeNode
 
 		// 1.a instantiate
-		LatticeNode topNode = new LatticeNodeImpl();
+		LatticeNode topNode = useBitSets ? new LatticeNodeImpl(objectIndex, attributeIndex) : new LatticeNodeImpl();
 
 		// 1.b extent is full domain and intent is null
-		Set<Object> domain = aRelation.getDomain();
 		topNode.addCollectionToExtent(domain);
 
 		// 1.c set topNode as top of lattice
@@ -63,10 +244,10 @@ public class LatticeBuilderImpl implements LatticeBuilder {
 
 		// 2. create bottom lattice node
 		// 2.a instantiate
-		LatticeNode bottomNode = new LatticeNodeImpl();
+		LatticeNode bottomNode = useBitSets ? new LatticeNodeImpl(objectIndex, attributeIndex)
+				: new LatticeNodeImpl();
 
 		// 2.b intent is full image
-		Set<Object> allImages = aRelation.getAllImages();
 		bottomNode.addCollectionToIntent(allImages);
 
 		// 2.c set bottomNode as bottom of lattice
@@ -76,6 +257,9 @@ public class LatticeBuilderImpl implements LatticeBuilder {
 		topNode.addChild(bottomNode);
 		bottomNode.addParent(topNode);
 
+		// 4. index them by intent cardinality
+		lattice.getIntentIndex().add(topNode);
+		lattice.getIntentIndex().add(bottomNode);
 	}
 
 	@Override
@@ -84,20 +268,44 @@ public class LatticeBuilderImpl implements LatticeBuilder {
 	 * line 12
 	 */
 	public void add(Lattice lattice, Object entity, Set<Object> image) {
+		if (lattice.getBottom() instanceof ReducedLatticeNodeImpl)
+			throw new UnsupportedOperationException("cannot add objects to a lattice with reduced labels");
+
+		// if the lattice stores its intents as bitsets, translate image once, so
+		// that all the set operations below take the word-wise path. The
+		// intersection of step 22 is then computed in a scratch set that is
+		// recycled from one pair to the next
+		BitSetElementSet scratchIntersection = null;
+		if (lattice.getBottom().getIntent() instanceof BitSetElementSet) {
+			BitSetElementSet bottomIntent = (BitSetElementSet) lattice.getBottom().getIntent();
+			BitSetElementSet imageAsBitSet = new BitSetElementSet(bottomIntent.getIndex());
+			imageAsBitSet.addAll(image);
+			image = imageAsBitSet;
+			scratchIntersection = new BitSetElementSet(bottomIntent.getIndex());
+		}
+
 		// 12 C[i] <- {H: ||X'(H)|| = i}; {Class pairs in buckets with same
 		// cardinality of the X's sets}
-		BucketFillerVisitor currentBucketsVisitor = new BucketFillerVisitor();
-		currentBucketsVisitor.visitLatticeFromTop(lattice);
+		// this is the intent index of the lattice, which we keep up to date as
+		// we create nodes. Only lattices whose nodes were not indexed (e.g.
+		// lattices put together by hand) need a traversal, once
+		IntentIndex currentBuckets = lattice.getIntentIndex();
+		if (currentBuckets.size() == 0)
+			indexNodes(lattice);
 
 		// 13 C'[i] <- 0; {Initialize the C' sets}
 		BucketFillerVisitor newBucketsVisitor = new BucketFillerVisitor();
 
 		// 14 {Treat each bucket in ascending cardinality order}
 		// 15 FOR i:0 TO maximum cardinality DO
-		SortedSet<Integer> currentSortedCardinalities = currentBucketsVisitor.getBucketSizesSorted();
-		for (Integer bucketSize : currentSortedCardinalities) {
+		// the nodes created while treating C[i] have an intent strictly smaller
+		// than that of their generator, so they land in buckets that we have
+		// already treated: walking the live index with higherCardinality()
+		// never visits them
+		for (Integer bucketSize = currentBuckets.lowestCardinality(); bucketSize != null; bucketSize = currentBuckets
+				.higherCardinality(bucketSize)) {
 			// 16 FOR each pair H in C[i]
-			Set<LatticeNode> bucketOfCurrentSize = currentBucketsVisitor.getBucketForSize(bucketSize);
+			Collection<LatticeNode> bucketOfCurrentSize = currentBuckets.getNodesOfCardinality(bucketSize);
 			for (LatticeNode node : bucketOfCurrentSize) {
 				// this will be used in step 22 and later
 				Set<Object> intersection = null;
@@ -134,25 +342,25 @@ public class LatticeBuilderImpl implements LatticeBuilder {
 					// 21 ELSE { old pair}
 					// 22 int <- X'(H) INTER f({x*})
 					// initialize intersection to image
-					intersection = new HashSet<Object>(image);
+					if (scratchIntersection != null) {
+						scratchIntersection.copyFrom((BitSetElementSet) image);
+						intersection = scratchIntersection;
+					} else {
+						intersection = new HashSet<Object>(image);
+					}
 					intersection.retainAll(node.getIntent());
 
 					// 23 IF NOT EXIST H1 e C'[||int||] such that X'(H1) = Int
 					// THEN {H is a generator}
+					// the buckets of newBucketsVisitor are hashed on intents, so this is
+					// a single probe rather than a scan of C'[||int||]
 					int intersectionSize = intersection.size();
-					Set<LatticeNode> newBucket = newBucketsVisitor.getBucketForSize(intersectionSize);
-					boolean nodeIsGenerator = true;
-					if (newBucket != null) {
-						for (LatticeNode newNode : newBucket) {
-							if (newNode.getIntent().equals(intersection))
-								nodeIsGenerator = false;
-						}
-					}
+					boolean nodeIsGenerator = newBucketsVisitor.getNodeWithIntent(intersection) == null;
 					//
 					if (nodeIsGenerator) {
 						// 24 Create new pair Hn = (X(H) UNION {x*}, int) and
 						// add to C'[||int||]
-						LatticeNode newNode = new LatticeNodeImpl();
+						LatticeNode newNode = createNodeLike(node);
 						// first take care of extension
 						newNode.addCollectionToExtent(node.getExtent());
 						newNode.addToExtent(entity);
@@ -160,8 +368,10 @@ public class LatticeBuilderImpl implements LatticeBuilder {
 						// then intent
 						newNode.addCollectionToIntent(intersection);
 
-						// then add to C'[||int||]
+						// then add to C'[||int||], and to the buckets of the
+						// lattice
 						newBucketsVisitor.processNode(newNode);
+						currentBuckets.add(newNode);
 
 						// 25 Add edge Hn -> H
 						// link newNode to node
@@ -175,7 +385,7 @@ public class LatticeBuilderImpl implements LatticeBuilder {
 						SortedSet<Integer> newSortedCardinalitiesLessThanIntersectionSize = newSortedCardinalities
 								.headSet(new Integer(intersectionSize));
 						for (Integer newBucketSize : newSortedCardinalitiesLessThanIntersectionSize) {
-							Set<LatticeNode> newBucketOfCurrentSize = newBucketsVisitor.getBucketForSize(newBucketSize);
+							Collection<LatticeNode> newBucketOfCurrentSize = newBucketsVisitor.getBucketForSize(newBucketSize);
 							// 28 FOR each Ha e C'[j]
 							for (LatticeNode potentialParent : newBucketOfCurrentSize) {
 								// 29 IF X'(Ha) <= int {Ha is a potential parent
@@ -231,4 +441,213 @@ public class LatticeBuilderImpl implements LatticeBuilder {
 		}
 	}
 
+	/**
+	 * removes entity from aLattice, i.e. turns the lattice of a relation into
+	 * the lattice of the relation without the row of entity. This is the
+	 * converse of add(): entity leaves the extents that contain it, and the
+	 * nodes whose extent is then that of one of their children are no longer
+	 * concepts (their intent is not closed anymore), so they go, and their
+	 * parents inherit their children. The top and the bottom always stay.
+	 *
+	 * The nodes are treated by decreasing intent size (from the intent index),
+	 * so that the children of a node are cleaned up before it: a node that has
+	 * to go then has a single child with the same extent. A lattice with
+	 * reduced labels cannot be modified
+	 *
+	 * @param lattice
+	 * @param entity
+	 */
+	public void remove(Lattice lattice, Object entity) {
+		if (lattice.getBottom() instanceof ReducedLatticeNodeImpl)
+			throw new UnsupportedOperationException("cannot remove objects from a lattice with reduced labels");
+		if (!lattice.getTop().getExtent().contains(entity))
+			return;
+
+		IntentIndex currentBuckets = lattice.getIntentIndex();
+		if (currentBuckets.size() == 0)
+			indexNodes(lattice);
+
+		// collect the nodes first: removing nodes modifies the buckets
+		List<LatticeNode> nodesWithEntity = new ArrayList<LatticeNode>();
+		for (Integer bucketSize : currentBuckets.getCardinalities().descendingSet()) {
+			for (LatticeNode node : currentBuckets.getNodesOfCardinality(bucketSize)) {
+				if (node.getExtent().contains(entity))
+					nodesWithEntity.add(node);
+			}
+		}
+
+		for (LatticeNode node : nodesWithEntity) {
+			node.removeFromExtent(entity);
+			if (node == lattice.getTop() || node == lattice.getBottom())
+				continue;
+			boolean isConcept = true;
+			for (LatticeNode child : node.getChildren()) {
+				if (child.getExtent().size() == node.getExtent().size())
+					isConcept = false;
+			}
+			if (!isConcept) {
+				currentBuckets.remove(node);
+				unlink(node);
+			}
+		}
+	}
+
+	/**
+	 * takes aNode out of the lattice, and links each of its parents to each of
+	 * its children, unless the parent reaches the child through another of its
+	 * children
+	 *
+	 * @param aNode
+	 */
+	protected void unlink(LatticeNode aNode) {
+		List<LatticeNode> parents = new ArrayList<LatticeNode>(aNode.getParents());
+		List<LatticeNode> children = new ArrayList<LatticeNode>(aNode.getChildren());
+		for (LatticeNode parent : parents) {
+			parent.removeChild(aNode);
+			aNode.removeParent(parent);
+		}
+		for (LatticeNode child : children) {
+			child.removeParent(aNode);
+			aNode.removeChild(child);
+		}
+		for (LatticeNode child : children) {
+			for (LatticeNode parent : parents) {
+				boolean reached = false;
+				for (LatticeNode otherChild : parent.getChildren()) {
+					if (child.getIntent().containsAll(otherChild.getIntent()))
+						reached = true;
+				}
+				if (!reached) {
+					parent.addChild(child);
+					child.addParent(parent);
+				}
+			}
+		}
+	}
+
+	/**
+	 * applies changes to the rows of a relation to the lattice of the
+	 * relation: each object of changedRows gets its new row (an empty row
+	 * takes it out of the lattice), and the bottom gets allImages, all the
+	 * attributes of the relation once changed, as its intent. The objects are
+	 * removed first, then inserted again with add(), so that the cost depends
+	 * on the number of rows that changed, not on the size of the relation
+	 *
+	 * @param lattice
+	 * @param changedRows
+	 * @param allImages
+	 */
+	public void updateRows(Lattice lattice, Map<Object, Set<Object>> changedRows, Collection<Object> allImages) {
+		for (Object entity : changedRows.keySet())
+			remove(lattice, entity);
+
+		// the new attributes first, since add() needs them in the bottom
+		IntentIndex currentBuckets = lattice.getIntentIndex();
+		LatticeNode bottom = lattice.getBottom();
+		Set<Object> newAttributes = new HashSet<Object>(allImages);
+		newAttributes.removeAll(bottom.getIntent());
+		if (!newAttributes.isEmpty()) {
+			if (bottom.getExtent().isEmpty()) {
+				currentBuckets.remove(bottom);
+				bottom.addCollectionToIntent(newAttributes);
+				currentBuckets.add(bottom);
+			} else {
+				// no object has the new attributes: (M', M) stays, above the
+				// new bottom
+				LatticeNode newBottom = createNodeLike(bottom);
+				newBottom.addCollectionToIntent(bottom.getIntent());
+				newBottom.addCollectionToIntent(newAttributes);
+				newBottom.addParent(bottom);
+				bottom.addChild(newBottom);
+				currentBuckets.add(newBottom);
+				lattice.setBottom(newBottom);
+			}
+		}
+
+		for (Map.Entry<Object, Set<Object>> row : changedRows.entrySet()) {
+			if (!row.getValue().isEmpty())
+				add(lattice, row.getKey(), row.getValue());
+		}
+
+		// then the attributes that no object has anymore: only the bottom has
+		// them
+		bottom = lattice.getBottom();
+		Set<Object> oldAttributes = new HashSet<Object>(bottom.getIntent());
+		oldAttributes.removeAll(allImages);
+		if (!oldAttributes.isEmpty()) {
+			currentBuckets.remove(bottom);
+			for (Object attribute : oldAttributes)
+				bottom.removeFromIntent(attribute);
+			LatticeNode sameIntent = currentBuckets.find(bottom.getIntent());
+			if (sameIntent != null) {
+				// (M', M) was a concept of its own, above the empty bottom
+				unlink(bottom);
+				lattice.setBottom(sameIntent);
+			} else
+				currentBuckets.add(bottom);
+		}
+	}
+
+	/**
+	 * fills the intent index of aLattice by visiting its nodes
+	 * 
+	 * @param aLattice
+	 */
+	protected void indexNodes(Lattice aLattice) {
+		BucketFillerVisitor bucketsVisitor = new BucketFillerVisitor();
+		bucketsVisitor.visitLatticeFromTop(aLattice);
+		for (Integer bucketSize : bucketsVisitor.getBucketSizesSorted()) {
+			for (LatticeNode node : bucketsVisitor.getBucketForSize(bucketSize))
+				aLattice.getIntentIndex().add(node);
+		}
+	}
+
+	/**
+	 * turns the lattice of a transposed relation into the lattice of the
+	 * relation, with the conventions of initializeTopBottom() and add(): the
+	 * bottom is (M', M), and the top is (G, {}), above (G, G') if the objects
+	 * share attributes. The top (M, {}) of the transposed lattice becomes
+	 * (M', M) and its bottom (G', G) becomes (G, G'), so the former has to go
+	 * if it sits below the real (M', M), and the latter may need a top above
+	 * it
+	 * 
+	 * @param aLattice
+	 */
+	protected void flipBack(LatticeImpl aLattice) {
+		aLattice.flip();
+		LatticeNode bottom = aLattice.getBottom();
+		if (bottom.getParents().size() == 1) {
+			LatticeNode parent = bottom.getParents().iterator().next();
+			if (parent.getIntent().size() == bottom.getIntent().size()) {
+				parent.removeChild(bottom);
+				bottom.removeParent(parent);
+				aLattice.getIntentIndex().remove(bottom);
+				aLattice.setBottom(parent);
+			}
+		}
+		LatticeNode top = aLattice.getTop();
+		if (!top.getIntent().isEmpty()) {
+			LatticeNode newTop = createNodeLike(top);
+			newTop.addCollectionToExtent(top.getExtent());
+			newTop.addChild(top);
+			top.addParent(newTop);
+			aLattice.getIntentIndex().add(newTop);
+			aLattice.setTop(newTop);
+		}
+	}
+
+	/**
+	 * creates an empty node that uses the same storage (hash sets or bitsets)
+	 * as <code>aNode</code>
+	 * 
+	 * @param aNode
+	 * @return
+	 */
+	protected LatticeNode createNodeLike(LatticeNode aNode) {
+		if (aNode.getExtent() instanceof BitSetElementSet && aNode.getIntent() instanceof BitSetElementSet)
+			return new LatticeNodeImpl(((BitSetElementSet) aNode.getExtent()).getIndex(),
+					((BitSetElementSet) aNode.getIntent()).getIndex());
+		return new LatticeNodeImpl();
+	}
+
 }
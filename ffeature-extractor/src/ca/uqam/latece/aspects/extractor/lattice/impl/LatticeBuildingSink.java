@@ -0,0 +1,86 @@
+package ca.uqam.latece.aspects.extractor.lattice.impl;
+
+import java.util.Collections;
+import java.util.Set;
+
+import ca.uqam.latece.aspects.extractor.input.RelationBuilder;
+import ca.uqam.latece.aspects.extractor.input.RelationSink;
+import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.LatticeImpl;
+
+/**
+ * this sink builds the lattice of a relation as its rows come, with one of the
+ * incremental builders (Godin et al.'s, or AddIntent): each row is inserted
+ * with <code>add()</code> as soon as it is complete, so the construction of the
+ * lattice overlaps the extraction of the relation, and the relation itself is
+ * never built.
+ *
+ * The lattice is the same as the one that buildLattice() returns for the
+ * relation, except that the rows are always inserted (the orientation of the
+ * builder is ignored), in the order in which they come. The reduced labels of
+ * the builder are honoured, once the last row is in.
+ *
+ * The rows are inserted on the thread that calls rowCompleted(), i.e. the
+ * extraction thread, unless the sink is put behind a
+ * <code>QueuedRelationSink</code>.
+ */
+public class LatticeBuildingSink implements RelationSink {
+
+	private LatticeBuilderImpl builder;
+
+	private Lattice lattice = null;
+
+	private boolean completed = false;
+
+	/**
+	 * creates a sink that inserts the rows with aBuilder, which must be one of
+	 * the incremental builders: the batch builders (FCbO and its subclasses)
+	 * need the whole relation, and their iceberg lattices (see
+	 * <code>FCbOLatticeBuilderImpl.setMinimumSupport()</code>) cannot be built
+	 * row by row at all. They are rejected here, rather than at the first row
+	 *
+	 * @param aBuilder
+	 */
+	public LatticeBuildingSink(LatticeBuilderImpl aBuilder) {
+		if (aBuilder instanceof FCbOLatticeBuilderImpl && ((FCbOLatticeBuilderImpl) aBuilder).isIceberg())
+			throw new IllegalArgumentException("an iceberg lattice cannot be built row by row");
+		if (aBuilder instanceof FCbOLatticeBuilderImpl || aBuilder instanceof CoronLatticeBuilderImpl)
+			throw new IllegalArgumentException(aBuilder.getClass().getSimpleName() + " is not incremental");
+		builder = aBuilder;
+	}
+
+	@Override
+	public void relationStarted(RelationBuilder aBuilder, Set<Object> allImages) {
+		lattice = new LatticeImpl();
+		completed = false;
+		builder.initializeTopBottom(lattice, Collections.emptySet(), allImages, null, null);
+	}
+
+	@Override
+	public void rowCompleted(Object domainElement, Set<Object> image) {
+		builder.add(lattice, domainElement, image);
+	}
+
+	@Override
+	public void relationCompleted() {
+		if (builder.isReducedLabelling())
+			lattice = ((LatticeImpl) lattice).reduceLabels(builder.getLabelCacheSize());
+		completed = true;
+	}
+
+	/**
+	 * returns the lattice of the rows received so far, or null if the relation
+	 * has not started. It is only complete (and only has reduced labels, if
+	 * need be) once relationCompleted() has been called
+	 *
+	 * @return
+	 */
+	public Lattice getLattice() {
+		return lattice;
+	}
+
+	public boolean isCompleted() {
+		return completed;
+	}
+
+}
@@ -0,0 +1,573 @@
+package ca.uqam.latece.aspects.extractor.lattice.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.CompactLattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.MappedFile;
+
+/**
+ * this class does what <code>ConceptLatticeAssembler</code> does, for the
+ * lattices that do not fit in the heap: the concepts that
+ * <code>FCbOEnumerator</code> hands to it are spilled to a temporary file as
+ * they come, and the edges are computed a block of concepts at a time, and
+ * spilled to other temporary files, in compressed sparse row form. The result
+ * is a <code>CompactLattice</code> whose tables are those files, mapped, which
+ * <code>MappedLattice.write()</code> can copy to its own file.
+ *
+ * The lattice is the one <code>ConceptLatticeAssembler</code> builds, with
+ * full labels: the same covers (Lindig's test), the same top and bottom, and
+ * the same synthetic bottom for iceberg lattices. Its nodes are numbered by
+ * increasing intent size, which is a top-down order.
+ *
+ * The heap only holds the context and a few ints per concept: its rank, the
+ * size and the hash of its intent, the offsets of its edges, and a slot in an
+ * open addressing table of the intents, whose probes compare the intents in
+ * the spill.
+ *
+ * The assembler must be closed once the lattice has been read, which drops
+ * the mappings and deletes the temporary files.
+ */
+class SpillingLatticeAssembler implements Consumer<Concept>, Closeable {
+
+	/**
+	 * the covers of this many concepts are computed (in parallel) before they
+	 * are spilled
+	 */
+	private static final int BLOCK_SIZE = 1 << 12;
+
+	/**
+	 * below this number of concepts, covers are computed in the current thread
+	 */
+	private static final int SEQUENTIAL_THRESHOLD = 64;
+
+	private FormalContext context;
+
+	private int minimumSupport;
+
+	/**
+	 * where the temporary files go
+	 */
+	private File directory;
+
+	private List<File> spills = new ArrayList<File>();
+
+	/**
+	 * the spills mapped so far, which close() drops
+	 */
+	private List<MappedFile> mappings = new ArrayList<MappedFile>();
+
+	private File conceptFile;
+
+	private DataOutputStream conceptOut;
+
+	private int numberOfConcepts = 0;
+
+	/**
+	 * concept number (in the spill) -> size of its intent
+	 */
+	private int[] intentSizes = new int[1024];
+
+	private int extentWords;
+
+	private int intentWords;
+
+	/**
+	 * the concepts, once they have all come: the extent and then the intent
+	 * of each, by concept number
+	 */
+	private MappedFile concepts;
+
+	/**
+	 * concept number -> hash of its intent
+	 */
+	private int[] hashes;
+
+	/**
+	 * concept number + 1, or 0 for an empty slot, at the hash of its intent
+	 */
+	private int[] table;
+
+	/**
+	 * creates an assembler whose temporary files go to aDirectory (or to the
+	 * default temporary directory, if null)
+	 *
+	 * @param aContext
+	 * @param minimumSupport
+	 * @param aDirectory
+	 * @throws IOException
+	 */
+	SpillingLatticeAssembler(FormalContext aContext, int minimumSupport, File aDirectory) throws IOException {
+		context = aContext;
+		this.minimumSupport = minimumSupport;
+		directory = aDirectory;
+		extentWords = aContext.newObjectSet().length;
+		intentWords = aContext.newAttributeSet().length;
+		conceptFile = newSpill("concepts");
+		conceptOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(conceptFile), 1 << 16));
+	}
+
+	private File newSpill(String aName) throws IOException {
+		File file = File.createTempFile(aName, ".spill", directory);
+		file.deleteOnExit();
+		spills.add(file);
+		return file;
+	}
+
+	private MappedFile mapped(MappedFile aFile) {
+		mappings.add(aFile);
+		return aFile;
+	}
+
+	/**
+	 * spills aConcept. Called from the threads of the enumeration
+	 */
+	@Override
+	public synchronized void accept(Concept aConcept) {
+		try {
+			for (long word : aConcept.extent)
+				conceptOut.writeLong(word);
+			for (long word : aConcept.intent)
+				conceptOut.writeLong(word);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (numberOfConcepts == intentSizes.length)
+			intentSizes = Arrays.copyOf(intentSizes, 2 * numberOfConcepts);
+		intentSizes[numberOfConcepts++] = Bits.cardinality(aConcept.intent);
+	}
+
+	/**
+	 * returns the lattice of the concepts spilled so far, which must be all
+	 * the concepts of the context (or of its iceberg lattice). The lattice
+	 * reads the temporary files, so it must not be used after close()
+	 *
+	 * @param aPool
+	 * @return
+	 * @throws IOException
+	 */
+	CompactLattice assemble(ForkJoinPool aPool) throws IOException {
+		conceptOut.close();
+		concepts = mapped(MappedFile.map(conceptFile));
+		indexIntents();
+		return new SpilledLattice(aPool);
+	}
+
+	/**
+	 * drops the mappings of the temporary files, and deletes them
+	 */
+	@Override
+	public void close() {
+		try {
+			conceptOut.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		for (MappedFile mapping : mappings)
+			mapping.close();
+		mappings.clear();
+		for (File file : spills)
+			file.delete();
+	}
+
+	private long extentPosition(int concept) {
+		return 8L * concept * (extentWords + intentWords);
+	}
+
+	private long intentPosition(int concept) {
+		return extentPosition(concept) + 8L * extentWords;
+	}
+
+	private void readExtent(int concept, long[] words) {
+		long position = extentPosition(concept);
+		for (int w = 0; w < extentWords; w++)
+			words[w] = concepts.getLong(position + 8L * w);
+	}
+
+	private void readIntent(int concept, long[] words) {
+		long position = intentPosition(concept);
+		for (int w = 0; w < intentWords; w++)
+			words[w] = concepts.getLong(position + 8L * w);
+	}
+
+	private static int hashOf(long[] words) {
+		return Arrays.hashCode(words);
+	}
+
+	private void indexIntents() {
+		hashes = new int[numberOfConcepts];
+		table = new int[Integer.highestOneBit(Math.max(numberOfConcepts, 1)) << 2];
+		long[] intent = context.newAttributeSet();
+		for (int concept = 0; concept < numberOfConcepts; concept++) {
+			readIntent(concept, intent);
+			hashes[concept] = hashOf(intent);
+			int slot = slotOf(hashes[concept]);
+			while (table[slot] != 0)
+				slot = (slot + 1) & (table.length - 1);
+			table[slot] = concept + 1;
+		}
+	}
+
+	private int slotOf(int hash) {
+		return (hash ^ (hash >>> 16)) & (table.length - 1);
+	}
+
+	/**
+	 * returns the number of the concept whose intent is anIntent, or -1 if
+	 * there is none
+	 */
+	private int find(long[] anIntent) {
+		int hash = hashOf(anIntent);
+		for (int slot = slotOf(hash); table[slot] != 0; slot = (slot + 1) & (table.length - 1)) {
+			int concept = table[slot] - 1;
+			if (hashes[concept] == hash && hasIntent(concept, anIntent))
+				return concept;
+		}
+		return -1;
+	}
+
+	private boolean hasIntent(int concept, long[] anIntent) {
+		long position = intentPosition(concept);
+		for (int w = 0; w < intentWords; w++) {
+			if (concepts.getLong(position + 8L * w) != anIntent[w])
+				return false;
+		}
+		return true;
+	}
+
+	private int positionOf(long[] anIntent) {
+		int concept = find(anIntent);
+		if (concept < 0)
+			throw new IllegalStateException("the concepts given to the assembler are not all the concepts of the context");
+		return concept;
+	}
+
+	/**
+	 * returns the numbers of the children of a concept, as in
+	 * <code>ConceptLatticeAssembler.lowerCovers()</code>
+	 */
+	private int[] lowerCovers(long[] anExtent, long[] anIntent) {
+		// concept of D -> number of attributes m that generate D
+		Map<Integer, int[]> generators = new HashMap<Integer, int[]>();
+		long[] scratch = context.newObjectSet();
+		for (int attributeId = 0; attributeId < context.getNumberOfAttributes(); attributeId++) {
+			if (Bits.get(anIntent, attributeId))
+				continue;
+			Bits.and(anExtent, context.getColumn(attributeId), scratch);
+			if (minimumSupport > 0 && Bits.cardinality(scratch) < minimumSupport)
+				continue;
+			int concept = positionOf(context.intentOf(scratch));
+			int[] count = generators.get(concept);
+			if (count == null)
+				generators.put(concept, new int[] { 1 });
+			else
+				count[0]++;
+		}
+		int[] covers = new int[generators.size()];
+		int numberOfCovers = 0;
+		for (Map.Entry<Integer, int[]> entry : generators.entrySet()) {
+			if (entry.getValue()[0] == intentSizes[entry.getKey()] - Bits.cardinality(anIntent))
+				covers[numberOfCovers++] = entry.getKey();
+		}
+		return Arrays.copyOf(covers, numberOfCovers);
+	}
+
+	/**
+	 * the lattice over the spilled tables
+	 */
+	private class SpilledLattice extends CompactLattice {
+
+		private int numberOfNodes;
+
+		/**
+		 * rank (node id) -> concept number, or -1 for the top or the bottom
+		 * that were added to the concepts
+		 */
+		private int[] conceptAt;
+
+		private int[] rankOf;
+
+		/**
+		 * the labels of the added top and bottom, or null
+		 */
+		private long[] topExtent;
+
+		private long[] bottomExtent;
+
+		/**
+		 * node id -> start of its children in the children file, and of its
+		 * parents in the parents file. Entry numberOfNodes is the number of
+		 * edges
+		 */
+		private int[] childOffsets;
+
+		private int[] parentOffsets;
+
+		private MappedFile children;
+
+		private MappedFile parents;
+
+		SpilledLattice(ForkJoinPool aPool) throws IOException {
+			// 1. top and bottom, as in ConceptLatticeAssembler
+			int topConcept = positionOf(context.intentOf(context.allObjects()));
+			if (intentSizes[topConcept] > 0)
+				topExtent = context.allObjects();
+			int bottomConcept = find(context.allAttributes());
+			if (bottomConcept < 0)
+				// iceberg lattice: synthetic bottom below the concepts that
+				// have no children left
+				bottomExtent = context.extentOf(context.allAttributes());
+			else if (bottomConcept == topConcept)
+				// no attributes at all: a bottom with an empty extent below
+				// the top
+				bottomExtent = context.newObjectSet();
+
+			// 2. number the nodes by increasing intent size
+			int first = topExtent == null ? 0 : 1;
+			numberOfNodes = first + numberOfConcepts + (bottomExtent == null ? 0 : 1);
+			conceptAt = new int[numberOfNodes];
+			Arrays.fill(conceptAt, -1);
+			rankOf = new int[numberOfConcepts];
+			int[] starts = new int[context.getNumberOfAttributes() + 2];
+			for (int concept = 0; concept < numberOfConcepts; concept++)
+				starts[intentSizes[concept] + 1]++;
+			for (int size = 1; size < starts.length; size++)
+				starts[size] += starts[size - 1];
+			for (int concept = 0; concept < numberOfConcepts; concept++) {
+				rankOf[concept] = first + starts[intentSizes[concept]]++;
+				conceptAt[rankOf[concept]] = concept;
+			}
+
+			// 3. the children, a block at a time
+			File childFile = newSpill("children");
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(childFile),
+					1 << 16));
+			childOffsets = new int[numberOfNodes + 1];
+			parentOffsets = new int[numberOfNodes + 1];
+			try {
+				int[][] block = new int[BLOCK_SIZE][];
+				for (int start = 0; start < numberOfNodes; start += BLOCK_SIZE) {
+					int end = Math.min(start + BLOCK_SIZE, numberOfNodes);
+					aPool.invoke(new CoversTask(block, start, start, end));
+					for (int id = start; id < end; id++) {
+						int[] someChildren = block[id - start];
+						for (int child : someChildren) {
+							out.writeInt(child);
+							parentOffsets[child + 1]++;
+						}
+						childOffsets[id + 1] = childOffsets[id] + someChildren.length;
+					}
+				}
+			} finally {
+				out.close();
+			}
+			children = mapped(MappedFile.map(childFile));
+
+			// 4. the parents, scattered from the children: the parents of a
+			// node come in increasing order, since the nodes do
+			for (int id = 0; id < numberOfNodes; id++)
+				parentOffsets[id + 1] += parentOffsets[id];
+			parents = mapped(MappedFile.create(newSpill("parents"), 4L * parentOffsets[numberOfNodes]));
+			int[] next = Arrays.copyOf(parentOffsets, numberOfNodes);
+			for (int id = 0; id < numberOfNodes; id++) {
+				for (int position = childOffsets[id]; position < childOffsets[id + 1]; position++) {
+					int child = children.getInt(4L * position);
+					parents.putInt(4L * next[child]++, id);
+				}
+			}
+		}
+
+		/**
+		 * returns the ids of the children of node id, sorted
+		 */
+		private int[] childrenOf(int id, long[] extent, long[] intent) {
+			int concept = conceptAt[id];
+			if (concept < 0)
+				// the added top has the top concept as its only child, and the
+				// added bottom has none
+				return id == 0 && topExtent != null ? new int[] { 1 } : new int[0];
+			readExtent(concept, extent);
+			readIntent(concept, intent);
+			int[] someChildren = lowerCovers(extent, intent);
+			if (someChildren.length == 0 && bottomExtent != null)
+				return new int[] { numberOfNodes - 1 };
+			for (int i = 0; i < someChildren.length; i++)
+				someChildren[i] = rankOf[someChildren[i]];
+			Arrays.sort(someChildren);
+			return someChildren;
+		}
+
+		/**
+		 * computes the children of the nodes from start (inclusive) to end
+		 * (exclusive), into block (whose first entry is the node blockStart),
+		 * splitting the range until it is small enough
+		 */
+		private class CoversTask extends RecursiveAction {
+
+			private static final long serialVersionUID = 1L;
+
+			private int[][] block;
+
+			private int blockStart;
+
+			private int start;
+
+			private int end;
+
+			CoversTask(int[][] block, int blockStart, int start, int end) {
+				this.block = block;
+				this.blockStart = blockStart;
+				this.start = start;
+				this.end = end;
+			}
+
+			@Override
+			protected void compute() {
+				if (end - start <= SEQUENTIAL_THRESHOLD) {
+					long[] extent = context.newObjectSet(), intent = context.newAttributeSet();
+					for (int id = start; id < end; id++)
+						block[id - blockStart] = childrenOf(id, extent, intent);
+				} else {
+					int middle = (start + end) >>> 1;
+					invokeAll(new CoversTask(block, blockStart, start, middle), new CoversTask(block, blockStart,
+							middle, end));
+				}
+			}
+		}
+
+		@Override
+		public int getNumberOfNodes() {
+			return numberOfNodes;
+		}
+
+		@Override
+		public int getTopId() {
+			return 0;
+		}
+
+		@Override
+		public int getBottomId() {
+			return numberOfNodes - 1;
+		}
+
+		@Override
+		public int getChildrenStart(int id) {
+			return childOffsets[id];
+		}
+
+		@Override
+		public int getChildrenEnd(int id) {
+			return childOffsets[id + 1];
+		}
+
+		@Override
+		public int getChildAt(int position) {
+			return children.getInt(4L * position);
+		}
+
+		@Override
+		public int getParentsStart(int id) {
+			return parentOffsets[id];
+		}
+
+		@Override
+		public int getParentsEnd(int id) {
+			return parentOffsets[id + 1];
+		}
+
+		@Override
+		public int getParentAt(int position) {
+			return parents.getInt(4L * position);
+		}
+
+		@Override
+		public int getExtentSize(int id) {
+			int size = 0;
+			for (int w = 0; w < extentWords; w++)
+				size += Long.bitCount(getExtentWord(id, w));
+			return size;
+		}
+
+		@Override
+		public int getIntentSize(int id) {
+			int concept = conceptAt[id];
+			if (concept >= 0)
+				return intentSizes[concept];
+			return id == 0 && topExtent != null ? 0 : context.getNumberOfAttributes();
+		}
+
+		@Override
+		public int getNumberOfObjects() {
+			return context.getNumberOfObjects();
+		}
+
+		@Override
+		public int getNumberOfAttributes() {
+			return context.getNumberOfAttributes();
+		}
+
+		@Override
+		public Object getObject(int objectId) {
+			return context.getObjectIndex().elementAt(objectId);
+		}
+
+		@Override
+		public int getObjectId(Object anObject) {
+			return context.getObjectIndex().idOf(anObject);
+		}
+
+		@Override
+		public Object getAttribute(int attributeId) {
+			return context.getAttributeIndex().elementAt(attributeId);
+		}
+
+		@Override
+		public int getAttributeId(Object anAttribute) {
+			return context.getAttributeIndex().idOf(anAttribute);
+		}
+
+		@Override
+		protected int getExtentWords() {
+			return extentWords;
+		}
+
+		@Override
+		protected int getIntentWords() {
+			return intentWords;
+		}
+
+		@Override
+		protected long getExtentWord(int id, int w) {
+			int concept = conceptAt[id];
+			if (concept >= 0)
+				return concepts.getLong(extentPosition(concept) + 8L * w);
+			return id == 0 && topExtent != null ? topExtent[w] : bottomExtent[w];
+		}
+
+		@Override
+		protected long getIntentWord(int id, int w) {
+			int concept = conceptAt[id];
+			if (concept >= 0)
+				return concepts.getLong(intentPosition(concept) + 8L * w);
+			if (id == 0 && topExtent != null)
+				return 0L;
+			// the added bottom has all the attributes
+			int bits = context.getNumberOfAttributes() - 64 * w;
+			return bits >= 64 ? -1L : (1L << bits) - 1;
+		}
+	}
+
+}
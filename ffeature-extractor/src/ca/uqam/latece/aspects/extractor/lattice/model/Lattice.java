@@ -1,5 +1,6 @@
 package ca.uqam.latece.aspects.extractor.lattice.model;
 
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.IntentIndex;
 import ca.uqam.latece.aspects.extractor.lattice.visitors.Visitor;
 
 public interface Lattice {
@@ -15,5 +16,13 @@ public interface Lattice {
 	public void acceptTopVisitor(Visitor aVisitor);
 	
 	public void acceptBottomVisitor (Visitor aVisitor);
+	
+	/**
+	 * returns the index of the nodes of the lattice by intent cardinality and intent contents.
+	 * The index is live: builders add the nodes they create to it, so that they do not need to
+	 * traverse the lattice to find the nodes of a given intent size 
+	 * @return
+	 */
+	public IntentIndex getIntentIndex();
 
 }
@@ -10,6 +10,14 @@ import ca.uqam.latece.aspects.extractor.lattice.visitors.Visitor.Direction;
 
 public interface LatticeNode {
 	
+	/**
+	 * returns the id of the node, which is given at creation and never changes.
+	 * Nodes are hashed and compared on their ids, which is also what side
+	 * tables such as <code>NodeIdSet</code> and <code>NodeTable</code> index
+	 * @return
+	 */
+	public int getId();
+	
 	public Set<Object> getExtent();
 	
 	public void addToExtent(Object anObject);
@@ -1,5 +1,6 @@
 package ca.uqam.latece.aspects.extractor.lattice.model;
 
+import java.util.Collection;
 import java.util.Set;
 
 import ca.uqam.latece.aspects.extractor.input.RelationBuilder;
@@ -66,11 +67,40 @@ public interface Relation {
 	public boolean containsRelation(Object key,Object value);
 	
 	/**
-	 * returns the set of all images
+	 * returns the set of all images, i.e. the union of the images of the elements of the domain.
+	 * It is maintained as the relation changes, so callers must not modify it
 	 * @return
 	 */
 	public Set<Object> getAllImages();
 	
+	/**
+	 * returns the elements of the domain whose image contains imageElement (e.g. the types that
+	 * have a given method), or an empty set if there are none. The relation keeps an inverted
+	 * index up to date, so this is not a scan of the domain. Callers must not modify the set
+	 * @param imageElement
+	 * @return
+	 */
+	public Set<Object> getPreimage(Object imageElement);
+	
+	/**
+	 * returns the elements of the domain whose images contain all of someImageElements (the
+	 * extent of a set of attributes, in FCA terms). If someImageElements is empty, this is the
+	 * whole domain. The set is a new one
+	 * @param someImageElements
+	 * @return
+	 */
+	public Set<Object> getCommonPreimage(Collection<Object> someImageElements);
+	
+	/**
+	 * returns the elements shared by the images of all of someDomainElements (the intent of a
+	 * set of objects, in FCA terms). If someDomainElements is empty, this is getAllImages().
+	 * The set is a new one. The closure of a set of image elements B is thus
+	 * getCommonImage(getCommonPreimage(B))
+	 * @param someDomainElements
+	 * @return
+	 */
+	public Set<Object> getCommonImage(Collection<Object> someDomainElements);
+	
 	/**
 	 * returns the builder that built this relationship. Could contain additional interesting info
 	 * that is not contained in the relationship
@@ -0,0 +1,81 @@
+package ca.uqam.latece.aspects.extractor.lattice.model.impl;
+
+import java.util.HashMap;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import ca.uqam.latece.aspects.extractor.input.RelationBuilder;
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+
+/**
+ * what the relations have in common, whatever their storage: the builder
+ * that built them, and printString(). <code>RelationImpl</code> stores the
+ * relation in hash maps, and <code>IndexedRelationImpl</code> in bitsets.
+ */
+public abstract class AbstractRelation implements Relation {
+
+	private RelationBuilder builder;
+
+	protected AbstractRelation() {
+	}
+
+	protected AbstractRelation(RelationBuilder aBuilder) {
+		builder = aBuilder;
+	}
+
+	@Override
+	public RelationBuilder getRelationBuilder() {
+		return builder;
+	}
+
+	@Override
+	public String printString() {
+		StringBuffer buffer = new StringBuffer();
+		// print the images by sorted key values
+		HashMap<String, Object> keyMap = new HashMap<String, Object>();
+		SortedSet<String> sortedKeys = new TreeSet<String>();
+		for (Object key : getDomain()) {
+			String keyString = printDomainObject(key);
+			sortedKeys.add(keyString);
+			keyMap.put(keyString, key);
+		}
+
+		//
+		for (String keyString : sortedKeys) {
+			Object key = keyMap.get(keyString);
+			// print the image of key
+			// -> first the key
+			buffer.append(keyString + " =====> [");
+			// then the image of the current element
+			Set<Object> image = getImage(key);
+			for (Object obj : image) {
+				buffer.append(" " + printImageObject(obj) + ",");
+			}
+			// remove the last character which is the extraneous ","
+			buffer.deleteCharAt(buffer.length() - 1);
+			buffer.append(" ]\n");
+		}
+		
+		return buffer.toString();
+	}
+
+	/**
+	 * prints image objects. Subclasses can override this
+	 * @param obj
+	 * @return
+	 */
+	protected String printImageObject(Object obj) {
+		return obj.toString();
+	}
+
+	/**
+	 * prints domain objects. Subclasses can override this
+	 * @param key
+	 * @return
+	 */
+	protected String printDomainObject(Object key) {
+		return key.toString();
+	}
+
+}
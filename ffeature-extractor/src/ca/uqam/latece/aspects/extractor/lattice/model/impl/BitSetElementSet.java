@@ -0,0 +1,367 @@
+package ca.uqam.latece.aspects.extractor.lattice.model.impl;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * a set of relation elements (ITypes or IMethods) stored as a <code>long[]</code>
+ * bitset over the ids of an <code>ElementIndex</code>.
+ *
+ * It is a regular <code>Set&lt;Object&gt;</code>, so lattice nodes can use it
+ * for their extents and intents without the visitors noticing. But when the
+ * argument of <code>containsAll</code>, <code>retainAll</code>,
+ * <code>addAll</code>, <code>removeAll</code> or <code>equals</code> is another
+ * BitSetElementSet over the same index, the operation is done word by word,
+ * without allocating anything and without hashing a single element. This is
+ * what makes the incremental construction affordable on large relations.
+ *
+ * Two BitSetElementSets over different indices (or a BitSetElementSet and any
+ * other set) are compared element by element, through the usual
+ * <code>AbstractSet</code> behaviour.
+ *
+ * The hash code (the sum of the hash codes of the elements, as for any set)
+ * is kept up to date as bits are set and cleared, from the hash codes cached
+ * by the index, so hashing a set costs nothing.
+ */
+public class BitSetElementSet extends AbstractSet<Object> {
+
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+
+	/**
+	 * the index used to translate elements to bit positions and back
+	 */
+	private ElementIndex index;
+
+	/**
+	 * bit i is set iff the element with id i is in the set. Words beyond the
+	 * end of the array are considered to be 0
+	 */
+	private long[] words;
+
+	/**
+	 * cached cardinality
+	 */
+	private int size;
+
+	/**
+	 * cached hash code: the sum of the hash codes of the elements
+	 */
+	private int hash;
+
+	public BitSetElementSet(ElementIndex anIndex) {
+		index = anIndex;
+		words = new long[wordsFor(anIndex.size())];
+		size = 0;
+		hash = 0;
+	}
+
+	/**
+	 * creates a set over anIndex whose bits are <code>someWords</code>. The set
+	 * takes ownership of the array, which the caller must not modify afterwards
+	 *
+	 * @param anIndex
+	 * @param someWords
+	 */
+	public BitSetElementSet(ElementIndex anIndex, long[] someWords) {
+		index = anIndex;
+		words = someWords;
+		size = 0;
+		for (long word : someWords)
+			size += Long.bitCount(word);
+		hash = computeHash();
+	}
+
+	/**
+	 * copy constructor. The copy shares the index, but not the words
+	 *
+	 * @param another
+	 */
+	public BitSetElementSet(BitSetElementSet another) {
+		index = another.index;
+		words = another.words.clone();
+		size = another.size;
+		hash = another.hash;
+	}
+
+	public ElementIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * returns the raw words of the set. Callers must NOT modify them
+	 *
+	 * @return
+	 */
+	public long[] getWords() {
+		return words;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public boolean contains(Object anObject) {
+		int id = index.idOf(anObject);
+		return id >= 0 && containsId(id);
+	}
+
+	public boolean containsId(int id) {
+		int wordIndex = id >>> ADDRESS_BITS_PER_WORD;
+		return wordIndex < words.length && (words[wordIndex] & (1L << id)) != 0;
+	}
+
+	@Override
+	public boolean add(Object anObject) {
+		return addId(index.intern(anObject));
+	}
+
+	public boolean addId(int id) {
+		int wordIndex = id >>> ADDRESS_BITS_PER_WORD;
+		ensureWords(wordIndex + 1);
+		long before = words[wordIndex];
+		words[wordIndex] = before | (1L << id);
+		if (before == words[wordIndex])
+			return false;
+		size++;
+		hash += index.hashAt(id);
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object anObject) {
+		int id = index.idOf(anObject);
+		return id >= 0 && removeId(id);
+	}
+
+	public boolean removeId(int id) {
+		int wordIndex = id >>> ADDRESS_BITS_PER_WORD;
+		if (wordIndex >= words.length)
+			return false;
+		long before = words[wordIndex];
+		words[wordIndex] = before & ~(1L << id);
+		if (before == words[wordIndex])
+			return false;
+		size--;
+		hash -= index.hashAt(id);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < words.length; i++)
+			words[i] = 0;
+		size = 0;
+		hash = 0;
+	}
+
+	/**
+	 * makes the receiver a copy of <code>another</code>, reusing the receiver's
+	 * words when they are big enough. Used to recycle a scratch set in loops
+	 *
+	 * @param another
+	 */
+	public void copyFrom(BitSetElementSet another) {
+		if (words.length < another.words.length)
+			words = new long[another.words.length];
+		System.arraycopy(another.words, 0, words, 0, another.words.length);
+		for (int i = another.words.length; i < words.length; i++)
+			words[i] = 0;
+		size = another.size;
+		hash = another.index == index ? another.hash : computeHash();
+	}
+
+	/**
+	 * returns the smallest id >= fromId whose bit is set, or -1 if there is none
+	 *
+	 * @param fromId
+	 * @return
+	 */
+	public int nextSetId(int fromId) {
+		int wordIndex = fromId >>> ADDRESS_BITS_PER_WORD;
+		if (wordIndex >= words.length)
+			return -1;
+		long word = words[wordIndex] & (-1L << fromId);
+		while (true) {
+			if (word != 0)
+				return (wordIndex << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+			if (++wordIndex == words.length)
+				return -1;
+			word = words[wordIndex];
+		}
+	}
+
+	@Override
+	public Iterator<Object> iterator() {
+		return new Iterator<Object>() {
+			private int next = nextSetId(0);
+
+			private int last = -1;
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public Object next() {
+				if (next < 0)
+					throw new NoSuchElementException();
+				last = next;
+				next = nextSetId(next + 1);
+				return index.elementAt(last);
+			}
+
+			@Override
+			public void remove() {
+				if (last < 0)
+					throw new IllegalStateException();
+				removeId(last);
+				last = -1;
+			}
+		};
+	}
+
+	/**
+	 * true if the argument is a BitSetElementSet that shares the receiver's
+	 * index, in which case we can work on the words directly
+	 *
+	 * @param aCollection
+	 * @return
+	 */
+	protected boolean isCompatible(Object aCollection) {
+		return aCollection instanceof BitSetElementSet && ((BitSetElementSet) aCollection).index == index;
+	}
+
+	@Override
+	public boolean containsAll(Collection<?> aCollection) {
+		if (!isCompatible(aCollection))
+			return super.containsAll(aCollection);
+		// aCollection is a subset of the receiver iff it has no bit that
+		// the receiver does not have
+		long[] other = ((BitSetElementSet) aCollection).words;
+		if (((BitSetElementSet) aCollection).size > size)
+			return false;
+		for (int i = 0; i < other.length; i++) {
+			long mine = i < words.length ? words[i] : 0L;
+			if ((other[i] & ~mine) != 0)
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Object> aCollection) {
+		if (!isCompatible(aCollection))
+			return super.addAll(aCollection);
+		long[] other = ((BitSetElementSet) aCollection).words;
+		ensureWords(other.length);
+		int before = size;
+		size = 0;
+		for (int i = 0; i < words.length; i++) {
+			if (i < other.length)
+				words[i] |= other[i];
+			size += Long.bitCount(words[i]);
+		}
+		if (size == before)
+			return false;
+		hash = computeHash();
+		return true;
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> aCollection) {
+		if (!isCompatible(aCollection))
+			return super.retainAll(aCollection);
+		long[] other = ((BitSetElementSet) aCollection).words;
+		int before = size;
+		size = 0;
+		for (int i = 0; i < words.length; i++) {
+			words[i] &= i < other.length ? other[i] : 0L;
+			size += Long.bitCount(words[i]);
+		}
+		if (size == before)
+			return false;
+		hash = computeHash();
+		return true;
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> aCollection) {
+		if (!isCompatible(aCollection))
+			return super.removeAll(aCollection);
+		long[] other = ((BitSetElementSet) aCollection).words;
+		int before = size;
+		size = 0;
+		for (int i = 0; i < words.length; i++) {
+			if (i < other.length)
+				words[i] &= ~other[i];
+			size += Long.bitCount(words[i]);
+		}
+		if (size == before)
+			return false;
+		hash = computeHash();
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object anObject) {
+		if (anObject == this)
+			return true;
+		if (!isCompatible(anObject))
+			return super.equals(anObject);
+		BitSetElementSet other = (BitSetElementSet) anObject;
+		if (other.size != size)
+			return false;
+		int common = Math.min(words.length, other.words.length);
+		for (int i = 0; i < common; i++) {
+			if (words[i] != other.words[i])
+				return false;
+		}
+		// same cardinality and same common words: the remaining words of
+		// the longer array can only be 0
+		return true;
+	}
+
+	/**
+	 * we keep the <code>AbstractSet</code> contract (sum of the hash codes of
+	 * the elements) so that a BitSetElementSet and a HashSet with the same
+	 * elements have the same hash code. The sum is maintained as the set
+	 * changes, instead of being computed element by element
+	 */
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	/**
+	 * the sum of the cached hash codes of the elements whose bits are set
+	 */
+	private int computeHash() {
+		int sum = 0;
+		for (int id = nextSetId(0); id >= 0; id = nextSetId(id + 1))
+			sum += index.hashAt(id);
+		return sum;
+	}
+
+	private void ensureWords(int wordsNeeded) {
+		if (words.length < wordsNeeded) {
+			long[] newWords = new long[Math.max(wordsNeeded, 2 * words.length)];
+			System.arraycopy(words, 0, newWords, 0, words.length);
+			words = newWords;
+		}
+	}
+
+	private static int wordsFor(int nbits) {
+		return nbits == 0 ? 0 : ((nbits - 1) >>> ADDRESS_BITS_PER_WORD) + 1;
+	}
+
+}
@@ -0,0 +1,590 @@
+package ca.uqam.latece.aspects.extractor.lattice.model.impl;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import ca.uqam.latece.aspects.extractor.lattice.graph.model.NodeFeatureType;
+import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
+import ca.uqam.latece.aspects.extractor.lattice.visitors.Visitor;
+
+/**
+ * the read-only lattices whose nodes are numbered from 0 to n - 1, and whose
+ * edges and labels are stored in flat tables rather than in
+ * <code>LatticeNodeImpl</code>s: <code>FrozenLattice</code> (arrays on the
+ * heap) and <code>MappedLattice</code> (a memory-mapped file).
+ *
+ * The nodes are numbered in a top-down (topological) order: a node always
+ * comes after its parents. The edges are stored in compressed sparse row
+ * form: the children of node i are getChildAt(getChildrenStart(i)) to
+ * getChildAt(getChildrenEnd(i) - 1), sorted, and likewise for the parents.
+ * The extent (resp. intent) of a node is a bitset over the ids of the objects
+ * (resp. attributes), of getExtentWords() (resp. getIntentWords()) words.
+ * Subclasses say where the tables are.
+ *
+ * The lattice is still a <code>Lattice</code>, and its nodes are still
+ * <code>LatticeNode</code>s, so the visitors work on it unchanged: the nodes
+ * are flyweights (a node id) created on demand, equal iff they have the same
+ * id, and their extents, intents, parents and children are read-only views on
+ * the tables. Names and types (see <code>LatticeGraphGenerator</code>) are
+ * annotations rather than structure, so they can still be set; they are kept
+ * on the heap, for the nodes that have some. Everything else throws an
+ * <code>UnsupportedOperationException</code>: visitors that rewrite the
+ * lattice, like <code>LatticeGraphGenerator</code>, still need a
+ * <code>LatticeImpl</code>.
+ *
+ * Code that knows it has a CompactLattice can also walk the tables directly
+ * through node ids, without creating any object.
+ */
+public abstract class CompactLattice implements Lattice {
+
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+
+	private NodeTable<String> names = new NodeTable<String>();
+
+	private NodeTable<List<NodeFeatureType>> types = new NodeTable<List<NodeFeatureType>>();
+
+	/**
+	 * built on demand, see getIntentIndex()
+	 */
+	private IntentIndex intentIndex;
+
+	/**
+	 * returns the number of nodes. The ids of the nodes range from 0 to
+	 * getNumberOfNodes() - 1, in top-down order
+	 *
+	 * @return
+	 */
+	public abstract int getNumberOfNodes();
+
+	public abstract int getTopId();
+
+	public abstract int getBottomId();
+
+	/**
+	 * the children of node id are getChildAt(getChildrenStart(id)) to
+	 * getChildAt(getChildrenEnd(id) - 1)
+	 *
+	 * @param id
+	 * @return
+	 */
+	public abstract int getChildrenStart(int id);
+
+	public abstract int getChildrenEnd(int id);
+
+	public abstract int getChildAt(int position);
+
+	/**
+	 * the parents of node id are getParentAt(getParentsStart(id)) to
+	 * getParentAt(getParentsEnd(id) - 1)
+	 *
+	 * @param id
+	 * @return
+	 */
+	public abstract int getParentsStart(int id);
+
+	public abstract int getParentsEnd(int id);
+
+	public abstract int getParentAt(int position);
+
+	public abstract int getExtentSize(int id);
+
+	public abstract int getIntentSize(int id);
+
+	public abstract int getNumberOfObjects();
+
+	public abstract int getNumberOfAttributes();
+
+	/**
+	 * returns the object whose id is objectId
+	 *
+	 * @param objectId
+	 * @return
+	 */
+	public abstract Object getObject(int objectId);
+
+	/**
+	 * returns the id of anObject, or -1 if it is not an object of the lattice
+	 *
+	 * @param anObject
+	 * @return
+	 */
+	public abstract int getObjectId(Object anObject);
+
+	public abstract Object getAttribute(int attributeId);
+
+	public abstract int getAttributeId(Object anAttribute);
+
+	/**
+	 * returns the number of words of an extent, and of an intent
+	 *
+	 * @return
+	 */
+	protected abstract int getExtentWords();
+
+	protected abstract int getIntentWords();
+
+	/**
+	 * returns word w of the extent of node id
+	 *
+	 * @param id
+	 * @param w
+	 * @return
+	 */
+	protected abstract long getExtentWord(int id, int w);
+
+	protected abstract long getIntentWord(int id, int w);
+
+	/**
+	 * returns the (flyweight) node whose id is id
+	 *
+	 * @param id
+	 * @return
+	 */
+	public LatticeNode getNode(int id) {
+		if (id < 0 || id >= getNumberOfNodes())
+			throw new IndexOutOfBoundsException("no node " + id);
+		return new CompactNode(id);
+	}
+
+	/**
+	 * returns the id of aNode, or -1 if it is not a node of this lattice
+	 *
+	 * @param aNode
+	 * @return
+	 */
+	public int idOf(LatticeNode aNode) {
+		if (aNode instanceof CompactNode && ((CompactNode) aNode).owner() == this)
+			return ((CompactNode) aNode).id;
+		return -1;
+	}
+
+	@Override
+	public LatticeNode getTop() {
+		return getNumberOfNodes() == 0 ? null : getNode(getTopId());
+	}
+
+	@Override
+	public LatticeNode getBottom() {
+		return getNumberOfNodes() == 0 ? null : getNode(getBottomId());
+	}
+
+	@Override
+	public void setTop(LatticeNode top) {
+		throw new UnsupportedOperationException("a compact lattice cannot be modified");
+	}
+
+	@Override
+	public void setBottom(LatticeNode bottom) {
+		throw new UnsupportedOperationException("a compact lattice cannot be modified");
+	}
+
+	@Override
+	public void acceptTopVisitor(Visitor aVisitor) {
+		aVisitor.visitLatticeFromTop(this);
+	}
+
+	@Override
+	public void acceptBottomVisitor(Visitor aVisitor) {
+		aVisitor.visitLatticeFromBottom(this);
+	}
+
+	/**
+	 * the index is built the first time it is asked for, since only the
+	 * builders use it. The lattice cannot change, so it is never updated
+	 */
+	@Override
+	public IntentIndex getIntentIndex() {
+		if (intentIndex == null) {
+			intentIndex = new IntentIndex();
+			for (int id = 0; id < getNumberOfNodes(); id++)
+				intentIndex.add(getNode(id));
+		}
+		return intentIndex;
+	}
+
+	/**
+	 * a node of the lattice: its id, and the lattice
+	 */
+	private class CompactNode implements LatticeNode {
+
+		private final int id;
+
+		CompactNode(int id) {
+			this.id = id;
+		}
+
+		CompactLattice owner() {
+			return CompactLattice.this;
+		}
+
+		/**
+		 * the id of the node in this lattice, see getNode()
+		 */
+		@Override
+		public int getId() {
+			return id;
+		}
+
+		@Override
+		public Set<Object> getExtent() {
+			return new Label(id, true);
+		}
+
+		@Override
+		public Set<Object> getIntent() {
+			return new Label(id, false);
+		}
+
+		@Override
+		public Set<LatticeNode> getParents() {
+			return new NodeRange(id, false);
+		}
+
+		@Override
+		public Set<LatticeNode> getChildren() {
+			return new NodeRange(id, true);
+		}
+
+		@Override
+		public boolean hasParent(LatticeNode parentNode) {
+			return getParents().contains(parentNode);
+		}
+
+		@Override
+		public boolean hasChild(LatticeNode childNode) {
+			return getChildren().contains(childNode);
+		}
+
+		@Override
+		public void acceptVisitor(Visitor aVisitor, Visitor.Direction direction) {
+			aVisitor.visitLatticeNode(this, direction);
+		}
+
+		/**
+		 * the copy is a regular, modifiable, LatticeNodeImpl
+		 */
+		@Override
+		public LatticeNode copy() {
+			LatticeNode copy = new LatticeNodeImpl();
+			copy.addCollectionToExtent(getExtent());
+			copy.addCollectionToIntent(getIntent());
+			return copy;
+		}
+
+		@Override
+		public String getName() {
+			return names.get(this);
+		}
+
+		@Override
+		public void setName(String name) {
+			if (name == null)
+				names.remove(this);
+			else
+				names.put(this, name);
+		}
+
+		@Override
+		public List<NodeFeatureType> getTypes() {
+			List<NodeFeatureType> typesOfNode = types.get(this);
+			if (typesOfNode == null) {
+				typesOfNode = new ArrayList<NodeFeatureType>();
+				types.put(this, typesOfNode);
+			}
+			return typesOfNode;
+		}
+
+		@Override
+		public void setTypes(List<NodeFeatureType> someTypes) {
+			if (someTypes == null)
+				types.remove(this);
+			else
+				types.put(this, someTypes);
+		}
+
+		@Override
+		public void addToExtent(Object anObject) {
+			throw new UnsupportedOperationException("a compact lattice cannot be modified");
+		}
+
+		@Override
+		public void addCollectionToExtent(Collection<Object> objects) {
+			throw new UnsupportedOperationException("a compact lattice cannot be modified");
+		}
+
+		@Override
+		public void addCollectionToIntent(Collection<Object> properties) {
+			throw new UnsupportedOperationException("a compact lattice cannot be modified");
+		}
+
+		@Override
+		public void removeFromExtent(Object anObject) {
+			throw new UnsupportedOperationException("a compact lattice cannot be modified");
+		}
+
+		@Override
+		public void removeFromIntent(Object anObject) {
+			throw new UnsupportedOperationException("a compact lattice cannot be modified");
+		}
+
+		@Override
+		public void addToIntent(Object anObject) {
+			throw new UnsupportedOperationException("a compact lattice cannot be modified");
+		}
+
+		@Override
+		public void addChild(LatticeNode childNode) {
+			throw new UnsupportedOperationException("a compact lattice cannot be modified");
+		}
+
+		@Override
+		public void addParent(LatticeNode parentNode) {
+			throw new UnsupportedOperationException("a compact lattice cannot be modified");
+		}
+
+		@Override
+		public void removeChild(LatticeNode childNode) {
+			throw new UnsupportedOperationException("a compact lattice cannot be modified");
+		}
+
+		@Override
+		public void removeParent(LatticeNode parentNode) {
+			throw new UnsupportedOperationException("a compact lattice cannot be modified");
+		}
+
+		@Override
+		public void takePlaceOf(LatticeNode another) {
+			throw new UnsupportedOperationException("a compact lattice cannot be modified");
+		}
+
+		@Override
+		public void setIntent(Set<Object> intent) {
+			throw new UnsupportedOperationException("a compact lattice cannot be modified");
+		}
+
+		@Override
+		public void setExtent(Set<Object> extent) {
+			throw new UnsupportedOperationException("a compact lattice cannot be modified");
+		}
+
+		@Override
+		public boolean equals(Object anObject) {
+			return anObject instanceof CompactNode && ((CompactNode) anObject).owner() == CompactLattice.this
+					&& ((CompactNode) anObject).id == id;
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+
+	}
+
+	/**
+	 * the children (or the parents) of a node, which are sorted
+	 */
+	private class NodeRange extends AbstractSet<LatticeNode> {
+
+		private boolean children;
+
+		private int start;
+
+		private int end;
+
+		NodeRange(int id, boolean children) {
+			this.children = children;
+			this.start = children ? getChildrenStart(id) : getParentsStart(id);
+			this.end = children ? getChildrenEnd(id) : getParentsEnd(id);
+		}
+
+		private int idAt(int position) {
+			return children ? getChildAt(position) : getParentAt(position);
+		}
+
+		@Override
+		public int size() {
+			return end - start;
+		}
+
+		@Override
+		public boolean contains(Object anObject) {
+			if (!(anObject instanceof LatticeNode))
+				return false;
+			int id = idOf((LatticeNode) anObject);
+			if (id < 0)
+				return false;
+			// binary search
+			int low = start, high = end - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int middleId = idAt(middle);
+				if (middleId < id)
+					low = middle + 1;
+				else if (middleId > id)
+					high = middle - 1;
+				else
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		public Iterator<LatticeNode> iterator() {
+			return new Iterator<LatticeNode>() {
+				private int next = start;
+
+				@Override
+				public boolean hasNext() {
+					return next < end;
+				}
+
+				@Override
+				public LatticeNode next() {
+					if (next >= end)
+						throw new NoSuchElementException();
+					return new CompactNode(idAt(next++));
+				}
+			};
+		}
+
+	}
+
+	/**
+	 * the extent (or the intent) of a node. <code>containsAll</code> and
+	 * <code>equals</code> work word by word when the argument is a label of the
+	 * same kind from the same lattice
+	 */
+	private class Label extends AbstractSet<Object> {
+
+		private int id;
+
+		private boolean extent;
+
+		Label(int id, boolean extent) {
+			this.id = id;
+			this.extent = extent;
+		}
+
+		private CompactLattice owner() {
+			return CompactLattice.this;
+		}
+
+		private int words() {
+			return extent ? getExtentWords() : getIntentWords();
+		}
+
+		private long word(int w) {
+			return extent ? getExtentWord(id, w) : getIntentWord(id, w);
+		}
+
+		@Override
+		public int size() {
+			return extent ? getExtentSize(id) : getIntentSize(id);
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public boolean contains(Object anObject) {
+			int elementId = extent ? getObjectId(anObject) : getAttributeId(anObject);
+			return elementId >= 0 && (elementId >>> ADDRESS_BITS_PER_WORD) < words()
+					&& (word(elementId >>> ADDRESS_BITS_PER_WORD) & (1L << elementId)) != 0;
+		}
+
+		/**
+		 * returns the smallest element id >= fromId whose bit is set, or -1
+		 *
+		 * @param fromId
+		 * @return
+		 */
+		private int nextSetId(int fromId) {
+			int w = fromId >>> ADDRESS_BITS_PER_WORD;
+			if (w >= words())
+				return -1;
+			long word = word(w) & (-1L << fromId);
+			while (true) {
+				if (word != 0)
+					return (w << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+				if (++w == words())
+					return -1;
+				word = word(w);
+			}
+		}
+
+		@Override
+		public Iterator<Object> iterator() {
+			return new Iterator<Object>() {
+				private int next = nextSetId(0);
+
+				@Override
+				public boolean hasNext() {
+					return next >= 0;
+				}
+
+				@Override
+				public Object next() {
+					if (next < 0)
+						throw new NoSuchElementException();
+					int current = next;
+					next = nextSetId(next + 1);
+					return extent ? getObject(current) : getAttribute(current);
+				}
+			};
+		}
+
+		private boolean isCompatible(Object anObject) {
+			return anObject instanceof Label && ((Label) anObject).owner() == CompactLattice.this
+					&& ((Label) anObject).extent == extent;
+		}
+
+		@Override
+		public boolean containsAll(Collection<?> aCollection) {
+			if (!isCompatible(aCollection))
+				return super.containsAll(aCollection);
+			Label other = (Label) aCollection;
+			if (other.size() > size())
+				return false;
+			for (int w = 0; w < words(); w++) {
+				if ((other.word(w) & ~word(w)) != 0)
+					return false;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean equals(Object anObject) {
+			if (anObject == this)
+				return true;
+			if (!isCompatible(anObject))
+				return super.equals(anObject);
+			Label other = (Label) anObject;
+			if (other.size() != size())
+				return false;
+			for (int w = 0; w < words(); w++) {
+				if (other.word(w) != word(w))
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * the <code>AbstractSet</code> contract, so that labels and other sets
+		 * with the same elements hash the same
+		 */
+		@Override
+		public int hashCode() {
+			return super.hashCode();
+		}
+
+	}
+
+}
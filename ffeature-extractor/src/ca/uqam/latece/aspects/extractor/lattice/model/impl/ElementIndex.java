@@ -0,0 +1,115 @@
+package ca.uqam.latece.aspects.extractor.lattice.model.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * this class interns the elements of a relation (the objects of its domain, or
+ * the elements of its images, i.e. ITypes or IMethods in our case) into dense
+ * int ids, starting at 0, in the order in which they were first seen.
+ *
+ * The ids are used as bit positions by <code>BitSetElementSet</code>, which is
+ * why they need to be dense. An element never changes id once interned, and
+ * elements are never removed from the index.
+ *
+ * The hash codes of the elements are cached by id when they are interned, so
+ * that <code>BitSetElementSet</code> can keep its <code>Set</code> hash code
+ * without hashing the elements again.
+ */
+public class ElementIndex {
+
+	/**
+	 * element -> id
+	 */
+	private HashMap<Object, Integer> ids;
+
+	/**
+	 * id -> element
+	 */
+	private ArrayList<Object> elements;
+
+	/**
+	 * id -> hash code of the element
+	 */
+	private int[] hashes;
+
+	public ElementIndex() {
+		ids = new HashMap<Object, Integer>();
+		elements = new ArrayList<Object>();
+		hashes = new int[16];
+	}
+
+	/**
+	 * creates an index and interns the elements of <code>initialElements</code>
+	 *
+	 * @param initialElements
+	 */
+	public ElementIndex(Collection<Object> initialElements) {
+		this();
+		for (Object element : initialElements)
+			intern(element);
+	}
+
+	/**
+	 * returns the id of anElement, interning it first if it has never been seen
+	 *
+	 * @param anElement
+	 * @return
+	 */
+	public int intern(Object anElement) {
+		Integer id = ids.get(anElement);
+		if (id == null) {
+			id = elements.size();
+			ids.put(anElement, id);
+			elements.add(anElement);
+			if (id == hashes.length)
+				hashes = Arrays.copyOf(hashes, 2 * id);
+			hashes[id] = anElement == null ? 0 : anElement.hashCode();
+		}
+		return id;
+	}
+
+	/**
+	 * returns the id of anElement, or -1 if it was never interned
+	 *
+	 * @param anElement
+	 * @return
+	 */
+	public int idOf(Object anElement) {
+		Integer id = ids.get(anElement);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * returns the element whose id is <code>id</code>
+	 *
+	 * @param id
+	 * @return
+	 */
+	public Object elementAt(int id) {
+		return elements.get(id);
+	}
+
+	/**
+	 * returns the hash code of the element whose id is <code>id</code>, as of
+	 * when it was interned
+	 *
+	 * @param id
+	 * @return
+	 */
+	public int hashAt(int id) {
+		return hashes[id];
+	}
+
+	/**
+	 * returns the number of interned elements. Ids range from 0 to size() - 1
+	 *
+	 * @return
+	 */
+	public int size() {
+		return elements.size();
+	}
+
+}
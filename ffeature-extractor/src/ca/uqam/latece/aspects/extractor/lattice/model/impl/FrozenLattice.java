@@ -0,0 +1,364 @@
+package ca.uqam.latece.aspects.extractor.lattice.model.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import ca.uqam.latece.aspects.extractor.lattice.graph.model.NodeFeatureType;
+import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
+
+/**
+ * a read-only, compact copy of a lattice, made by
+ * <code>LatticeImpl.freeze()</code> once the lattice is built and will only be
+ * read (e.g. by <code>FeatureDetectorVisitor</code>,
+ * <code>PrintCandidatesVisitor</code> or <code>LatticePrettyPrinter</code>).
+ *
+ * The tables of the <code>CompactLattice</code> are arrays: the children of
+ * node i are <code>childIds[childOffsets[i]]</code> to
+ * <code>childIds[childOffsets[i + 1] - 1]</code>, and likewise for the
+ * parents. The extents (resp. intents) are packed one after the other in a
+ * single <code>long[]</code>, as bitsets over an <code>ElementIndex</code> of
+ * the objects (resp. attributes). Hence a lattice is a dozen arrays, instead
+ * of a node, four hash sets and their entries per concept. The top is node 0
+ * and the bottom is node n - 1 in a proper lattice.
+ */
+public class FrozenLattice extends CompactLattice {
+
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+
+	private int numberOfNodes;
+
+	private int[] childOffsets;
+
+	private int[] childIds;
+
+	private int[] parentOffsets;
+
+	private int[] parentIds;
+
+	private ElementIndex objectIndex;
+
+	private ElementIndex attributeIndex;
+
+	/**
+	 * the number of words of an extent, and of an intent
+	 */
+	private int extentWords;
+
+	private int intentWords;
+
+	private long[] extents;
+
+	private long[] intents;
+
+	private int[] extentSizes;
+
+	private int[] intentSizes;
+
+	private int top;
+
+	private int bottom;
+
+	/**
+	 * compacts aLattice. The nodes are those that can be reached from its top
+	 * and from its bottom. The children of the nodes are taken as the edges of
+	 * the lattice, and the parents are computed from them
+	 *
+	 * @param aLattice
+	 */
+	FrozenLattice(Lattice aLattice) {
+		// 1. number the nodes top-down: a node gets its number once all its
+		// parents have one
+		List<LatticeNode> nodes = collectNodes(aLattice);
+		numberOfNodes = nodes.size();
+		IdentityHashMap<LatticeNode, Integer> position = new IdentityHashMap<LatticeNode, Integer>();
+		for (int i = 0; i < numberOfNodes; i++)
+			position.put(nodes.get(i), i);
+		int[] remainingParents = new int[numberOfNodes];
+		int[][] childPositions = new int[numberOfNodes][];
+		for (int i = 0; i < numberOfNodes; i++) {
+			childPositions[i] = positionsOf(nodes.get(i).getChildren(), position);
+			for (int child : childPositions[i])
+				remainingParents[child]++;
+		}
+		int[] order = new int[numberOfNodes];
+		int ordered = 0;
+		for (int i = 0; i < numberOfNodes; i++) {
+			if (remainingParents[i] == 0)
+				order[ordered++] = i;
+		}
+		for (int next = 0; next < ordered; next++) {
+			for (int child : childPositions[order[next]]) {
+				if (--remainingParents[child] == 0)
+					order[ordered++] = child;
+			}
+		}
+		if (ordered != numberOfNodes)
+			throw new IllegalStateException("the lattice has a cycle");
+		IdentityHashMap<LatticeNode, Integer> ids = new IdentityHashMap<LatticeNode, Integer>();
+		for (int i = 0; i < numberOfNodes; i++)
+			ids.put(nodes.get(order[i]), i);
+
+		// 2. the children, then the parents, in CSR form
+		List<int[]> children = new ArrayList<int[]>();
+		childOffsets = new int[numberOfNodes + 1];
+		for (int id = 0; id < numberOfNodes; id++) {
+			int[] childrenOfId = childPositions[order[id]];
+			for (int i = 0; i < childrenOfId.length; i++)
+				childrenOfId[i] = ids.get(nodes.get(childrenOfId[i]));
+			Arrays.sort(childrenOfId);
+			children.add(childrenOfId);
+			childOffsets[id + 1] = childOffsets[id] + childrenOfId.length;
+		}
+		childIds = new int[childOffsets[numberOfNodes]];
+		parentOffsets = new int[numberOfNodes + 1];
+		for (int id = 0; id < numberOfNodes; id++) {
+			System.arraycopy(children.get(id), 0, childIds, childOffsets[id], children.get(id).length);
+			for (int child : children.get(id))
+				parentOffsets[child + 1]++;
+		}
+		for (int id = 0; id < numberOfNodes; id++)
+			parentOffsets[id + 1] += parentOffsets[id];
+		parentIds = new int[childIds.length];
+		int[] filled = new int[numberOfNodes];
+		// parents are visited by increasing id, so each range ends up sorted
+		for (int id = 0; id < numberOfNodes; id++) {
+			for (int child : children.get(id))
+				parentIds[parentOffsets[child] + filled[child]++] = id;
+		}
+
+		// 3. the extents and intents, packed
+		LatticeNode[] nodesById = new LatticeNode[numberOfNodes];
+		for (int i = 0; i < numberOfNodes; i++)
+			nodesById[ids.get(nodes.get(i))] = nodes.get(i);
+		objectIndex = indexOf(aLattice.getTop() == null ? null : aLattice.getTop().getExtent());
+		attributeIndex = indexOf(aLattice.getBottom() == null ? null : aLattice.getBottom().getIntent());
+		for (LatticeNode node : nodesById) {
+			intern(objectIndex, node.getExtent());
+			intern(attributeIndex, node.getIntent());
+		}
+		extentWords = wordsFor(objectIndex.size());
+		intentWords = wordsFor(attributeIndex.size());
+		extents = new long[numberOfNodes * extentWords];
+		intents = new long[numberOfNodes * intentWords];
+		extentSizes = new int[numberOfNodes];
+		intentSizes = new int[numberOfNodes];
+		for (int id = 0; id < numberOfNodes; id++) {
+			LatticeNode node = nodesById[id];
+			extentSizes[id] = pack(objectIndex, node.getExtent(), extents, id * extentWords, extentWords);
+			intentSizes[id] = pack(attributeIndex, node.getIntent(), intents, id * intentWords, intentWords);
+		}
+		top = numberOfNodes == 0 ? -1 : ids.get(nodes.get(0));
+		bottom = aLattice.getBottom() == null ? numberOfNodes - 1 : ids.get(aLattice.getBottom());
+
+		// 4. the annotations
+		for (int id = 0; id < numberOfNodes; id++) {
+			LatticeNode node = nodesById[id];
+			if (node.getName() != null)
+				getNode(id).setName(node.getName());
+			if (node.getTypes() != null && !node.getTypes().isEmpty())
+				getNode(id).setTypes(new ArrayList<NodeFeatureType>(node.getTypes()));
+		}
+	}
+
+	/**
+	 * returns the nodes that can be reached from the top of aLattice, going
+	 * down, and from its bottom, going up, the top first
+	 *
+	 * @param aLattice
+	 * @return
+	 */
+	private static List<LatticeNode> collectNodes(Lattice aLattice) {
+		List<LatticeNode> nodes = new ArrayList<LatticeNode>();
+		Set<LatticeNode> seen = Collections.newSetFromMap(new IdentityHashMap<LatticeNode, Boolean>());
+		List<LatticeNode> toVisit = new ArrayList<LatticeNode>();
+		if (aLattice.getTop() != null)
+			toVisit.add(aLattice.getTop());
+		if (aLattice.getBottom() != null)
+			toVisit.add(aLattice.getBottom());
+		// a stack, but the top has to come out first
+		Collections.reverse(toVisit);
+		while (!toVisit.isEmpty()) {
+			LatticeNode node = toVisit.remove(toVisit.size() - 1);
+			if (!seen.add(node))
+				continue;
+			nodes.add(node);
+			toVisit.addAll(node.getChildren());
+			toVisit.addAll(node.getParents());
+		}
+		return nodes;
+	}
+
+	/**
+	 * returns the positions of someNodes
+	 *
+	 * @param someNodes
+	 * @param positions
+	 * @return
+	 */
+	private static int[] positionsOf(Set<LatticeNode> someNodes, IdentityHashMap<LatticeNode, Integer> positions) {
+		int[] result = new int[someNodes.size()];
+		int count = 0;
+		for (LatticeNode node : someNodes)
+			result[count++] = positions.get(node);
+		return result;
+	}
+
+	/**
+	 * reuses the index of someElements if it is a BitSetElementSet, so that
+	 * packing the sets of a bitset lattice is a copy of words
+	 *
+	 * @param someElements
+	 * @return
+	 */
+	private static ElementIndex indexOf(Set<Object> someElements) {
+		if (someElements instanceof BitSetElementSet)
+			return ((BitSetElementSet) someElements).getIndex();
+		return new ElementIndex();
+	}
+
+	private static void intern(ElementIndex anIndex, Set<Object> someElements) {
+		if (someElements instanceof BitSetElementSet && ((BitSetElementSet) someElements).getIndex() == anIndex)
+			return;
+		for (Object element : someElements)
+			anIndex.intern(element);
+	}
+
+	/**
+	 * writes someElements as a bitset in words[offset .. offset + length - 1],
+	 * and returns its cardinality
+	 *
+	 * @param anIndex
+	 * @param someElements
+	 * @param words
+	 * @param offset
+	 * @param length
+	 * @return
+	 */
+	private static int pack(ElementIndex anIndex, Set<Object> someElements, long[] words, int offset, int length) {
+		if (someElements instanceof BitSetElementSet && ((BitSetElementSet) someElements).getIndex() == anIndex) {
+			long[] source = ((BitSetElementSet) someElements).getWords();
+			System.arraycopy(source, 0, words, offset, Math.min(source.length, length));
+			return someElements.size();
+		}
+		for (Object element : someElements) {
+			int id = anIndex.idOf(element);
+			words[offset + (id >>> ADDRESS_BITS_PER_WORD)] |= 1L << id;
+		}
+		return someElements.size();
+	}
+
+	private static int wordsFor(int nbits) {
+		return nbits == 0 ? 0 : ((nbits - 1) >>> ADDRESS_BITS_PER_WORD) + 1;
+	}
+
+	@Override
+	public int getNumberOfNodes() {
+		return numberOfNodes;
+	}
+
+	@Override
+	public int getTopId() {
+		return top;
+	}
+
+	@Override
+	public int getBottomId() {
+		return bottom;
+	}
+
+	@Override
+	public int getChildrenStart(int id) {
+		return childOffsets[id];
+	}
+
+	@Override
+	public int getChildrenEnd(int id) {
+		return childOffsets[id + 1];
+	}
+
+	@Override
+	public int getChildAt(int position) {
+		return childIds[position];
+	}
+
+	@Override
+	public int getParentsStart(int id) {
+		return parentOffsets[id];
+	}
+
+	@Override
+	public int getParentsEnd(int id) {
+		return parentOffsets[id + 1];
+	}
+
+	@Override
+	public int getParentAt(int position) {
+		return parentIds[position];
+	}
+
+	@Override
+	public int getExtentSize(int id) {
+		return extentSizes[id];
+	}
+
+	@Override
+	public int getIntentSize(int id) {
+		return intentSizes[id];
+	}
+
+	@Override
+	public int getNumberOfObjects() {
+		return objectIndex.size();
+	}
+
+	@Override
+	public int getNumberOfAttributes() {
+		return attributeIndex.size();
+	}
+
+	@Override
+	public Object getObject(int objectId) {
+		return objectIndex.elementAt(objectId);
+	}
+
+	@Override
+	public int getObjectId(Object anObject) {
+		return objectIndex.idOf(anObject);
+	}
+
+	@Override
+	public Object getAttribute(int attributeId) {
+		return attributeIndex.elementAt(attributeId);
+	}
+
+	@Override
+	public int getAttributeId(Object anAttribute) {
+		return attributeIndex.idOf(anAttribute);
+	}
+
+	@Override
+	protected int getExtentWords() {
+		return extentWords;
+	}
+
+	@Override
+	protected int getIntentWords() {
+		return intentWords;
+	}
+
+	@Override
+	protected long getExtentWord(int id, int w) {
+		return extents[id * extentWords + w];
+	}
+
+	@Override
+	protected long getIntentWord(int id, int w) {
+		return intents[id * intentWords + w];
+	}
+
+}
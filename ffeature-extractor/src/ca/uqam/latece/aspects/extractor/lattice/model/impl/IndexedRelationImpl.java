@@ -0,0 +1,279 @@
+package ca.uqam.latece.aspects.extractor.lattice.model.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import ca.uqam.latece.aspects.extractor.input.RelationBuilder;
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+
+/**
+ * a relation whose domain elements and image elements are interned into dense
+ * int ids (two <code>ElementIndex</code>es), and whose images are stored as
+ * bitsets over the ids of the image elements, instead of a hash map of hash
+ * sets. The relation is stored by rows (the images) and by columns (the
+ * preimages, as bitsets over the ids of the domain elements).
+ *
+ * Reading the relation copies nothing: getDomain(), getImage(), getPreimage()
+ * and getAllImages() return the sets that the relation maintains, as
+ * <code>BitSetElementSet</code>s. Callers must NOT modify them (use the
+ * methods of the relation instead), and should copy them if they want to keep
+ * them while the relation changes. Builders that use the same indices (see
+ * getDomainIndex() and getImageIndex()) get word-wise set operations on the
+ * images, and builders that work on ids can read the relation through the
+ * int-level accessors (getImageById(), getPreimageById(), etc.) without hashing a
+ * single element.
+ *
+ * Ids are never reused: an element that is removed from the domain keeps its
+ * id, and gets it back if it is added again.
+ *
+ * As for any relation, getImage() returns null for an element that is not in
+ * the domain.
+ */
+public class IndexedRelationImpl extends AbstractRelation {
+
+	private ElementIndex domainIndex;
+
+	private ElementIndex imageIndex;
+
+	/**
+	 * the ids of the elements of the domain
+	 */
+	private BitSetElementSet domain;
+
+	/**
+	 * domain id -> image, or null if the element is not in the domain
+	 */
+	private List<BitSetElementSet> images;
+
+	/**
+	 * image id -> ids of the domain elements whose image contains it, or null
+	 * if the image element was never related to anything
+	 */
+	private List<BitSetElementSet> preimages;
+
+	/**
+	 * the image ids whose support is not 0
+	 */
+	private BitSetElementSet allImages;
+
+	public IndexedRelationImpl(RelationBuilder aBuilder) {
+		super(aBuilder);
+		domainIndex = new ElementIndex();
+		imageIndex = new ElementIndex();
+		domain = new BitSetElementSet(domainIndex);
+		images = new ArrayList<BitSetElementSet>();
+		preimages = new ArrayList<BitSetElementSet>();
+		allImages = new BitSetElementSet(imageIndex);
+	}
+
+	/**
+	 * creates an indexed copy of another relation, with the same builder. The
+	 * domain and image elements are interned in the order of another's domain
+	 * and images
+	 *
+	 * @param another
+	 */
+	public IndexedRelationImpl(Relation another) {
+		this(another.getRelationBuilder());
+		for (Object domainElement : another.getDomain()) {
+			addToDomain(domainElement);
+			for (Object imageElement : another.getImage(domainElement))
+				addRelation(domainElement, imageElement);
+		}
+	}
+
+	public ElementIndex getDomainIndex() {
+		return domainIndex;
+	}
+
+	public ElementIndex getImageIndex() {
+		return imageIndex;
+	}
+
+	/**
+	 * returns the image of the domain element whose id is domainId, or null if
+	 * it is not in the domain. Callers must NOT modify it
+	 *
+	 * @param domainId
+	 * @return
+	 */
+	public BitSetElementSet getImageById(int domainId) {
+		return domainId < images.size() ? images.get(domainId) : null;
+	}
+
+	/**
+	 * returns the number of domain elements whose image contains the image
+	 * element whose id is imageId
+	 *
+	 * @param imageId
+	 * @return
+	 */
+	public int getSupport(int imageId) {
+		BitSetElementSet preimage = getPreimageById(imageId);
+		return preimage == null ? 0 : preimage.size();
+	}
+
+	/**
+	 * returns the domain elements whose image contains the image element whose
+	 * id is imageId, or null if it was never related to anything. Callers must
+	 * NOT modify it
+	 *
+	 * @param imageId
+	 * @return
+	 */
+	public BitSetElementSet getPreimageById(int imageId) {
+		return imageId < preimages.size() ? preimages.get(imageId) : null;
+	}
+
+	public boolean containsRelationById(int domainId, int imageId) {
+		BitSetElementSet image = getImageById(domainId);
+		return image != null && image.containsId(imageId);
+	}
+
+	/**
+	 * returns the image of domainId, adding domainId to the domain first if
+	 * need be
+	 *
+	 * @param domainId
+	 * @return
+	 */
+	private BitSetElementSet imageOf(int domainId) {
+		while (images.size() <= domainId)
+			images.add(null);
+		BitSetElementSet image = images.get(domainId);
+		if (image == null) {
+			image = new BitSetElementSet(imageIndex);
+			images.set(domainId, image);
+			domain.addId(domainId);
+		}
+		return image;
+	}
+
+	@Override
+	public void addToDomain(Object anObject) {
+		imageOf(domainIndex.intern(anObject));
+	}
+
+	@Override
+	public void removeFromDomain(Object anObject) {
+		int domainId = domainIndex.idOf(anObject);
+		BitSetElementSet image = domainId < 0 ? null : getImageById(domainId);
+		if (image == null)
+			return;
+		for (int imageId = image.nextSetId(0); imageId >= 0; imageId = image.nextSetId(imageId + 1))
+			removeFromPreimage(imageId, domainId);
+		images.set(domainId, null);
+		domain.removeId(domainId);
+	}
+
+	@Override
+	public void addRelation(Object key, Object value) {
+		int domainId = domainIndex.intern(key);
+		int imageId = imageIndex.intern(value);
+		if (imageOf(domainId).addId(imageId)) {
+			while (preimages.size() <= imageId)
+				preimages.add(null);
+			if (preimages.get(imageId) == null)
+				preimages.set(imageId, new BitSetElementSet(domainIndex));
+			preimages.get(imageId).addId(domainId);
+			allImages.addId(imageId);
+		}
+	}
+
+	@Override
+	public void removeRelation(Object key, Object value) {
+		int domainId = domainIndex.idOf(key);
+		int imageId = imageIndex.idOf(value);
+		BitSetElementSet image = domainId < 0 ? null : getImageById(domainId);
+		if (image != null && imageId >= 0 && image.removeId(imageId))
+			removeFromPreimage(imageId, domainId);
+	}
+
+	private void removeFromPreimage(int imageId, int domainId) {
+		BitSetElementSet preimage = preimages.get(imageId);
+		preimage.removeId(domainId);
+		if (preimage.isEmpty())
+			allImages.removeId(imageId);
+	}
+
+	/**
+	 * returns the domain, which callers must NOT modify
+	 */
+	@Override
+	public Set<Object> getDomain() {
+		return domain;
+	}
+
+	/**
+	 * returns the image of domainElement itself, not a copy: callers must NOT
+	 * modify it
+	 */
+	@Override
+	public Set<Object> getImage(Object domainElement) {
+		int domainId = domainIndex.idOf(domainElement);
+		return domainId < 0 ? null : getImageById(domainId);
+	}
+
+	@Override
+	public boolean domainContains(Object anObject) {
+		int domainId = domainIndex.idOf(anObject);
+		return domainId >= 0 && getImageById(domainId) != null;
+	}
+
+	@Override
+	public boolean containsRelation(Object key, Object value) {
+		int domainId = domainIndex.idOf(key);
+		int imageId = imageIndex.idOf(value);
+		return domainId >= 0 && imageId >= 0 && containsRelationById(domainId, imageId);
+	}
+
+	/**
+	 * the union of the images is kept up to date as pairs are added and
+	 * removed, so this is not computed either. Callers must NOT modify it
+	 */
+	@Override
+	public Set<Object> getAllImages() {
+		return allImages;
+	}
+
+	/**
+	 * returns the preimage of imageElement itself, not a copy: callers must
+	 * NOT modify it
+	 */
+	@Override
+	public Set<Object> getPreimage(Object imageElement) {
+		int imageId = imageIndex.idOf(imageElement);
+		BitSetElementSet preimage = imageId < 0 ? null : getPreimageById(imageId);
+		return preimage == null ? new BitSetElementSet(domainIndex) : preimage;
+	}
+
+	/**
+	 * intersects the preimages word by word
+	 */
+	@Override
+	public Set<Object> getCommonPreimage(Collection<Object> someImageElements) {
+		BitSetElementSet commonPreimage = new BitSetElementSet(domain);
+		for (Object imageElement : someImageElements)
+			commonPreimage.retainAll(getPreimage(imageElement));
+		return commonPreimage;
+	}
+
+	/**
+	 * intersects the images word by word
+	 */
+	@Override
+	public Set<Object> getCommonImage(Collection<Object> someDomainElements) {
+		BitSetElementSet commonImage = new BitSetElementSet(allImages);
+		for (Object domainElement : someDomainElements) {
+			Set<Object> image = getImage(domainElement);
+			if (image == null)
+				commonImage.clear();
+			else
+				commonImage.retainAll(image);
+		}
+		return commonImage;
+	}
+
+}
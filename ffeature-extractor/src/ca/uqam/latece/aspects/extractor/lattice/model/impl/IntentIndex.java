@@ -0,0 +1,163 @@
+package ca.uqam.latece.aspects.extractor.lattice.model.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+
+import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
+
+/**
+ * an index of lattice nodes by intent. The nodes are grouped by intent
+ * cardinality (as in the buckets of Godin et al.'s algorithm), and within a
+ * bucket, they are hashed on the contents of their intent. Thus, the question
+ * "is there a node whose intent is X" is answered with a single probe in the
+ * bucket for ||X||, instead of a scan of the bucket that compares X with every
+ * intent.
+ *
+ * The buckets are kept sorted by cardinality, so the index can also be used
+ * to walk the nodes by increasing (or decreasing) intent size, as in step 15 of
+ * Godin et al.'s algorithm, without sorting anything.
+ *
+ * The intents are hashed with <code>Set.hashCode()</code>, so plain sets and
+ * <code>BitSetElementSet</code>s with the same elements hash the same. A
+ * <code>BitSetElementSet</code> keeps its hash code up to date, so a probe
+ * does not hash the elements of the intent.
+ *
+ * The index uses the intents of the nodes as keys. Hence, the intent of a node
+ * must NOT be modified while the node is in the index. This is the case in the
+ * incremental algorithms, which only modify the extents of existing nodes.
+ */
+public class IntentIndex {
+
+	/**
+	 * intent cardinality -> (intent -> node)
+	 */
+	private TreeMap<Integer, HashMap<Set<Object>, LatticeNode>> nodesPerCardinality;
+
+	private int size;
+
+	public IntentIndex() {
+		nodesPerCardinality = new TreeMap<Integer, HashMap<Set<Object>, LatticeNode>>();
+		size = 0;
+	}
+
+	/**
+	 * adds aNode to the index. If another node with the same intent was
+	 * already indexed, it is replaced by aNode
+	 *
+	 * @param aNode
+	 */
+	public void add(LatticeNode aNode) {
+		Set<Object> intent = aNode.getIntent();
+		HashMap<Set<Object>, LatticeNode> bucket = nodesPerCardinality.get(intent.size());
+		if (bucket == null) {
+			bucket = new HashMap<Set<Object>, LatticeNode>();
+			nodesPerCardinality.put(intent.size(), bucket);
+		}
+		if (bucket.put(intent, aNode) == null)
+			size++;
+	}
+
+	/**
+	 * removes aNode from the index, if it is there
+	 *
+	 * @param aNode
+	 */
+	public void remove(LatticeNode aNode) {
+		Set<Object> intent = aNode.getIntent();
+		HashMap<Set<Object>, LatticeNode> bucket = nodesPerCardinality.get(intent.size());
+		if (bucket != null && bucket.get(intent) == aNode) {
+			bucket.remove(intent);
+			size--;
+			if (bucket.isEmpty())
+				nodesPerCardinality.remove(intent.size());
+		}
+	}
+
+	/**
+	 * returns the node whose intent equals <code>anIntent</code>, or null if
+	 * there is none
+	 *
+	 * @param anIntent
+	 * @return
+	 */
+	public LatticeNode find(Set<Object> anIntent) {
+		HashMap<Set<Object>, LatticeNode> bucket = nodesPerCardinality.get(anIntent.size());
+		return bucket == null ? null : bucket.get(anIntent);
+	}
+
+	/**
+	 * true if there is a node whose intent equals <code>anIntent</code>
+	 *
+	 * @param anIntent
+	 * @return
+	 */
+	public boolean containsIntent(Set<Object> anIntent) {
+		return find(anIntent) != null;
+	}
+
+	/**
+	 * returns the nodes whose intents have <code>cardinality</code> elements.
+	 * The collection is a view, and is empty if there are no such nodes
+	 *
+	 * @param cardinality
+	 * @return
+	 */
+	public Collection<LatticeNode> getNodesOfCardinality(int cardinality) {
+		HashMap<Set<Object>, LatticeNode> bucket = nodesPerCardinality.get(cardinality);
+		if (bucket == null)
+			return Collections.emptySet();
+		return Collections.unmodifiableCollection(bucket.values());
+	}
+
+	/**
+	 * returns the cardinalities for which there are nodes, in ascending order.
+	 * This is a (read-only) live view, not a copy
+	 *
+	 * @return
+	 */
+	public NavigableSet<Integer> getCardinalities() {
+		return Collections.unmodifiableNavigableSet(nodesPerCardinality.navigableKeySet());
+	}
+
+	/**
+	 * returns the smallest cardinality for which there are nodes, or null if
+	 * the index is empty
+	 *
+	 * @return
+	 */
+	public Integer lowestCardinality() {
+		return nodesPerCardinality.isEmpty() ? null : nodesPerCardinality.firstKey();
+	}
+
+	/**
+	 * returns the smallest cardinality strictly greater than
+	 * <code>cardinality</code> for which there are nodes, or null if there is
+	 * none. Walking the buckets this way, rather than with an iterator over
+	 * getCardinalities(), allows callers to add nodes to the index as they go
+	 *
+	 * @param cardinality
+	 * @return
+	 */
+	public Integer higherCardinality(int cardinality) {
+		return nodesPerCardinality.higherKey(cardinality);
+	}
+
+	/**
+	 * returns the number of indexed nodes
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		nodesPerCardinality.clear();
+		size = 0;
+	}
+
+}
@@ -0,0 +1,71 @@
+package ca.uqam.latece.aspects.extractor.lattice.model.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
+
+/**
+ * a bounded cache of the extents (or intents) that the nodes of a lattice with
+ * reduced labels compute (see <code>ReducedLatticeNodeImpl</code>). The cache
+ * keeps the labels of the <code>capacity</code> nodes that were used last,
+ * by node id: the labels that a visitor asks for over and over (a node, its
+ * children, its parents) are computed once, while the memory used by the
+ * labels stays bounded. With a capacity of 0, nothing is kept.
+ *
+ * The cache is shared by all the nodes of a lattice, and is not thread-safe.
+ */
+public class LabelCache {
+
+	private int capacity;
+
+	/**
+	 * node id -> label, in access order
+	 */
+	private LinkedHashMap<Integer, Set<Object>> labels;
+
+	public LabelCache(final int capacity) {
+		this.capacity = capacity;
+		labels = new LinkedHashMap<Integer, Set<Object>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Set<Object>> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * returns the label of aNode, or null if it is not in the cache
+	 *
+	 * @param aNode
+	 * @return
+	 */
+	public Set<Object> get(LatticeNode aNode) {
+		return labels.get(aNode.getId());
+	}
+
+	public void put(LatticeNode aNode, Set<Object> aLabel) {
+		if (capacity > 0)
+			labels.put(aNode.getId(), aLabel);
+	}
+
+	/**
+	 * empties the cache. The labels depend on the edges of the lattice, so the
+	 * nodes call this whenever an edge is added or removed
+	 */
+	public void clear() {
+		labels.clear();
+	}
+
+	public int size() {
+		return labels.size();
+	}
+
+}
@@ -1,5 +1,10 @@
 package ca.uqam.latece.aspects.extractor.lattice.model.impl;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
 import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
 import ca.uqam.latece.aspects.extractor.lattice.visitors.Visitor;
@@ -9,6 +14,11 @@ public class LatticeImpl implements Lattice {
 	private LatticeNode top;
 	
 	private LatticeNode bottom;
+	
+	/**
+	 * the nodes of the lattice, by intent cardinality. Maintained by the builders
+	 */
+	private IntentIndex intentIndex = new IntentIndex();
 
 	@Override
 	public LatticeNode getTop() {
@@ -40,4 +50,109 @@ public class LatticeImpl implements Lattice {
 		aVisitor.visitLatticeFromBottom(this);
 	}
 
+	@Override
+	public IntentIndex getIntentIndex() {
+		return intentIndex;
+	}
+
+	/**
+	 * returns a compact, read-only copy of this lattice (see
+	 * <code>FrozenLattice</code>), for the visitors that only read it once it
+	 * is built. This lattice is left as it is, and can be dropped
+	 * 
+	 * @return
+	 */
+	public FrozenLattice freeze() {
+		return new FrozenLattice(this);
+	}
+
+	/**
+	 * turns this lattice into its dual, in place: the extent and the intent of
+	 * every node are swapped, as are its parents and children, and the top and
+	 * the bottom. The lattice of a relation is the dual of the lattice of the
+	 * transposed relation (see <code>TransposedRelation</code>), so a lattice
+	 * built on the transposed relation is flipped back this way. The intent
+	 * index is rebuilt. The nodes must be <code>LatticeNodeImpl</code>s with
+	 * full labels
+	 */
+	public void flip() {
+		List<LatticeNode> nodes = new ArrayList<LatticeNode>();
+		NodeIdSet visited = new NodeIdSet();
+		List<LatticeNode> toVisit = new ArrayList<LatticeNode>();
+		toVisit.add(top);
+		while (!toVisit.isEmpty()) {
+			LatticeNode node = toVisit.remove(toVisit.size() - 1);
+			if (!visited.add(node))
+				continue;
+			if (!(node instanceof LatticeNodeImpl) || node instanceof ReducedLatticeNodeImpl)
+				throw new IllegalStateException("cannot flip node " + node);
+			nodes.add(node);
+			toVisit.addAll(node.getChildren());
+		}
+		for (LatticeNode node : nodes)
+			((LatticeNodeImpl) node).flip();
+		LatticeNode oldTop = top;
+		top = bottom;
+		bottom = oldTop;
+		intentIndex.clear();
+		for (LatticeNode node : nodes)
+			intentIndex.add(node);
+	}
+
+	/**
+	 * returns a copy of this lattice with reduced labelling (see
+	 * <code>ReducedLatticeNodeImpl</code>): each node only keeps the objects
+	 * that are in none of the extents of its children, and the attributes that
+	 * are in none of the intents of its parents. The full labels are computed
+	 * when asked for, and the last labelCacheSize of them are cached. The
+	 * nodes are not put in the intent index, which would keep their full
+	 * intents. This lattice is left as it is, and can be dropped
+	 * 
+	 * @param labelCacheSize
+	 * @return
+	 */
+	public LatticeImpl reduceLabels(int labelCacheSize) {
+		LabelCache extents = new LabelCache(labelCacheSize), intents = new LabelCache(labelCacheSize);
+		ElementIndex objectIndex = top.getExtent() instanceof BitSetElementSet
+				? ((BitSetElementSet) top.getExtent()).getIndex() : null;
+		ElementIndex attributeIndex = bottom.getIntent() instanceof BitSetElementSet
+				? ((BitSetElementSet) bottom.getIntent()).getIndex() : null;
+
+		// 1. the nodes, with the elements they introduce
+		NodeTable<LatticeNode> reducedNodes = new NodeTable<LatticeNode>();
+		List<LatticeNode> nodes = new ArrayList<LatticeNode>();
+		List<LatticeNode> toVisit = new ArrayList<LatticeNode>();
+		toVisit.add(top);
+		while (!toVisit.isEmpty()) {
+			LatticeNode node = toVisit.remove(toVisit.size() - 1);
+			if (reducedNodes.containsKey(node))
+				continue;
+			Set<Object> ownObjects = new HashSet<Object>(node.getExtent());
+			for (LatticeNode child : node.getChildren())
+				ownObjects.removeAll(child.getExtent());
+			Set<Object> ownAttributes = new HashSet<Object>(node.getIntent());
+			for (LatticeNode parent : node.getParents())
+				ownAttributes.removeAll(parent.getIntent());
+			LatticeNode reducedNode = new ReducedLatticeNodeImpl(ownObjects, ownAttributes, objectIndex,
+					attributeIndex, extents, intents);
+			reducedNode.setName(node.getName());
+			reducedNode.setTypes(node.getTypes());
+			reducedNodes.put(node, reducedNode);
+			nodes.add(node);
+			toVisit.addAll(node.getChildren());
+		}
+
+		// 2. the same edges
+		for (LatticeNode node : nodes) {
+			for (LatticeNode child : node.getChildren()) {
+				reducedNodes.get(node).addChild(reducedNodes.get(child));
+				reducedNodes.get(child).addParent(reducedNodes.get(node));
+			}
+		}
+		LatticeImpl reducedLattice = new LatticeImpl();
+		reducedLattice.setTop(reducedNodes.get(top));
+		reducedLattice.setBottom(reducedNodes.get(bottom));
+		return reducedLattice;
+	}
+
 }
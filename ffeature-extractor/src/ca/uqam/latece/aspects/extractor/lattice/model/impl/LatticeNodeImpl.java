@@ -4,8 +4,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ca.uqam.latece.aspects.extractor.lattice.graph.model.NodeFeatureType;
 import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
@@ -13,6 +13,22 @@ import ca.uqam.latece.aspects.extractor.lattice.visitors.Visitor;
 
 public class LatticeNodeImpl implements LatticeNode {
 
+	/**
+	 * the next id to give. The ids are unique across lattices, and the nodes
+	 * may be created by several threads (see FCbOLatticeBuilderImpl). The ids
+	 * of a lattice may thus be far apart, and they become negative once the
+	 * counter wraps around: <code>NodeIdSet</code> and <code>NodeTable</code>
+	 * switch to hashing then
+	 */
+	private static final AtomicInteger nextId = new AtomicInteger();
+
+	/**
+	 * the hash code and identity of the node. It must not depend on the extent,
+	 * which the builders modify while the node is in the sets of parents and
+	 * children of its neighbours
+	 */
+	private final int id = nextId.getAndIncrement();
+
 	private String name;
 	
 
@@ -37,6 +53,38 @@ public class LatticeNodeImpl implements LatticeNode {
 		children = new HashSet<LatticeNode>();
 	}
 
+	/**
+	 * creates a node whose extent and intent are stored as bitsets over the ids
+	 * of <code>objectIndex</code> and <code>attributeIndex</code>,
+	 * respectively. The extent and intent are still accessible as regular sets
+	 * through getExtent() and getIntent()
+	 * 
+	 * @param objectIndex
+	 * @param attributeIndex
+	 */
+	public LatticeNodeImpl(ElementIndex objectIndex, ElementIndex attributeIndex) {
+		this(new BitSetElementSet(objectIndex), new BitSetElementSet(attributeIndex));
+	}
+
+	/**
+	 * creates a node whose extent and intent are the given sets, which the node
+	 * takes over
+	 * 
+	 * @param anExtent
+	 * @param anIntent
+	 */
+	protected LatticeNodeImpl(Set<Object> anExtent, Set<Object> anIntent) {
+		extent = anExtent;
+		intent = anIntent;
+		parents = new HashSet<LatticeNode>();
+		children = new HashSet<LatticeNode>();
+	}
+
+	@Override
+	public int getId() {
+		return id;
+	}
+
 	@Override
 	public Set<Object> getExtent() {
 		return extent;
@@ -137,7 +185,13 @@ public class LatticeNodeImpl implements LatticeNode {
 
 	@Override
 	public LatticeNode copy() {
-		LatticeNode copy = new LatticeNodeImpl();
+		LatticeNode copy = null;
+		// keep the same storage for the copy
+		if (extent instanceof BitSetElementSet && intent instanceof BitSetElementSet)
+			copy = new LatticeNodeImpl(((BitSetElementSet) extent).getIndex(),
+					((BitSetElementSet) intent).getIndex());
+		else
+			copy = new LatticeNodeImpl();
 		copy.addCollectionToExtent(getExtent());
 		copy.addCollectionToIntent(getIntent());
 		return copy;
@@ -169,9 +223,27 @@ public class LatticeNodeImpl implements LatticeNode {
 		}
 	}
 
-@Override
+	/**
+	 * swaps the extent and the intent, and the parents and the children, of
+	 * this node: see LatticeImpl.flip()
+	 */
+	void flip() {
+		Set<Object> oldExtent = extent;
+		extent = intent;
+		intent = oldExtent;
+		Set<LatticeNode> oldParents = parents;
+		parents = children;
+		children = oldParents;
+	}
+
+	@Override
 	public int hashCode() {
-		return Objects.hash(extent, intent);
+		return id;
+	}
+
+	@Override
+	public boolean equals(Object anObject) {
+		return anObject instanceof LatticeNodeImpl && ((LatticeNodeImpl) anObject).id == id;
 	}
 
 
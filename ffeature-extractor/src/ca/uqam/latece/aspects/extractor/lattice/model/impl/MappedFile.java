@@ -0,0 +1,131 @@
+package ca.uqam.latece.aspects.extractor.lattice.model.impl;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * a file mapped read-only, for the file formats of <code>MappedLattice</code>
+ * and <code>RelationFile</code>: big endian, in sections that start on
+ * multiples of 8 bytes. The lattice builders that spill their tables to
+ * temporary files (see <code>SpillingLatticeAssembler</code>) map them
+ * through this class too, for reading and writing (see create()).
+ *
+ * A mapped buffer holds at most 2 GB, so the file is mapped in chunks of 1 GB.
+ * The sections are aligned, so no int or long straddles two chunks
+ */
+public class MappedFile {
+
+	private static final int CHUNK_BITS = 30;
+
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+	private MappedByteBuffer[] chunks;
+
+	private long size;
+
+	private MappedFile(MappedByteBuffer[] chunks, long size) {
+		this.chunks = chunks;
+		this.size = size;
+	}
+
+	/**
+	 * maps aFile, which must not be modified while the mapping is in use
+	 *
+	 * @param aFile
+	 * @return
+	 * @throws IOException
+	 */
+	public static MappedFile map(File aFile) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(aFile, "r");
+		try {
+			return map(file.getChannel(), file.length(), FileChannel.MapMode.READ_ONLY);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * creates aFile, of the given size, filled with zeros, and maps it for
+	 * reading and writing
+	 *
+	 * @param aFile
+	 * @param size
+	 * @return
+	 * @throws IOException
+	 */
+	public static MappedFile create(File aFile, long size) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(aFile, "rw");
+		try {
+			file.setLength(size);
+			return map(file.getChannel(), size, FileChannel.MapMode.READ_WRITE);
+		} finally {
+			file.close();
+		}
+	}
+
+	private static MappedFile map(FileChannel aChannel, long size, FileChannel.MapMode aMode) throws IOException {
+		MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+		for (int i = 0; i < chunks.length; i++) {
+			long start = (long) i << CHUNK_BITS;
+			chunks[i] = aChannel.map(aMode, start, Math.min(CHUNK_MASK + 1, size - start));
+		}
+		// the mappings stay valid once the channel is closed
+		return new MappedFile(chunks, size);
+	}
+
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * drops the mapping: the file can be deleted once the buffers are
+	 * collected. The file must not be read after this
+	 */
+	public void close() {
+		chunks = null;
+	}
+
+	private ByteBuffer chunkOf(long position) {
+		return chunks[(int) (position >>> CHUNK_BITS)];
+	}
+
+	public int getInt(long position) {
+		return chunkOf(position).getInt((int) (position & CHUNK_MASK));
+	}
+
+	public long getLong(long position) {
+		return chunkOf(position).getLong((int) (position & CHUNK_MASK));
+	}
+
+	public byte getByte(long position) {
+		return chunkOf(position).get((int) (position & CHUNK_MASK));
+	}
+
+	/**
+	 * only for the files mapped by create()
+	 *
+	 * @param position
+	 * @param value
+	 */
+	public void putInt(long position, int value) {
+		chunkOf(position).putInt((int) (position & CHUNK_MASK), value);
+	}
+
+	/**
+	 * pads a section of the given length to a multiple of 8 bytes
+	 */
+	static void pad(DataOutputStream out, long length) throws IOException {
+		for (long i = length; i < align(length); i++)
+			out.writeByte(0);
+	}
+
+	static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+}
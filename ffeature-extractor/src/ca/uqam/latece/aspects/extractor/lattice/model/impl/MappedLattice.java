@@ -0,0 +1,526 @@
+package ca.uqam.latece.aspects.extractor.lattice.model.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.JavaCore;
+
+import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
+
+/**
+ * a read-only lattice stored in a file, and memory-mapped: the node table, the
+ * edges and the extent and intent bitsets stay in the file, and the operating
+ * system pages them in as the lattice is read. The heap only holds the mapping
+ * and the (decoded) objects and attributes, so lattices larger than the heap
+ * can be visited, and a lattice written once can be reopened later without
+ * being read or deserialised.
+ *
+ * write() stores a lattice in a file, and open() maps it. write() needs the
+ * lattice, on the heap or in a file: a lattice too large for the heap is
+ * written by <code>FCbOLatticeBuilderImpl.writeLattice()</code> instead,
+ * which spills it to temporary files as it enumerates it. The layout is that
+ * of a <code>CompactLattice</code> (the nodes numbered top-down, the edges in
+ * compressed sparse row form, one bitset per extent and per intent), in big
+ * endian order, after a header:
+ *
+ * <pre>
+ * int magic, int version, int nodes, int objects, int attributes, int top,
+ * int bottom, int (padding), long offsets of the 12 sections:
+ *   object offsets (long[objects + 1]), object codes (UTF-8 bytes),
+ *   attribute offsets (long[attributes + 1]), attribute codes (UTF-8 bytes),
+ *   child offsets (int[nodes + 1]), child ids (int[edges]),
+ *   parent offsets (int[nodes + 1]), parent ids (int[edges]),
+ *   extent sizes (int[nodes]), intent sizes (int[nodes]),
+ *   extents (long[nodes * extent words]), intents (long[nodes * intent words])
+ * </pre>
+ *
+ * Every section starts on a multiple of 8 bytes. The objects and attributes
+ * are stored as strings, through an <code>ElementCodec</code>, sorted by their
+ * UTF-8 bytes, so that finding the id of an element is a binary search in the
+ * file. The names and types of the nodes are not stored: they can be set on
+ * an opened lattice, and are kept on the heap.
+ *
+ * A lattice that is not used anymore should be closed, to drop the mapping
+ * of its file.
+ */
+public class MappedLattice extends CompactLattice implements Closeable {
+
+	/**
+	 * how the objects and attributes of a lattice are written to, and read
+	 * from, a file. Two elements must not have the same code
+	 */
+	public static interface ElementCodec {
+
+		public String encode(Object anElement);
+
+		public Object decode(String aCode);
+	}
+
+	/**
+	 * elements are stored as their toString(), and read back as strings
+	 */
+	public static final ElementCodec STRING_CODEC = new ElementCodec() {
+		public String encode(Object anElement) {
+			return anElement.toString();
+		}
+
+		public Object decode(String aCode) {
+			return aCode;
+		}
+	};
+
+	/**
+	 * elements are Java elements (types, methods, etc.), stored as their
+	 * handle identifiers, and read back from the Java model of the workspace
+	 */
+	public static final ElementCodec JAVA_ELEMENT_CODEC = new ElementCodec() {
+		public String encode(Object anElement) {
+			return ((IJavaElement) anElement).getHandleIdentifier();
+		}
+
+		public Object decode(String aCode) {
+			return JavaCore.create(aCode);
+		}
+	};
+
+	private static final int MAGIC = 0x4c415454;
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 8 * 4 + 12 * 8;
+
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+
+	private MappedFile file;
+
+	private ElementCodec codec;
+
+	private int numberOfNodes;
+
+	private int numberOfObjects;
+
+	private int numberOfAttributes;
+
+	private int top;
+
+	private int bottom;
+
+	private int extentWords;
+
+	private int intentWords;
+
+	private long objectOffsets;
+
+	private long objectCodes;
+
+	private long attributeOffsets;
+
+	private long attributeCodes;
+
+	private long childOffsets;
+
+	private long childIds;
+
+	private long parentOffsets;
+
+	private long parentIds;
+
+	private long extentSizes;
+
+	private long intentSizes;
+
+	private long extents;
+
+	private long intents;
+
+	/**
+	 * the objects and attributes decoded so far, by id
+	 */
+	private Object[] objects;
+
+	private Object[] attributes;
+
+	private MappedLattice(MappedFile file, ElementCodec codec) throws IOException {
+		this.file = file;
+		this.codec = codec;
+		if (file.size() < HEADER_SIZE || getInt(0) != MAGIC)
+			throw new IOException("not a lattice file");
+		if (getInt(4) != VERSION)
+			throw new IOException("unsupported lattice file version " + getInt(4));
+		numberOfNodes = getInt(8);
+		numberOfObjects = getInt(12);
+		numberOfAttributes = getInt(16);
+		top = getInt(20);
+		bottom = getInt(24);
+		extentWords = wordsFor(numberOfObjects);
+		intentWords = wordsFor(numberOfAttributes);
+		long position = 32;
+		objectOffsets = getLong(position);
+		objectCodes = getLong(position += 8);
+		attributeOffsets = getLong(position += 8);
+		attributeCodes = getLong(position += 8);
+		childOffsets = getLong(position += 8);
+		childIds = getLong(position += 8);
+		parentOffsets = getLong(position += 8);
+		parentIds = getLong(position += 8);
+		extentSizes = getLong(position += 8);
+		intentSizes = getLong(position += 8);
+		extents = getLong(position += 8);
+		intents = getLong(position += 8);
+		objects = new Object[numberOfObjects];
+		attributes = new Object[numberOfAttributes];
+	}
+
+	/**
+	 * maps aFile, written by write(), and returns the lattice it holds. The
+	 * elements are decoded with aCodec, which should be the codec that wrote
+	 * them. The file must not be modified while the lattice is in use
+	 *
+	 * @param aFile
+	 * @param aCodec
+	 * @return
+	 * @throws IOException
+	 */
+	public static MappedLattice open(File aFile, ElementCodec aCodec) throws IOException {
+		return new MappedLattice(MappedFile.map(aFile), aCodec);
+	}
+
+	/**
+	 * drops the mapping of the file. The lattice must not be read after this
+	 */
+	@Override
+	public void close() {
+		file.close();
+	}
+
+	/**
+	 * writes aLattice to aFile, so that open() can map it. A lattice that is
+	 * not already compact is frozen first (see <code>FrozenLattice</code>),
+	 * so its nodes are those that can be reached from its top and its bottom.
+	 * A compact lattice is copied a node at a time: only its objects and
+	 * attributes are held on the heap
+	 *
+	 * @param aLattice
+	 * @param aFile
+	 * @param aCodec
+	 * @throws IOException
+	 */
+	public static void write(Lattice aLattice, File aFile, ElementCodec aCodec) throws IOException {
+		CompactLattice lattice = aLattice instanceof CompactLattice ? (CompactLattice) aLattice
+				: new FrozenLattice(aLattice);
+		int nodes = lattice.getNumberOfNodes();
+		int edges = nodes == 0 ? 0 : lattice.getChildrenEnd(nodes - 1) - lattice.getChildrenStart(0);
+
+		// the elements, sorted by code
+		byte[][] objectCodes = new byte[lattice.getNumberOfObjects()][];
+		for (int id = 0; id < objectCodes.length; id++)
+			objectCodes[id] = aCodec.encode(lattice.getObject(id)).getBytes(StandardCharsets.UTF_8);
+		int[] objectRanks = sort(objectCodes);
+		byte[][] attributeCodes = new byte[lattice.getNumberOfAttributes()][];
+		for (int id = 0; id < attributeCodes.length; id++)
+			attributeCodes[id] = aCodec.encode(lattice.getAttribute(id)).getBytes(StandardCharsets.UTF_8);
+		int[] attributeRanks = sort(attributeCodes);
+		int extentWords = wordsFor(objectCodes.length);
+		int intentWords = wordsFor(attributeCodes.length);
+
+		// the offsets of the sections
+		long[] sections = new long[12];
+		long[] sizes = { 8L * (objectCodes.length + 1), totalLength(objectCodes), 8L * (attributeCodes.length + 1),
+				totalLength(attributeCodes), 4L * (nodes + 1), 4L * edges, 4L * (nodes + 1), 4L * edges, 4L * nodes,
+				4L * nodes, 8L * nodes * extentWords, 8L * nodes * intentWords };
+		long position = HEADER_SIZE;
+		for (int i = 0; i < sections.length; i++) {
+			sections[i] = position;
+			position = MappedFile.align(position + sizes[i]);
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(aFile), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(nodes);
+			out.writeInt(objectCodes.length);
+			out.writeInt(attributeCodes.length);
+			out.writeInt(nodes == 0 ? -1 : lattice.getTopId());
+			out.writeInt(nodes == 0 ? -1 : lattice.getBottomId());
+			out.writeInt(0);
+			for (long section : sections)
+				out.writeLong(section);
+
+			writeCodes(out, objectCodes);
+			writeCodes(out, attributeCodes);
+			for (boolean children : new boolean[] { true, false }) {
+				int start = nodes == 0 ? 0 : children ? lattice.getChildrenStart(0) : lattice.getParentsStart(0);
+				for (int id = 0; id < nodes; id++)
+					out.writeInt((children ? lattice.getChildrenStart(id) : lattice.getParentsStart(id)) - start);
+				out.writeInt(edges);
+				MappedFile.pad(out, 4L * (nodes + 1));
+				for (int id = 0; id < nodes; id++) {
+					int end = children ? lattice.getChildrenEnd(id) : lattice.getParentsEnd(id);
+					for (int p = children ? lattice.getChildrenStart(id) : lattice.getParentsStart(id); p < end; p++)
+						out.writeInt(children ? lattice.getChildAt(p) : lattice.getParentAt(p));
+				}
+				MappedFile.pad(out, 4L * edges);
+			}
+			for (int id = 0; id < nodes; id++)
+				out.writeInt(lattice.getExtentSize(id));
+			MappedFile.pad(out, 4L * nodes);
+			for (int id = 0; id < nodes; id++)
+				out.writeInt(lattice.getIntentSize(id));
+			MappedFile.pad(out, 4L * nodes);
+			long[] words = new long[extentWords];
+			for (int id = 0; id < nodes; id++)
+				writeLabel(out, lattice, id, true, objectRanks, words);
+			words = new long[intentWords];
+			for (int id = 0; id < nodes; id++)
+				writeLabel(out, lattice, id, false, attributeRanks, words);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * sorts someCodes by their bytes (unsigned), and returns, for each former
+	 * position, the new one
+	 *
+	 * @param someCodes
+	 * @return
+	 */
+	private static int[] sort(final byte[][] someCodes) {
+		Integer[] order = new Integer[someCodes.length];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer first, Integer second) {
+				return compareCodes(someCodes[first], someCodes[second]);
+			}
+		});
+		byte[][] sorted = new byte[someCodes.length][];
+		int[] ranks = new int[someCodes.length];
+		for (int rank = 0; rank < order.length; rank++) {
+			sorted[rank] = someCodes[order[rank]];
+			ranks[order[rank]] = rank;
+			if (rank > 0 && compareCodes(sorted[rank - 1], sorted[rank]) == 0)
+				throw new IllegalArgumentException("two elements have the same code: "
+						+ new String(sorted[rank], StandardCharsets.UTF_8));
+		}
+		System.arraycopy(sorted, 0, someCodes, 0, sorted.length);
+		return ranks;
+	}
+
+	private static int compareCodes(byte[] first, byte[] second) {
+		int length = Math.min(first.length, second.length);
+		for (int i = 0; i < length; i++) {
+			if (first[i] != second[i])
+				return (first[i] & 0xff) - (second[i] & 0xff);
+		}
+		return first.length - second.length;
+	}
+
+	private static long totalLength(byte[][] someCodes) {
+		long length = 0;
+		for (byte[] code : someCodes)
+			length += code.length;
+		return length;
+	}
+
+	private static void writeCodes(DataOutputStream out, byte[][] someCodes) throws IOException {
+		long offset = 0;
+		for (byte[] code : someCodes) {
+			out.writeLong(offset);
+			offset += code.length;
+		}
+		out.writeLong(offset);
+		for (byte[] code : someCodes)
+			out.write(code);
+		MappedFile.pad(out, offset);
+	}
+
+	/**
+	 * writes the extent (or the intent) of node id, its bits renumbered
+	 * through ranks
+	 */
+	private static void writeLabel(DataOutputStream out, CompactLattice aLattice, int id, boolean extent,
+			int[] ranks, long[] words) throws IOException {
+		Arrays.fill(words, 0L);
+		int sourceWords = extent ? aLattice.getExtentWords() : aLattice.getIntentWords();
+		for (int w = 0; w < sourceWords; w++) {
+			long word = extent ? aLattice.getExtentWord(id, w) : aLattice.getIntentWord(id, w);
+			while (word != 0) {
+				int rank = ranks[(w << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word)];
+				words[rank >>> ADDRESS_BITS_PER_WORD] |= 1L << rank;
+				word &= word - 1;
+			}
+		}
+		for (long word : words)
+			out.writeLong(word);
+	}
+
+	private static int wordsFor(int nbits) {
+		return nbits == 0 ? 0 : ((nbits - 1) >>> ADDRESS_BITS_PER_WORD) + 1;
+	}
+
+	private int getInt(long position) {
+		return file.getInt(position);
+	}
+
+	private long getLong(long position) {
+		return file.getLong(position);
+	}
+
+	private byte getByte(long position) {
+		return file.getByte(position);
+	}
+
+	/**
+	 * returns the code of element id, from the given sections
+	 */
+	private byte[] codeAt(long offsets, long codes, int id) {
+		long start = getLong(offsets + 8L * id);
+		byte[] code = new byte[(int) (getLong(offsets + 8L * (id + 1)) - start)];
+		for (int i = 0; i < code.length; i++)
+			code[i] = getByte(codes + start + i);
+		return code;
+	}
+
+	/**
+	 * a binary search of the code of anElement
+	 */
+	private int idOfCode(long offsets, long codes, int count, Object anElement) {
+		if (anElement == null)
+			return -1;
+		byte[] code = codec.encode(anElement).getBytes(StandardCharsets.UTF_8);
+		int low = 0, high = count - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = compareCodes(codeAt(offsets, codes, middle), code);
+			if (comparison < 0)
+				low = middle + 1;
+			else if (comparison > 0)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -1;
+	}
+
+	@Override
+	public int getNumberOfNodes() {
+		return numberOfNodes;
+	}
+
+	@Override
+	public int getTopId() {
+		return top;
+	}
+
+	@Override
+	public int getBottomId() {
+		return bottom;
+	}
+
+	@Override
+	public int getChildrenStart(int id) {
+		return getInt(childOffsets + 4L * id);
+	}
+
+	@Override
+	public int getChildrenEnd(int id) {
+		return getInt(childOffsets + 4L * (id + 1));
+	}
+
+	@Override
+	public int getChildAt(int position) {
+		return getInt(childIds + 4L * position);
+	}
+
+	@Override
+	public int getParentsStart(int id) {
+		return getInt(parentOffsets + 4L * id);
+	}
+
+	@Override
+	public int getParentsEnd(int id) {
+		return getInt(parentOffsets + 4L * (id + 1));
+	}
+
+	@Override
+	public int getParentAt(int position) {
+		return getInt(parentIds + 4L * position);
+	}
+
+	@Override
+	public int getExtentSize(int id) {
+		return getInt(extentSizes + 4L * id);
+	}
+
+	@Override
+	public int getIntentSize(int id) {
+		return getInt(intentSizes + 4L * id);
+	}
+
+	@Override
+	public int getNumberOfObjects() {
+		return numberOfObjects;
+	}
+
+	@Override
+	public int getNumberOfAttributes() {
+		return numberOfAttributes;
+	}
+
+	@Override
+	public Object getObject(int objectId) {
+		if (objects[objectId] == null)
+			objects[objectId] = codec.decode(new String(codeAt(objectOffsets, objectCodes, objectId),
+					StandardCharsets.UTF_8));
+		return objects[objectId];
+	}
+
+	@Override
+	public int getObjectId(Object anObject) {
+		return idOfCode(objectOffsets, objectCodes, numberOfObjects, anObject);
+	}
+
+	@Override
+	public Object getAttribute(int attributeId) {
+		if (attributes[attributeId] == null)
+			attributes[attributeId] = codec.decode(new String(codeAt(attributeOffsets, attributeCodes, attributeId),
+					StandardCharsets.UTF_8));
+		return attributes[attributeId];
+	}
+
+	@Override
+	public int getAttributeId(Object anAttribute) {
+		return idOfCode(attributeOffsets, attributeCodes, numberOfAttributes, anAttribute);
+	}
+
+	@Override
+	protected int getExtentWords() {
+		return extentWords;
+	}
+
+	@Override
+	protected int getIntentWords() {
+		return intentWords;
+	}
+
+	@Override
+	protected long getExtentWord(int id, int w) {
+		return getLong(extents + 8L * ((long) id * extentWords + w));
+	}
+
+	@Override
+	protected long getIntentWord(int id, int w) {
+		return getLong(intents + 8L * ((long) id * intentWords + w));
+	}
+
+}
@@ -0,0 +1,196 @@
+package ca.uqam.latece.aspects.extractor.lattice.model.impl;
+
+import java.util.HashSet;
+
+import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
+
+/**
+ * a set of lattice nodes stored as a bitset over their ids (see
+ * <code>LatticeNode.getId()</code>), for the visitors and builders that need
+ * to remember which nodes they have seen. Adding a node or testing whether it
+ * is there is a shift and a mask: neither the node nor its extent and intent
+ * are hashed.
+ *
+ * The ids of the nodes of a lattice are close to each other, but they do not
+ * necessarily start at 0 (the ids are unique across lattices), so the bitset
+ * starts at the smallest id that was added, and grows in both directions as
+ * needed. The set is meant for the nodes of one lattice: the nodes of a
+ * <code>CompactLattice</code> are numbered from 0 in every compact lattice.
+ *
+ * The ids of a long-lived lattice may still be far apart (e.g. a lattice
+ * built early and updated after many others were built), or negative, once
+ * the ids have wrapped around. When the bitset would have to span many more
+ * ids than the set holds, the set switches to a hash set of the ids, and
+ * keeps it until it is cleared.
+ */
+public class NodeIdSet {
+
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+
+	private static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+
+	/**
+	 * the bitset may span this many ids, however few the nodes
+	 */
+	private static final int MINIMUM_SPAN = 1 << 12;
+
+	/**
+	 * beyond MINIMUM_SPAN, the bitset may span this many ids per node
+	 */
+	private static final int IDS_PER_NODE = 64;
+
+	/**
+	 * bit i of the words stands for the node whose id is base + i
+	 */
+	private long[] words;
+
+	/**
+	 * a multiple of 64
+	 */
+	private int base;
+
+	private int size;
+
+	/**
+	 * the ids, once they are too far apart for the bitset, or null
+	 */
+	private HashSet<Integer> sparseIds;
+
+	public NodeIdSet() {
+		words = new long[0];
+		base = 0;
+		size = 0;
+	}
+
+	/**
+	 * adds aNode to the set, and returns true if it was not already there
+	 *
+	 * @param aNode
+	 * @return
+	 */
+	public boolean add(LatticeNode aNode) {
+		return addId(aNode.getId());
+	}
+
+	public boolean addId(int id) {
+		if (sparseIds == null && !ensureCovers(id))
+			makeSparse();
+		if (sparseIds != null) {
+			if (!sparseIds.add(id))
+				return false;
+			size++;
+			return true;
+		}
+		int bit = id - base;
+		long before = words[bit >>> ADDRESS_BITS_PER_WORD];
+		words[bit >>> ADDRESS_BITS_PER_WORD] = before | (1L << bit);
+		if (before == words[bit >>> ADDRESS_BITS_PER_WORD])
+			return false;
+		size++;
+		return true;
+	}
+
+	public boolean contains(LatticeNode aNode) {
+		return containsId(aNode.getId());
+	}
+
+	public boolean containsId(int id) {
+		if (sparseIds != null)
+			return sparseIds.contains(id);
+		int bit = id - base;
+		return bit >= 0 && (bit >>> ADDRESS_BITS_PER_WORD) < words.length
+				&& (words[bit >>> ADDRESS_BITS_PER_WORD] & (1L << bit)) != 0;
+	}
+
+	/**
+	 * removes aNode from the set, and returns true if it was there
+	 *
+	 * @param aNode
+	 * @return
+	 */
+	public boolean remove(LatticeNode aNode) {
+		return removeId(aNode.getId());
+	}
+
+	public boolean removeId(int id) {
+		if (sparseIds != null) {
+			if (!sparseIds.remove(id))
+				return false;
+			size--;
+			return true;
+		}
+		if (!containsId(id))
+			return false;
+		int bit = id - base;
+		words[bit >>> ADDRESS_BITS_PER_WORD] &= ~(1L << bit);
+		size--;
+		return true;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		words = new long[0];
+		size = 0;
+		sparseIds = null;
+	}
+
+	/**
+	 * moves the ids of the bitset to a hash set
+	 */
+	private void makeSparse() {
+		sparseIds = new HashSet<Integer>();
+		for (int w = 0; w < words.length; w++) {
+			for (long word = words[w]; word != 0; word &= word - 1)
+				sparseIds.add(base + (w << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word));
+		}
+		words = null;
+	}
+
+	private boolean isTooSparse(long span) {
+		return span > MINIMUM_SPAN && span > (long) IDS_PER_NODE * (size + 1);
+	}
+
+	/**
+	 * makes sure that the words have a bit for id, moving the base down or
+	 * growing the words, by at least half of their length to amortise the
+	 * copies. Returns false, and leaves the words as they are, if id is
+	 * negative, or if the words would span too many ids for the size of the
+	 * set
+	 *
+	 * @param id
+	 * @return
+	 */
+	private boolean ensureCovers(int id) {
+		if (id < 0)
+			return false;
+		if (words.length == 0) {
+			base = id & -BITS_PER_WORD;
+			words = new long[4];
+		} else if (id < base) {
+			if (isTooSparse((long) base - id + (long) words.length * BITS_PER_WORD))
+				return false;
+			int newBase = Math.max(0, Math.min(id, base - words.length * BITS_PER_WORD / 2)) & -BITS_PER_WORD;
+			int shift = (base - newBase) >>> ADDRESS_BITS_PER_WORD;
+			long[] newWords = new long[words.length + shift];
+			System.arraycopy(words, 0, newWords, shift, words.length);
+			words = newWords;
+			base = newBase;
+		} else if (((id - base) >>> ADDRESS_BITS_PER_WORD) >= words.length) {
+			if (isTooSparse((long) id - base + 1))
+				return false;
+			int needed = ((id - base) >>> ADDRESS_BITS_PER_WORD) + 1;
+			long[] newWords = new long[Math.max(needed, words.length + words.length / 2)];
+			System.arraycopy(words, 0, newWords, 0, words.length);
+			words = newWords;
+		}
+		return true;
+	}
+
+}
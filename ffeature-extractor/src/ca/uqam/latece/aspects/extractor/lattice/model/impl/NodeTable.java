@@ -0,0 +1,181 @@
+package ca.uqam.latece.aspects.extractor.lattice.model.impl;
+
+import java.util.HashMap;
+
+import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
+
+/**
+ * a map from lattice nodes to values, stored as an array indexed by the ids of
+ * the nodes (see <code>LatticeNode.getId()</code>), for the visitors that
+ * attach data to the nodes they visit (indentations, print ids, feature
+ * types, etc.). Null values are not allowed.
+ *
+ * As in <code>NodeIdSet</code>, the array starts at the smallest id that was
+ * put, and grows in both directions as needed, and the table is meant for the
+ * nodes of one lattice. Likewise, the table switches to a hash map when the
+ * ids are too far apart for the array, or negative.
+ *
+ * @param <V>
+ */
+public class NodeTable<V> {
+
+	/**
+	 * the array may span this many ids, however few the values
+	 */
+	private static final int MINIMUM_SPAN = 1 << 10;
+
+	/**
+	 * beyond MINIMUM_SPAN, the array may span this many ids per value
+	 */
+	private static final int IDS_PER_VALUE = 4;
+
+	/**
+	 * values[i] is the value of the node whose id is base + i, or null
+	 */
+	private Object[] values;
+
+	private int base;
+
+	private int size;
+
+	/**
+	 * the values, once the ids are too far apart for the array, or null
+	 */
+	private HashMap<Integer, Object> sparseValues;
+
+	public NodeTable() {
+		values = new Object[0];
+		base = 0;
+		size = 0;
+	}
+
+	/**
+	 * returns the value of aNode, or null if it has none
+	 *
+	 * @param aNode
+	 * @return
+	 */
+	public V get(LatticeNode aNode) {
+		return getId(aNode.getId());
+	}
+
+	@SuppressWarnings("unchecked")
+	public V getId(int id) {
+		if (sparseValues != null)
+			return (V) sparseValues.get(id);
+		int position = id - base;
+		return position >= 0 && position < values.length ? (V) values[position] : null;
+	}
+
+	public boolean containsKey(LatticeNode aNode) {
+		return get(aNode) != null;
+	}
+
+	/**
+	 * sets the value of aNode, and returns its previous value, if any
+	 *
+	 * @param aNode
+	 * @param aValue
+	 * @return
+	 */
+	public V put(LatticeNode aNode, V aValue) {
+		return putId(aNode.getId(), aValue);
+	}
+
+	public V putId(int id, V aValue) {
+		if (aValue == null)
+			throw new IllegalArgumentException("a NodeTable cannot hold null values");
+		if (sparseValues == null && !ensureCovers(id))
+			makeSparse();
+		V previous = getId(id);
+		if (sparseValues != null)
+			sparseValues.put(id, aValue);
+		else
+			values[id - base] = aValue;
+		if (previous == null)
+			size++;
+		return previous;
+	}
+
+	/**
+	 * removes the value of aNode, and returns it, if any
+	 *
+	 * @param aNode
+	 * @return
+	 */
+	public V remove(LatticeNode aNode) {
+		V previous = getId(aNode.getId());
+		if (previous != null) {
+			if (sparseValues != null)
+				sparseValues.remove(aNode.getId());
+			else
+				values[aNode.getId() - base] = null;
+			size--;
+		}
+		return previous;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		values = new Object[0];
+		size = 0;
+		sparseValues = null;
+	}
+
+	/**
+	 * moves the values of the array to a hash map
+	 */
+	private void makeSparse() {
+		sparseValues = new HashMap<Integer, Object>();
+		for (int position = 0; position < values.length; position++) {
+			if (values[position] != null)
+				sparseValues.put(base + position, values[position]);
+		}
+		values = null;
+	}
+
+	private boolean isTooSparse(long span) {
+		return span > MINIMUM_SPAN && span > (long) IDS_PER_VALUE * (size + 1);
+	}
+
+	/**
+	 * makes sure that the array has a slot for id, moving the base down or
+	 * growing the array, by at least half of its length to amortise the
+	 * copies. Returns false, and leaves the array as it is, if id is negative,
+	 * or if the array would span too many ids for the size of the table
+	 *
+	 * @param id
+	 * @return
+	 */
+	private boolean ensureCovers(int id) {
+		if (id < 0)
+			return false;
+		if (values.length == 0) {
+			base = id;
+			values = new Object[16];
+		} else if (id < base) {
+			if (isTooSparse((long) base - id + values.length))
+				return false;
+			int newBase = Math.max(0, Math.min(id, base - values.length / 2));
+			Object[] newValues = new Object[values.length + base - newBase];
+			System.arraycopy(values, 0, newValues, base - newBase, values.length);
+			values = newValues;
+			base = newBase;
+		} else if (id - base >= values.length) {
+			if (isTooSparse((long) id - base + 1))
+				return false;
+			Object[] newValues = new Object[Math.max(id - base + 1, values.length + values.length / 2)];
+			System.arraycopy(values, 0, newValues, 0, values.length);
+			values = newValues;
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,221 @@
+package ca.uqam.latece.aspects.extractor.lattice.model.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
+
+/**
+ * a lattice node with reduced labelling: instead of its full extent and
+ * intent, the node only stores the objects whose object concept it is (i.e.
+ * the objects that are in its extent and in none of the extents of its
+ * children), and the attributes whose attribute concept it is (the attributes
+ * that are in its intent and in none of the intents of its parents). Every
+ * object and every attribute of the lattice is thus stored once, instead of
+ * once per concept that has it.
+ *
+ * The full extent of a node is the union of the objects of the nodes below
+ * it, and its full intent is the union of the attributes of the nodes above
+ * it: getExtent() and getIntent() compute them when asked, by walking down or
+ * up the lattice, and keep them in a bounded <code>LabelCache</code> shared by
+ * the nodes of the lattice. A walk stops at the nodes whose labels are in the
+ * cache. If the indices of the elements are given, the labels are computed as
+ * <code>BitSetElementSet</code>s.
+ *
+ * The labels are computed, so they are read-only: the methods that modify the
+ * extent or the intent throw an <code>UnsupportedOperationException</code>,
+ * and the sets returned by getExtent() and getIntent() must not be modified.
+ * The edges can still be modified (this empties the caches).
+ */
+public class ReducedLatticeNodeImpl extends LatticeNodeImpl {
+
+	private ElementIndex objectIndex;
+
+	private ElementIndex attributeIndex;
+
+	private LabelCache extents;
+
+	private LabelCache intents;
+
+	/**
+	 * creates a node that introduces someObjects and someAttributes. The
+	 * indices may be null, in which case the labels are computed as HashSets
+	 *
+	 * @param someObjects
+	 * @param someAttributes
+	 * @param objectIndex
+	 * @param attributeIndex
+	 * @param extents
+	 * @param intents
+	 */
+	public ReducedLatticeNodeImpl(Collection<Object> someObjects, Collection<Object> someAttributes,
+			ElementIndex objectIndex, ElementIndex attributeIndex, LabelCache extents, LabelCache intents) {
+		super(compact(someObjects), compact(someAttributes));
+		this.objectIndex = objectIndex;
+		this.attributeIndex = attributeIndex;
+		this.extents = extents;
+		this.intents = intents;
+	}
+
+	/**
+	 * most nodes introduce no element, or a single one: we do not want a hash
+	 * set for those
+	 *
+	 * @param someElements
+	 * @return
+	 */
+	private static Set<Object> compact(Collection<Object> someElements) {
+		if (someElements.isEmpty())
+			return Collections.emptySet();
+		if (someElements.size() == 1)
+			return Collections.singleton(someElements.iterator().next());
+		return Collections.unmodifiableSet(new HashSet<Object>(someElements));
+	}
+
+	/**
+	 * returns the objects whose object concept is this node
+	 *
+	 * @return
+	 */
+	public Set<Object> getOwnObjects() {
+		return super.getExtent();
+	}
+
+	/**
+	 * returns the attributes whose attribute concept is this node
+	 *
+	 * @return
+	 */
+	public Set<Object> getOwnAttributes() {
+		return super.getIntent();
+	}
+
+	@Override
+	public Set<Object> getExtent() {
+		Set<Object> extent = extents.get(this);
+		if (extent == null) {
+			extent = collect(true);
+			extents.put(this, extent);
+		}
+		return extent;
+	}
+
+	@Override
+	public Set<Object> getIntent() {
+		Set<Object> intent = intents.get(this);
+		if (intent == null) {
+			intent = collect(false);
+			intents.put(this, intent);
+		}
+		return intent;
+	}
+
+	/**
+	 * returns the union of the objects of this node and of the nodes below it
+	 * (down is true), or of the attributes of this node and of the nodes above
+	 * it (down is false)
+	 *
+	 * @param down
+	 * @return
+	 */
+	protected Set<Object> collect(boolean down) {
+		ElementIndex index = down ? objectIndex : attributeIndex;
+		LabelCache cache = down ? extents : intents;
+		Set<Object> label = index == null ? new HashSet<Object>() : new BitSetElementSet(index);
+		NodeIdSet visited = new NodeIdSet();
+		List<LatticeNode> toVisit = new ArrayList<LatticeNode>();
+		toVisit.add(this);
+		while (!toVisit.isEmpty()) {
+			LatticeNode node = toVisit.remove(toVisit.size() - 1);
+			if (!visited.add(node))
+				continue;
+			// the label of a node that is in the cache covers the nodes
+			// beyond it
+			Set<Object> cached = node == this ? null : cache.get(node);
+			if (cached != null) {
+				label.addAll(cached);
+				continue;
+			}
+			if (node instanceof ReducedLatticeNodeImpl) {
+				ReducedLatticeNodeImpl reducedNode = (ReducedLatticeNodeImpl) node;
+				label.addAll(down ? reducedNode.getOwnObjects() : reducedNode.getOwnAttributes());
+			}
+			toVisit.addAll(down ? node.getChildren() : node.getParents());
+		}
+		return label;
+	}
+
+	@Override
+	public void addChild(LatticeNode childNode) {
+		super.addChild(childNode);
+		labelsChanged();
+	}
+
+	@Override
+	public void addParent(LatticeNode parentNode) {
+		super.addParent(parentNode);
+		labelsChanged();
+	}
+
+	@Override
+	public void removeChild(LatticeNode childNode) {
+		super.removeChild(childNode);
+		labelsChanged();
+	}
+
+	@Override
+	public void removeParent(LatticeNode parentNode) {
+		super.removeParent(parentNode);
+		labelsChanged();
+	}
+
+	private void labelsChanged() {
+		extents.clear();
+		intents.clear();
+	}
+
+	@Override
+	public void addToExtent(Object anObject) {
+		throw new UnsupportedOperationException("the labels of a reduced node are computed");
+	}
+
+	@Override
+	public void addCollectionToExtent(Collection<Object> objects) {
+		throw new UnsupportedOperationException("the labels of a reduced node are computed");
+	}
+
+	@Override
+	public void addCollectionToIntent(Collection<Object> properties) {
+		throw new UnsupportedOperationException("the labels of a reduced node are computed");
+	}
+
+	@Override
+	public void removeFromExtent(Object anObject) {
+		throw new UnsupportedOperationException("the labels of a reduced node are computed");
+	}
+
+	@Override
+	public void removeFromIntent(Object anObject) {
+		throw new UnsupportedOperationException("the labels of a reduced node are computed");
+	}
+
+	@Override
+	public void addToIntent(Object anObject) {
+		throw new UnsupportedOperationException("the labels of a reduced node are computed");
+	}
+
+	@Override
+	public void setIntent(Set<Object> intent) {
+		throw new UnsupportedOperationException("the labels of a reduced node are computed");
+	}
+
+	@Override
+	public void setExtent(Set<Object> extent) {
+		throw new UnsupportedOperationException("the labels of a reduced node are computed");
+	}
+
+}
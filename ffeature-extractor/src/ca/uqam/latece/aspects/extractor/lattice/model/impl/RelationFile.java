@@ -0,0 +1,391 @@
+package ca.uqam.latece.aspects.extractor.lattice.model.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.uqam.latece.aspects.extractor.input.RelationBuilder;
+import ca.uqam.latece.aspects.extractor.input.impl.ReverseInheritanceRelationBuilder;
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.MappedLattice.ElementCodec;
+
+/**
+ * a relation stored in a file, so that it can be extracted once (through the
+ * Java model, which is slow, and needs a workspace) and built into lattices
+ * many times. Along with the relation, the file may hold the local and the
+ * subhierarchy domain interfaces of a
+ * <code>ReverseInheritanceRelationBuilder</code>, which the feature detection
+ * reads.
+ *
+ * write() stores a relation in a file, and open() maps it. The domain elements
+ * (e.g. the types) and the image elements (e.g. the methods) are stored once
+ * each, as strings, through an <code>ElementCodec</code>, and the rows as int
+ * arrays of element ids. The layout is big endian, after a header:
+ *
+ * <pre>
+ * int magic, int version, int domain elements, int image elements,
+ * int rows, int local rows, int subhierarchy rows, int (padding),
+ * long offsets of the 13 sections:
+ *   domain offsets (long[domain elements + 1]), domain codes (UTF-8 bytes),
+ *   image offsets (long[image elements + 1]), image codes (UTF-8 bytes),
+ *   then, for the relation, the local and the subhierarchy interfaces:
+ *   keys (int[rows]), row offsets (long[rows + 1]), image ids (int[pairs])
+ * </pre>
+ *
+ * Every section starts on a multiple of 8 bytes. The interface tables have -1
+ * rows when they are not stored.
+ *
+ * With <code>MappedLattice.STRING_CODEC</code>, a relation read back needs no
+ * workspace at all: its elements are the strings that were written (e.g. the
+ * handle identifiers, with <code>JAVA_ELEMENT_CODEC</code>'s encoding).
+ */
+public class RelationFile {
+
+	private static final int MAGIC = 0x52454c41;
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 8 * 4 + 13 * 8;
+
+	private static final int RELATION = 0, LOCAL = 1, SUBHIERARCHY = 2;
+
+	private MappedFile file;
+
+	private ElementCodec codec;
+
+	private int numberOfDomainElements;
+
+	private int numberOfImageElements;
+
+	private int[] numberOfRows = new int[3];
+
+	private long[] sections = new long[13];
+
+	/**
+	 * the elements decoded so far, by id
+	 */
+	private Object[] domainElements;
+
+	private Object[] imageElements;
+
+	private RelationFile(MappedFile file, ElementCodec codec) throws IOException {
+		this.file = file;
+		this.codec = codec;
+		if (file.size() < HEADER_SIZE || file.getInt(0) != MAGIC)
+			throw new IOException("not a relation file");
+		if (file.getInt(4) != VERSION)
+			throw new IOException("unsupported relation file version " + file.getInt(4));
+		numberOfDomainElements = file.getInt(8);
+		numberOfImageElements = file.getInt(12);
+		for (int table = RELATION; table <= SUBHIERARCHY; table++)
+			numberOfRows[table] = file.getInt(16 + 4 * table);
+		for (int i = 0; i < sections.length; i++)
+			sections[i] = file.getLong(32 + 8 * i);
+		domainElements = new Object[numberOfDomainElements];
+		imageElements = new Object[numberOfImageElements];
+	}
+
+	/**
+	 * maps aFile, written by write(). The elements are decoded with aCodec,
+	 * which should be the codec that wrote them, or STRING_CODEC. The file must
+	 * not be modified while it is in use
+	 *
+	 * @param aFile
+	 * @param aCodec
+	 * @return
+	 * @throws IOException
+	 */
+	public static RelationFile open(File aFile, ElementCodec aCodec) throws IOException {
+		return new RelationFile(MappedFile.map(aFile), aCodec);
+	}
+
+	/**
+	 * writes aRelation to aFile, with the domain interfaces of its builder if
+	 * it is a <code>ReverseInheritanceRelationBuilder</code> that has computed
+	 * them
+	 *
+	 * @param aRelation
+	 * @param aFile
+	 * @param aCodec
+	 * @throws IOException
+	 */
+	public static void write(Relation aRelation, File aFile, ElementCodec aCodec) throws IOException {
+		Map<?, ? extends Object[]> localInterfaces = null, subhierarchyInterfaces = null;
+		if (aRelation.getRelationBuilder() instanceof ReverseInheritanceRelationBuilder) {
+			ReverseInheritanceRelationBuilder builder = (ReverseInheritanceRelationBuilder) aRelation
+					.getRelationBuilder();
+			localInterfaces = builder.getLocalDomainInterfaces();
+			subhierarchyInterfaces = builder.getSubhierarchyDomainInterfaces();
+		}
+		write(aRelation, localInterfaces, subhierarchyInterfaces, aFile, aCodec);
+	}
+
+	/**
+	 * writes aRelation, and the given domain interfaces (which may be null), to
+	 * aFile. The null interfaces, and the null methods of an interface, are
+	 * not written
+	 *
+	 * @param aRelation
+	 * @param localInterfaces
+	 * @param subhierarchyInterfaces
+	 * @param aFile
+	 * @param aCodec
+	 * @throws IOException
+	 */
+	public static void write(Relation aRelation, Map<?, ? extends Object[]> localInterfaces,
+			Map<?, ? extends Object[]> subhierarchyInterfaces, File aFile, ElementCodec aCodec) throws IOException {
+		// the elements, numbered in order of appearance, and the rows as ids
+		Map<Object, Integer> domainIds = new LinkedHashMap<Object, Integer>();
+		Map<Object, Integer> imageIds = new LinkedHashMap<Object, Integer>();
+		List<int[][]> tables = new ArrayList<int[][]>();
+		Map<Object, Object[]> rows = new LinkedHashMap<Object, Object[]>();
+		for (Object domainElement : aRelation.getDomain())
+			rows.put(domainElement, aRelation.getImage(domainElement).toArray());
+		tables.add(toIds(rows, domainIds, imageIds));
+		tables.add(toIds(localInterfaces, domainIds, imageIds));
+		tables.add(toIds(subhierarchyInterfaces, domainIds, imageIds));
+		byte[][] domainCodes = encode(domainIds, aCodec);
+		byte[][] imageCodes = encode(imageIds, aCodec);
+
+		// the offsets of the sections
+		long[] sizes = new long[13];
+		sizes[0] = 8L * (domainCodes.length + 1);
+		sizes[1] = totalLength(domainCodes);
+		sizes[2] = 8L * (imageCodes.length + 1);
+		sizes[3] = totalLength(imageCodes);
+		for (int table = RELATION; table <= SUBHIERARCHY; table++) {
+			int[][] keysAndRows = tables.get(table);
+			int numberOfRows = keysAndRows == null ? 0 : keysAndRows.length;
+			sizes[4 + 3 * table] = 4L * numberOfRows;
+			sizes[5 + 3 * table] = 8L * (numberOfRows + 1);
+			sizes[6 + 3 * table] = 4L * numberOfPairs(keysAndRows);
+		}
+		long[] sections = new long[13];
+		long position = HEADER_SIZE;
+		for (int i = 0; i < sections.length; i++) {
+			sections[i] = position;
+			position = MappedFile.align(position + sizes[i]);
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(aFile), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(domainCodes.length);
+			out.writeInt(imageCodes.length);
+			for (int[][] keysAndRows : tables)
+				out.writeInt(keysAndRows == null ? -1 : keysAndRows.length);
+			out.writeInt(0);
+			for (long section : sections)
+				out.writeLong(section);
+
+			writeCodes(out, domainCodes);
+			writeCodes(out, imageCodes);
+			for (int[][] keysAndRows : tables) {
+				int numberOfRows = keysAndRows == null ? 0 : keysAndRows.length;
+				for (int row = 0; row < numberOfRows; row++)
+					out.writeInt(keysAndRows[row][0]);
+				MappedFile.pad(out, 4L * numberOfRows);
+				long offset = 0;
+				for (int row = 0; row < numberOfRows; row++) {
+					out.writeLong(offset);
+					offset += keysAndRows[row].length - 1;
+				}
+				out.writeLong(offset);
+				for (int row = 0; row < numberOfRows; row++) {
+					for (int i = 1; i < keysAndRows[row].length; i++)
+						out.writeInt(keysAndRows[row][i]);
+				}
+				MappedFile.pad(out, 4L * offset);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * turns someRows into arrays of ids, each starting with the id of its key
+	 * and followed by the ids of its (non null) elements. Returns null if
+	 * someRows is null
+	 */
+	private static int[][] toIds(Map<?, ? extends Object[]> someRows, Map<Object, Integer> domainIds,
+			Map<Object, Integer> imageIds) {
+		if (someRows == null)
+			return null;
+		List<int[]> rows = new ArrayList<int[]>();
+		for (Map.Entry<?, ? extends Object[]> entry : someRows.entrySet()) {
+			if (entry.getValue() == null)
+				continue;
+			int[] row = new int[entry.getValue().length + 1];
+			int length = 0;
+			row[length++] = idOf(entry.getKey(), domainIds);
+			for (Object imageElement : entry.getValue()) {
+				if (imageElement != null)
+					row[length++] = idOf(imageElement, imageIds);
+			}
+			rows.add(length == row.length ? row : Arrays.copyOf(row, length));
+		}
+		return rows.toArray(new int[rows.size()][]);
+	}
+
+	private static int idOf(Object anElement, Map<Object, Integer> someIds) {
+		Integer id = someIds.get(anElement);
+		if (id == null) {
+			id = someIds.size();
+			someIds.put(anElement, id);
+		}
+		return id;
+	}
+
+	private static long numberOfPairs(int[][] keysAndRows) {
+		long pairs = 0;
+		if (keysAndRows != null) {
+			for (int[] row : keysAndRows)
+				pairs += row.length - 1;
+		}
+		return pairs;
+	}
+
+	private static byte[][] encode(Map<Object, Integer> someIds, ElementCodec aCodec) {
+		byte[][] codes = new byte[someIds.size()][];
+		Map<String, Object> elements = new HashMap<String, Object>();
+		for (Map.Entry<Object, Integer> entry : someIds.entrySet()) {
+			String code = aCodec.encode(entry.getKey());
+			if (elements.put(code, entry.getKey()) != null)
+				throw new IllegalArgumentException("two elements have the same code: " + code);
+			codes[entry.getValue()] = code.getBytes(StandardCharsets.UTF_8);
+		}
+		return codes;
+	}
+
+	private static long totalLength(byte[][] someCodes) {
+		long length = 0;
+		for (byte[] code : someCodes)
+			length += code.length;
+		return length;
+	}
+
+	private static void writeCodes(DataOutputStream out, byte[][] someCodes) throws IOException {
+		long offset = 0;
+		for (byte[] code : someCodes) {
+			out.writeLong(offset);
+			offset += code.length;
+		}
+		out.writeLong(offset);
+		for (byte[] code : someCodes)
+			out.write(code);
+		MappedFile.pad(out, offset);
+	}
+
+	public int getNumberOfDomainElements() {
+		return numberOfDomainElements;
+	}
+
+	public int getNumberOfImageElements() {
+		return numberOfImageElements;
+	}
+
+	public Object getDomainElement(int id) {
+		if (domainElements[id] == null)
+			domainElements[id] = codec.decode(codeAt(sections[0], sections[1], id));
+		return domainElements[id];
+	}
+
+	public Object getImageElement(int id) {
+		if (imageElements[id] == null)
+			imageElements[id] = codec.decode(codeAt(sections[2], sections[3], id));
+		return imageElements[id];
+	}
+
+	private String codeAt(long offsets, long codes, int id) {
+		long start = file.getLong(offsets + 8L * id);
+		byte[] code = new byte[(int) (file.getLong(offsets + 8L * (id + 1)) - start)];
+		for (int i = 0; i < code.length; i++)
+			code[i] = file.getByte(codes + start + i);
+		return new String(code, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * reads the relation back, as an <code>IndexedRelationImpl</code> whose
+	 * ids are those of the file
+	 *
+	 * @param aBuilder
+	 *            the builder of the relation (may be null)
+	 * @return
+	 */
+	public IndexedRelationImpl getRelation(RelationBuilder aBuilder) {
+		IndexedRelationImpl relation = new IndexedRelationImpl(aBuilder);
+		for (int id = 0; id < numberOfDomainElements; id++)
+			relation.getDomainIndex().intern(getDomainElement(id));
+		for (int id = 0; id < numberOfImageElements; id++)
+			relation.getImageIndex().intern(getImageElement(id));
+		readInto(relation);
+		return relation;
+	}
+
+	/**
+	 * adds the rows of the relation to aRelation, e.g. a relation of the
+	 * class that was written
+	 *
+	 * @param aRelation
+	 */
+	public void readInto(Relation aRelation) {
+		long keys = sections[4], offsets = sections[5], ids = sections[6];
+		for (int row = 0; row < numberOfRows[RELATION]; row++) {
+			Object domainElement = getDomainElement(file.getInt(keys + 4L * row));
+			aRelation.addToDomain(domainElement);
+			long end = file.getLong(offsets + 8L * (row + 1));
+			for (long p = file.getLong(offsets + 8L * row); p < end; p++)
+				aRelation.addRelation(domainElement, getImageElement(file.getInt(ids + 4L * p)));
+		}
+	}
+
+	public boolean hasDomainInterfaces() {
+		return numberOfRows[LOCAL] >= 0;
+	}
+
+	/**
+	 * returns the local domain interfaces stored in the file, or null if there
+	 * are none
+	 *
+	 * @return
+	 */
+	public Map<Object, Object[]> getLocalDomainInterfaces() {
+		return getInterfaces(LOCAL);
+	}
+
+	/**
+	 * returns the subhierarchy domain interfaces stored in the file, or null
+	 * if there are none
+	 *
+	 * @return
+	 */
+	public Map<Object, Object[]> getSubhierarchyDomainInterfaces() {
+		return getInterfaces(SUBHIERARCHY);
+	}
+
+	private Map<Object, Object[]> getInterfaces(int table) {
+		if (numberOfRows[table] < 0)
+			return null;
+		Map<Object, Object[]> interfaces = new HashMap<Object, Object[]>();
+		long keys = sections[4 + 3 * table], offsets = sections[5 + 3 * table], ids = sections[6 + 3 * table];
+		for (int row = 0; row < numberOfRows[table]; row++) {
+			long start = file.getLong(offsets + 8L * row);
+			Object[] anInterface = new Object[(int) (file.getLong(offsets + 8L * (row + 1)) - start)];
+			for (int i = 0; i < anInterface.length; i++)
+				anInterface[i] = getImageElement(file.getInt(ids + 4L * (start + i)));
+			interfaces.put(getDomainElement(file.getInt(keys + 4L * row)), anInterface);
+		}
+		return interfaces;
+	}
+
+}
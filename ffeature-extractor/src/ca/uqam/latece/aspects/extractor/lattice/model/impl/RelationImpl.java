@@ -1,18 +1,18 @@
 package ca.uqam.latece.aspects.extractor.lattice.model.impl;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 import ca.uqam.latece.aspects.extractor.input.RelationBuilder;
-import ca.uqam.latece.aspects.extractor.input.impl.ReverseInheritanceRelationBuilder;
-import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
 
-public class RelationImpl implements Relation {
-
-	private RelationBuilder builder;
+/**
+ * a relation stored in hash maps: the images by domain element, and the
+ * preimages by image element
+ */
+public class RelationImpl extends AbstractRelation {
 
 	/**
 	 * relation structure is hashmap where the key is the object, and the value
@@ -20,13 +20,23 @@ public class RelationImpl implements Relation {
 	 */
 	private HashMap<Object, Set<Object>> relationStore;
 
+	/**
+	 * the inverted index: the key is an image element, and the value is the
+	 * set of domain elements whose image contains it. Image elements whose
+	 * preimage becomes empty are removed, so the key set is the union of the
+	 * images
+	 */
+	private HashMap<Object, Set<Object>> inverseStore;
+
 	protected RelationImpl() {
 		relationStore = new HashMap<Object, Set<Object>>();
+		inverseStore = new HashMap<Object, Set<Object>>();
 	}
 
 	public RelationImpl(RelationBuilder aBuilder) {
-		this();
-		builder = aBuilder;
+		super(aBuilder);
+		relationStore = new HashMap<Object, Set<Object>>();
+		inverseStore = new HashMap<Object, Set<Object>>();
 	}
 
 	@Override
@@ -42,7 +52,8 @@ public class RelationImpl implements Relation {
 	@Override
 	public void removeFromDomain(Object anObject) {
 		if (relationStore.containsKey(anObject)) {
-			relationStore.remove(anObject);
+			for (Object value : relationStore.remove(anObject))
+				removeFromPreimage(value, anObject);
 		}
 
 	}
@@ -56,7 +67,14 @@ public class RelationImpl implements Relation {
 		} else {
 			image = relationStore.get(key);
 		}
-		image.add(value);
+		if (image.add(value)) {
+			Set<Object> preimage = inverseStore.get(value);
+			if (preimage == null) {
+				preimage = new HashSet<Object>();
+				inverseStore.put(value, preimage);
+			}
+			preimage.add(key);
+		}
 	}
 
 	@Override
@@ -66,20 +84,38 @@ public class RelationImpl implements Relation {
 			// actual image set
 			Set<Object> image = relationStore.get(key);
 			image.remove(value);
+			removeFromPreimage(value, key);
 		}
 
 	}
 
+	/**
+	 * removes key from the preimage of value, and value from the inverted
+	 * index if nothing is left
+	 * 
+	 * @param value
+	 * @param key
+	 */
+	private void removeFromPreimage(Object value, Object key) {
+		Set<Object> preimage = inverseStore.get(value);
+		preimage.remove(key);
+		if (preimage.isEmpty())
+			inverseStore.remove(value);
+	}
+
 	@Override
 	public Set<Object> getDomain() {
 		return relationStore.keySet();
 	}
 
+	/**
+	 * returns a copy of the image of domainElement, or null if it is not in
+	 * the domain
+	 */
 	@Override
 	public Set<Object> getImage(Object domainElement) {
-		Set<Object> image = new HashSet<Object>();
-		image.addAll(relationStore.get(domainElement));
-		return image;
+		Set<Object> image = relationStore.get(domainElement);
+		return image == null ? null : new HashSet<Object>(image);
 	}
 
 	@Override
@@ -99,69 +135,59 @@ public class RelationImpl implements Relation {
 
 	@Override
 	/**
-	 * here we code it in the general case by doing the union of all images. In
-	 * special cases, we use custom code that optimizes
+	 * the union of all images is the key set of the inverted index
 	 */
 	public Set<Object> getAllImages() {
-		Set<Object> allImages = new HashSet<Object>();
-		for (Object domainElement : getDomain()) {
-			allImages.addAll(getImage(domainElement));
-		}
-		return allImages;
+		return Collections.unmodifiableSet(inverseStore.keySet());
 	}
 
 	@Override
-	public RelationBuilder getRelationBuilder() {
-		return builder;
+	public Set<Object> getPreimage(Object imageElement) {
+		Set<Object> preimage = inverseStore.get(imageElement);
+		if (preimage == null)
+			return Collections.emptySet();
+		return Collections.unmodifiableSet(preimage);
 	}
 
 	@Override
-	public String printString() {
-		StringBuffer buffer = new StringBuffer();
-		// print the images by sorted key values
-		HashMap<String, Object> keyMap = new HashMap<String, Object>();
-		SortedSet<String> sortedKeys = new TreeSet<String>();
-		for (Object key : getDomain()) {
-			String keyString = printDomainObject(key);
-			sortedKeys.add(keyString);
-			keyMap.put(keyString, key);
-		}
-
-		//
-		for (String keyString : sortedKeys) {
-			Object key = keyMap.get(keyString);
-			// print the image of key
-			// -> first the key
-			buffer.append(keyString + " =====> [");
-			// then the image of the current element
-			Set<Object> image = getImage(key);
-			for (Object obj : image) {
-				buffer.append(" " + printImageObject(obj) + ",");
-			}
-			// remove the last character which is the extraneous ","
-			buffer.deleteCharAt(buffer.length() - 1);
-			buffer.append(" ]\n");
-		}
-		
-		return buffer.toString();
-	}
-
 	/**
-	 * prints image objects. Subclasses can override this
-	 * @param obj
-	 * @return
+	 * intersects the preimages, starting with the smallest one
 	 */
-	protected String printImageObject(Object obj) {
-		return obj.toString();
+	public Set<Object> getCommonPreimage(Collection<Object> someImageElements) {
+		return intersection(inverseStore, someImageElements, getDomain());
+	}
+
+	@Override
+	public Set<Object> getCommonImage(Collection<Object> someDomainElements) {
+		return intersection(relationStore, someDomainElements, getAllImages());
 	}
 
 	/**
-	 * prints domain objects. Subclasses can override this
-	 * @param key
+	 * returns the intersection of the values of someKeys in aStore, or a copy
+	 * of all if there are no keys
+	 * 
+	 * @param aStore
+	 * @param someKeys
+	 * @param all
 	 * @return
 	 */
-	protected String printDomainObject(Object key) {
-		return key.toString();
+	private static Set<Object> intersection(HashMap<Object, Set<Object>> aStore, Collection<Object> someKeys,
+			Set<Object> all) {
+		Set<Object> smallest = all;
+		for (Object key : someKeys) {
+			Set<Object> values = aStore.get(key);
+			if (values == null)
+				return new HashSet<Object>();
+			if (values.size() < smallest.size() || smallest == all)
+				smallest = values;
+		}
+		Set<Object> intersection = new HashSet<Object>(smallest);
+		for (Object key : someKeys) {
+			Set<Object> values = aStore.get(key);
+			if (values != smallest)
+				intersection.retainAll(values);
+		}
+		return intersection;
 	}
 
 }
@@ -1,14 +1,11 @@
 package ca.uqam.latece.aspects.extractor.lattice.model.impl;
 
-import java.util.Set;
-
 import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.Signature;
 
 import ca.uqam.latece.aspects.extractor.input.RelationBuilder;
-import ca.uqam.latece.aspects.extractor.input.impl.ReverseInheritanceRelationBuilder;
 
 public class ReverseInheritanceRelation extends RelationImpl {
 	
@@ -17,11 +14,6 @@ public class ReverseInheritanceRelation extends RelationImpl {
 		super(aBuilder);
 	}
 	
-	@Override
-	public Set<Object> getAllImages() {
-		return (Set<Object>)((ReverseInheritanceRelationBuilder)getRelationBuilder()).getAllMethods();
-	}
-	
 	/**
 	 * prints image objects. Subclasses can override this
 	 * @param obj
@@ -0,0 +1,137 @@
+package ca.uqam.latece.aspects.extractor.lattice.model.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import ca.uqam.latece.aspects.extractor.input.RelationBuilder;
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+
+/**
+ * a view of a relation with its pairs reversed: the domain of the view is the
+ * set of all the images of the relation (e.g. the methods), and the image of
+ * an element of the view is its preimage in the relation (e.g. the types that
+ * have the method). Nothing is copied: the view reads the relation, and its
+ * inverted index, on every call, so it follows the changes of the relation.
+ *
+ * The concept lattice of the view is the dual of the lattice of the relation
+ * (see <code>LatticeImpl.flip()</code>), which lets the incremental builders
+ * insert whichever dimension is cheaper.
+ *
+ * getAllImages() returns the whole domain of the relation, including its
+ * elements with an empty image: they are attributes of the view that no
+ * object has, but they belong to the extent of the top of the relation.
+ *
+ * Pairs can be added and removed through the view. Adding an element to the
+ * domain of the view without a pair cannot be represented in the relation,
+ * and throws an <code>UnsupportedOperationException</code>.
+ */
+public class TransposedRelation implements Relation {
+
+	private Relation relation;
+
+	public TransposedRelation(Relation aRelation) {
+		relation = aRelation;
+	}
+
+	/**
+	 * returns the relation that this view transposes
+	 *
+	 * @return
+	 */
+	public Relation getTransposedRelation() {
+		return relation;
+	}
+
+	@Override
+	public void addToDomain(Object anObject) {
+		if (!domainContains(anObject))
+			throw new UnsupportedOperationException("an element of a transposed relation needs an image");
+	}
+
+	@Override
+	public void removeFromDomain(Object anObject) {
+		for (Object imageElement : new ArrayList<Object>(relation.getPreimage(anObject)))
+			relation.removeRelation(imageElement, anObject);
+	}
+
+	@Override
+	public void addRelation(Object key, Object value) {
+		relation.addRelation(value, key);
+	}
+
+	@Override
+	public void removeRelation(Object key, Object value) {
+		relation.removeRelation(value, key);
+	}
+
+	@Override
+	public Set<Object> getDomain() {
+		return Collections.unmodifiableSet(relation.getAllImages());
+	}
+
+	@Override
+	public Set<Object> getImage(Object domainElement) {
+		if (!domainContains(domainElement))
+			return null;
+		return relation.getPreimage(domainElement);
+	}
+
+	@Override
+	public boolean domainContains(Object anObject) {
+		return relation.getAllImages().contains(anObject);
+	}
+
+	@Override
+	public boolean containsRelation(Object key, Object value) {
+		return relation.containsRelation(value, key);
+	}
+
+	@Override
+	public Set<Object> getAllImages() {
+		return Collections.unmodifiableSet(relation.getDomain());
+	}
+
+	@Override
+	public Set<Object> getPreimage(Object imageElement) {
+		if (!relation.domainContains(imageElement))
+			return Collections.emptySet();
+		return relation.getImage(imageElement);
+	}
+
+	@Override
+	public Set<Object> getCommonPreimage(Collection<Object> someImageElements) {
+		return relation.getCommonImage(someImageElements);
+	}
+
+	@Override
+	public Set<Object> getCommonImage(Collection<Object> someDomainElements) {
+		return relation.getCommonPreimage(someDomainElements);
+	}
+
+	@Override
+	public RelationBuilder getRelationBuilder() {
+		return relation.getRelationBuilder();
+	}
+
+	@Override
+	public String printString() {
+		StringBuffer buffer = new StringBuffer();
+		SortedSet<String> lines = new TreeSet<String>();
+		for (Object key : getDomain()) {
+			StringBuffer line = new StringBuffer(key + " =====> [");
+			for (Object obj : getImage(key))
+				line.append(" " + obj + ",");
+			line.deleteCharAt(line.length() - 1);
+			line.append(" ]\n");
+			lines.add(line.toString());
+		}
+		for (String line : lines)
+			buffer.append(line);
+		return buffer.toString();
+	}
+
+}
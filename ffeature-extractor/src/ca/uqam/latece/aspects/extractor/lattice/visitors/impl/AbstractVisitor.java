@@ -1,10 +1,8 @@
 package ca.uqam.latece.aspects.extractor.lattice.visitors.impl;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
 import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.NodeIdSet;
 import ca.uqam.latece.aspects.extractor.lattice.visitors.Visitor;
 
 /**
@@ -16,9 +14,9 @@ import ca.uqam.latece.aspects.extractor.lattice.visitors.Visitor;
 public abstract class AbstractVisitor implements Visitor {
 	
 	/**
-	 * a set that stores the visited nodes
+	 * a set that stores the visited nodes, by id
 	 */
-	private Set<LatticeNode> visitedNodes = new HashSet<LatticeNode>();
+	private NodeIdSet visitedNodes = new NodeIdSet();
 
 	private Direction currentDirection = Direction.Undefined;
 
@@ -141,7 +139,7 @@ public abstract class AbstractVisitor implements Visitor {
 	 * subclasses may do something fancier
 	 */
 	public void reset() {
-		visitedNodes = new HashSet<LatticeNode>();
+		visitedNodes = new NodeIdSet();
 		currentDirection = Direction.Undefined;
 	}
 }
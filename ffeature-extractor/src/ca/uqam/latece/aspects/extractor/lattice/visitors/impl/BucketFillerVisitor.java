@@ -1,12 +1,11 @@
 package ca.uqam.latece.aspects.extractor.lattice.visitors.impl;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collection;
 import java.util.Set;
 import java.util.SortedSet;
-import java.util.TreeSet;
 
 import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.IntentIndex;
 
 /**
  * this visitor constructs the set C[i] in line 12 of the algorithm named Algorithm 1
@@ -15,36 +14,28 @@ import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
  * 
  * It creates buckets of lattice nodes grouped by size of intent.
  * 
- * The bucket structure will be stored in a HashMap<Integer,Set<LatticeNode>>.
+ * The bucket structure is an <code>IntentIndex</code>, which keeps the buckets sorted by size,
+ * and hashes the nodes of a bucket on their intents.
  * 
  * We can get the list of bucket sizes sorted. We can also get the bucket (set of lattice nodes)
- * for a particular size
+ * for a particular size, and check whether a bucket contains a node with a given intent with
+ * a single hash probe
  *  
  * @author Hafedh
  *
  */
 public class BucketFillerVisitor extends AbstractVisitor {
 	
-	private HashMap<Integer,Set<LatticeNode>> bucketsPerSize = new HashMap<Integer,Set<LatticeNode>>();
+	/**
+	 * the buckets, sorted by intent size, and hashed on the intents
+	 */
+	private IntentIndex intentIndex = new IntentIndex();
 
 	@Override
 	public void processNode(LatticeNode node) {
-		// get size of intent
-		int intentSize = node.getIntent().size();
-		
-		// check if we already have a bucket for this size
-		Integer wrapperObject = new Integer(intentSize);
-		
-		Set<LatticeNode> bucket = bucketsPerSize.get(wrapperObject);
-		
-		// if no bucket, create one and insert it into bucketsPerSize
-		if (bucket == null){
-			bucket = new HashSet<LatticeNode>();
-			bucketsPerSize.put(wrapperObject, bucket);
-		}
-		
-		// add current node to bucket
-		bucket.add(node);
+		// add current node to the bucket of its intent size. The index creates
+		// the bucket if needed
+		intentIndex.add(node);
 	}
 	
 	/**
@@ -56,30 +47,42 @@ public class BucketFillerVisitor extends AbstractVisitor {
 	
 	/**
 	 * returns the bucket containing lattice nodes whose intent has cardinality size.
-	 * This is a convenience method that takes an int as an integer. It calls
-	 * the method that takes the int object wrapper (Integer) as an argument, which is the
-	 * key used in <code>bucketsPerSize</code>
+	 * The bucket is empty if there are no such nodes
 	 * @param size
 	 * @return
 	 */
-	public Set<LatticeNode> getBucketForSize(int size){
-		return getBucketForSize(new Integer(size));
+	public Collection<LatticeNode> getBucketForSize(int size){
+		return intentIndex.getNodesOfCardinality(size);
 	}
-
+	
 	/**
-	 * returns the bucket containing lattice nodes whose intent has cardinality sizeObject.
-	 * @param size
+	 * returns a sorted set of bucket sizes. This is a live view of the buckets, not a copy
 	 * @return
 	 */
-	public Set<LatticeNode> getBucketForSize(Integer sizeObject){
-		return bucketsPerSize.get(sizeObject);
+	public SortedSet<Integer> getBucketSizesSorted() {
+		return intentIndex.getCardinalities();
 	}
 	
 	/**
-	 * returns a sorted set of bucket sizes
+	 * returns the node of the buckets whose intent equals <code>intent</code>, or null if
+	 * there is none. This is a single probe in the intent index, rather than a scan
+	 * of the bucket for size intent.size()
+	 * @param intent
 	 * @return
 	 */
-	public SortedSet<Integer> getBucketSizesSorted() {
-		return  new TreeSet<Integer>(bucketsPerSize.keySet());
+	public LatticeNode getNodeWithIntent(Set<Object> intent) {
+		return intentIndex.find(intent);
+	}
+	
+	public IntentIndex getIntentIndex() {
+		return intentIndex;
+	}
+	
+	/**
+	 * empties the buckets, on top of the default reset
+	 */
+	public void reset() {
+		super.reset();
+		intentIndex = new IntentIndex();
 	}
 }
@@ -19,13 +19,13 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.core.IField;
 import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.IType;
-import org.eclipse.jdt.core.ITypeHierarchy;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.Signature;
 
 
 
 import ca.uqam.latece.aspects.extractor.input.impl.ReverseInheritanceRelationBuilder;
+import ca.uqam.latece.aspects.extractor.input.impl.TypeHierarchyIndex;
 import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
 import ca.uqam.latece.aspects.extractor.lattice.visitors.Visitor;
 
@@ -309,10 +309,6 @@ public class FeatureDetectorVisitor extends AbstractVisitor implements Visitor {
 		HashMap<IType, Set<IType>> memberTypes = new HashMap<IType, Set<IType>>(),
 				typesToAggregates = new HashMap<IType, Set<IType>>();
 
-		// first, create a type hierarchy to get the inheritance relationships
-		IProgressMonitor pMonitor = new NullProgressMonitor();
-		ITypeHierarchy typeHierarchy = null;
-
 		// 1) for each type in the extent,
 		while (!typesToProcess.isEmpty()) {
 			try {
@@ -637,8 +633,7 @@ public class FeatureDetectorVisitor extends AbstractVisitor implements Visitor {
 		typesToProcess.addAll(extent);
 
 		// first, create a type hierarchy to get the inheritance relationships
-		IProgressMonitor pMonitor = new NullProgressMonitor();
-		ITypeHierarchy typeHierarchy = null;
+		TypeHierarchyIndex typeHierarchy = null;
 
 		// while there are still classes to process from the extent
 		while (!typesToProcess.isEmpty()) {
@@ -647,7 +642,7 @@ public class FeatureDetectorVisitor extends AbstractVisitor implements Visitor {
 			IType nextType = (IType) typesToProcess.remove(0);
 
 			try {
-				typeHierarchy = nextType.newTypeHierarchy(pMonitor);
+				typeHierarchy = TypeHierarchyIndex.forType(nextType);
 
 				// if nextType is an interface
 				if (nextType.isInterface()) {
@@ -756,8 +751,7 @@ public class FeatureDetectorVisitor extends AbstractVisitor implements Visitor {
 		typesToProcess.addAll(extent);
 
 		// first, create a type hierarchy to get the inheritance relationships
-		IProgressMonitor pMonitor = new NullProgressMonitor();
-		ITypeHierarchy typeHierarchy = null;
+		TypeHierarchyIndex typeHierarchy = null;
 
 		// while there are still classes to process from the extent
 		while (!typesToProcess.isEmpty()) {
@@ -766,7 +760,7 @@ public class FeatureDetectorVisitor extends AbstractVisitor implements Visitor {
 			IType nextType = (IType) typesToProcess.remove(0);
 
 			try {
-				typeHierarchy = nextType.newTypeHierarchy(pMonitor);
+				typeHierarchy = TypeHierarchyIndex.forType(nextType);
 
 				// build the set of its subtypes that are within the extent
 				Set<IType> theSetOfItsSubtypesWithinExtent = new HashSet<IType>();
@@ -1,7 +1,6 @@
 package ca.uqam.latece.aspects.extractor.lattice.visitors.impl;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -14,6 +13,7 @@ import org.eclipse.jdt.core.Signature;
 
 import ca.uqam.latece.aspects.extractor.lattice.graph.model.Node;
 import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.NodeTable;
 import ca.uqam.latece.aspects.extractor.lattice.visitors.Visitor;
 
 public class LatticePrettyPrinter extends AbstractVisitor implements Visitor {
@@ -73,8 +73,8 @@ public class LatticePrettyPrinter extends AbstractVisitor implements Visitor {
 	protected ElementPrinter printer;
 	
 	protected LatticePrettyPrinter() {
-		nodeIndents = new HashMap<LatticeNode,String>();
-		ids = new HashMap<LatticeNode,String>();
+		nodeIndents = new NodeTable<String>();
+		ids = new NodeTable<String>();
 	}
 	
 	public LatticePrettyPrinter(ElementPrinter printer) {
@@ -96,27 +96,27 @@ public class LatticePrettyPrinter extends AbstractVisitor implements Visitor {
 	/**
 	 * used to store the indents to be used for printing the lattice
 	 */
-	private HashMap<LatticeNode,String> nodeIndents = null;
+	private NodeTable<String> nodeIndents = null;
 	
 	/**
 	 * stores node ids so that 
 	 */
-	private HashMap<LatticeNode,String> ids = null;
+	private NodeTable<String> ids = null;
 
 	
-	public HashMap<LatticeNode,String> getNodeIndents() {
+	public NodeTable<String> getNodeIndents() {
 		return nodeIndents;
 	}
 
-	public void setNodeIndents(HashMap<LatticeNode,String> nodeIndents) {
+	public void setNodeIndents(NodeTable<String> nodeIndents) {
 		this.nodeIndents = nodeIndents;
 	}
 
-	public HashMap<LatticeNode,String> getIds() {
+	public NodeTable<String> getIds() {
 		return ids;
 	}
 
-	public void setIds(HashMap<LatticeNode,String> ids) {
+	public void setIds(NodeTable<String> ids) {
 		this.ids = ids;
 	}
 
@@ -210,8 +210,8 @@ public class LatticePrettyPrinter extends AbstractVisitor implements Visitor {
 	public void reset() {
 		super.reset();
 		globalCounter = 0;
-		setNodeIndents(new HashMap<LatticeNode,String>());
-		setIds(new HashMap<LatticeNode,String>());
+		setNodeIndents(new NodeTable<String>());
+		setIds(new NodeTable<String>());
 	}
 
 }
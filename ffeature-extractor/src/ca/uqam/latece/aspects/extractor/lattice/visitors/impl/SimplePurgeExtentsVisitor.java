@@ -8,13 +8,11 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
-import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IType;
-import org.eclipse.jdt.core.ITypeHierarchy;
 import org.eclipse.jdt.core.JavaModelException;
 
+import ca.uqam.latece.aspects.extractor.input.impl.TypeHierarchyIndex;
 import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
 import ca.uqam.latece.aspects.extractor.lattice.visitors.Visitor;
 
@@ -76,8 +74,7 @@ public class SimplePurgeExtentsVisitor extends AbstractVisitor implements Visito
 		classesToProcess.addAll(extent);
 
 		// first, create a type hierarchy to get the inheritance relationships
-		IProgressMonitor pMonitor = new NullProgressMonitor();
-		ITypeHierarchy typeHierarchy = null;
+		TypeHierarchyIndex typeHierarchy = null;
 
 		// while there are still classes to process from the extent
 		while (!classesToProcess.isEmpty()) {
@@ -86,7 +83,7 @@ public class SimplePurgeExtentsVisitor extends AbstractVisitor implements Visito
 			IType nextClass = (IType) classesToProcess.remove(0);
 
 			try {
-				typeHierarchy = nextClass.newTypeHierarchy(pMonitor);
+				typeHierarchy = TypeHierarchyIndex.forType(nextClass);
 				IType[] itsAncestors = typeHierarchy.getAllSupertypes(nextClass);
 
 				// compute the intersection between the extent and the list of
@@ -0,0 +1,36 @@
+package ca.uqam.latece.aspects.extractor.tests.lattice;
+
+import ca.uqam.latece.aspects.extractor.lattice.impl.CoronLatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.impl.FCbOLatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.impl.LatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+import ca.uqam.latece.aspects.extractor.tests.relations.TestRelations;
+
+/**
+ * times the reference builder (<code>LatticeBuilderImpl</code>, in bitset
+ * mode) against the batch builders that delegate the enumeration of the
+ * concepts: Charm, from the Coron platform (<code>CoronLatticeBuilderImpl</code>)
+ * and our own FCbO (<code>FCbOLatticeBuilderImpl</code>), on one thread and on
+ * all the cores. The relations go from small and dense to large and sparse,
+ * which is where an external miner is expected to win.
+ */
+public class BenchmarkBatchBuilders {
+
+	public static void main(String[] args) {
+		// objects, attributes, density (in %)
+		int[][] shapes = { { 100, 30, 30 }, { 400, 50, 15 }, { 800, 60, 15 }, { 2000, 200, 3 }, { 5000, 400, 1 } };
+
+		System.out.println("objects\tattributes\tdensity\tconcepts\tGodin (ms)\tCoron (ms)\tFCbO 1 thread (ms)\tFCbO (ms)");
+		for (int[] shape : shapes) {
+			Relation relation = TestRelations.buildRandomRelation(shape[0], shape[1], shape[2] / 100.0, shape[0]);
+			int concepts = TestLatticeBuilders.concepts(new FCbOLatticeBuilderImpl().buildLattice(relation, null))
+					.size();
+			System.out.println(shape[0] + "\t" + shape[1] + "\t" + shape[2] + "%\t" + concepts + "\t"
+					+ BenchmarkIncrementalBuilders.time(new LatticeBuilderImpl(true), relation) + "\t"
+					+ BenchmarkIncrementalBuilders.time(new CoronLatticeBuilderImpl(), relation) + "\t"
+					+ BenchmarkIncrementalBuilders.time(new FCbOLatticeBuilderImpl(1), relation) + "\t"
+					+ BenchmarkIncrementalBuilders.time(new FCbOLatticeBuilderImpl(), relation));
+		}
+	}
+
+}
@@ -0,0 +1,57 @@
+package ca.uqam.latece.aspects.extractor.tests.lattice;
+
+import ca.uqam.latece.aspects.extractor.lattice.LatticeBuilder;
+import ca.uqam.latece.aspects.extractor.lattice.impl.AddIntentLatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.impl.LatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+import ca.uqam.latece.aspects.extractor.tests.relations.TestRelations;
+
+/**
+ * times Godin et al.'s Algorithm 1 (<code>LatticeBuilderImpl</code>) against
+ * AddIntent (<code>AddIntentLatticeBuilderImpl</code>), in both storage modes,
+ * on the same random relations of increasing size. Each builder is run a few
+ * times on each relation, and we keep the best time, to leave the JIT warm-up
+ * out of the comparison.
+ */
+public class BenchmarkIncrementalBuilders {
+
+	private static final int RUNS = 3;
+
+	public static void main(String[] args) {
+		int[][] sizes = { { 100, 30 }, { 200, 40 }, { 400, 50 }, { 800, 60 } };
+
+		System.out.println("objects\tattributes\tconcepts\tGodin (ms)\tbitset Godin (ms)\tAddIntent (ms)\tbitset AddIntent (ms)");
+		for (int[] size : sizes) {
+			Relation relation = TestRelations.buildRandomRelation(size[0], size[1], 0.15, size[0]);
+			int concepts = TestLatticeBuilders.concepts(new LatticeBuilderImpl(true).buildLattice(relation, null))
+					.size();
+			System.out.println(size[0] + "\t" + size[1] + "\t" + concepts + "\t"
+					+ time(new LatticeBuilderImpl(), relation) + "\t" + time(new LatticeBuilderImpl(true), relation)
+					+ "\t" + time(new AddIntentLatticeBuilderImpl(), relation) + "\t"
+					+ time(new AddIntentLatticeBuilderImpl(true), relation));
+		}
+	}
+
+	/**
+	 * returns the best time, in milliseconds, taken by aBuilder to build the
+	 * lattice of aRelation
+	 *
+	 * @param aBuilder
+	 * @param aRelation
+	 * @return
+	 */
+	protected static long time(LatticeBuilder aBuilder, Relation aRelation) {
+		long best = Long.MAX_VALUE;
+		for (int run = 0; run < RUNS; run++) {
+			long start = System.nanoTime();
+			Lattice lattice = aBuilder.buildLattice(aRelation, null);
+			long elapsed = System.nanoTime() - start;
+			if (lattice.getTop() == null)
+				throw new IllegalStateException("no lattice built");
+			best = Math.min(best, elapsed);
+		}
+		return best / 1000000;
+	}
+
+}
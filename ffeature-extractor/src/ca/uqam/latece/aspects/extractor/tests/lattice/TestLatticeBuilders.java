@@ -0,0 +1,627 @@
+package ca.uqam.latece.aspects.extractor.tests.lattice;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import ca.uqam.latece.aspects.extractor.input.RelationSink;
+import ca.uqam.latece.aspects.extractor.input.impl.QueuedRelationSink;
+import ca.uqam.latece.aspects.extractor.lattice.CandidateFeatureSink;
+import ca.uqam.latece.aspects.extractor.lattice.LatticeBuilder;
+import ca.uqam.latece.aspects.extractor.lattice.impl.AddIntentLatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.impl.CandidateFeatureMiner;
+import ca.uqam.latece.aspects.extractor.lattice.impl.ContextReducingLatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.impl.DivideAndConquerLatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.impl.FCbOLatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.impl.LatticeBuildingSink;
+import ca.uqam.latece.aspects.extractor.lattice.impl.LatticeBuilderImpl;
+import ca.uqam.latece.aspects.extractor.lattice.model.Lattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.LatticeNode;
+import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.CompactLattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.IndexedRelationImpl;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.LatticeImpl;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.MappedLattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.RelationImpl;
+import ca.uqam.latece.aspects.extractor.tests.relations.TestRelations;
+
+/**
+ * builds the same relations with the different lattice builders (and builder
+ * modes), and checks that they produce the same concepts as the reference
+ * builder, i.e. <code>LatticeBuilderImpl</code> in its default mode.
+ *
+ * Each concept is printed as [sorted extent, sorted intent], and a lattice is
+ * summarised by the sorted set of the print strings of its concepts, and of
+ * its edges (printed as parent -> child). Every edge must be a cover edge, and
+ * appear in the parents of the child as well as in the children of the parent.
+ */
+public class TestLatticeBuilders {
+
+	public static void main(String[] args) throws IOException {
+
+		List<Relation> relations = new ArrayList<Relation>();
+		relations.add(TestRelations.buildSampleRelation());
+		relations.add(TestRelations.buildRandomRelation(40, 15, 0.3, 1));
+		relations.add(TestRelations.buildRandomRelation(60, 25, 0.2, 2));
+		relations.add(TestRelations.buildRedundantRelation(40, 16, 0.3, 3));
+
+		boolean allPassed = true;
+		for (Relation relation : relations) {
+			LatticeBuilderImpl referenceBuilder = new LatticeBuilderImpl();
+			referenceBuilder.setOrientation(LatticeBuilderImpl.Orientation.OBJECTS);
+			Lattice referenceLattice = referenceBuilder.buildLattice(relation, null);
+			SortedSet<String> reference = concepts(referenceLattice);
+			reference.addAll(edges(referenceLattice));
+
+			allPassed &= check("bitset Godin", reference, new LatticeBuilderImpl(true), relation);
+			allPassed &= check("AddIntent", reference, new AddIntentLatticeBuilderImpl(), relation);
+			allPassed &= check("bitset AddIntent", reference,
+					LatticeBuilder.newLatticeBuilder(LatticeBuilder.Algorithm.ADD_INTENT), relation);
+			allPassed &= check("FCbO", reference, LatticeBuilder.newLatticeBuilder(LatticeBuilder.Algorithm.FCBO),
+					relation);
+			allPassed &= check("FCbO, 1 thread", reference, new FCbOLatticeBuilderImpl(1), relation);
+			allPassed &= check("divide and conquer", reference,
+					LatticeBuilder.newLatticeBuilder(LatticeBuilder.Algorithm.DIVIDE_AND_CONQUER), relation);
+			allPassed &= check("divide and conquer, 5 chunks", reference, new DivideAndConquerLatticeBuilderImpl(5),
+					relation);
+			allPassed &= check("Coron (Charm)", reference,
+					LatticeBuilder.newLatticeBuilder(LatticeBuilder.Algorithm.CORON_CHARM), relation);
+
+			// the attributes inserted one by one, and the result flipped back
+			for (boolean useBitSets : new boolean[] { false, true }) {
+				LatticeBuilderImpl transposingBuilder = new LatticeBuilderImpl(useBitSets);
+				transposingBuilder.setOrientation(LatticeBuilderImpl.Orientation.ATTRIBUTES);
+				allPassed &= checkOrientation((useBitSets ? "bitset " : "") + "Godin, attributes inserted",
+						reference, referenceLattice, transposingBuilder, relation);
+			}
+			LatticeBuilderImpl transposingAddIntent = new AddIntentLatticeBuilderImpl();
+			transposingAddIntent.setOrientation(LatticeBuilderImpl.Orientation.ATTRIBUTES);
+			allPassed &= checkOrientation("AddIntent, attributes inserted", reference, referenceLattice,
+					transposingAddIntent, relation);
+			allPassed &= checkOrientation("Godin, automatic orientation", reference, referenceLattice,
+					new LatticeBuilderImpl(), relation);
+
+			// the same relation, with interned ids
+			Relation indexedRelation = new IndexedRelationImpl(relation);
+			allPassed &= check("Godin, indexed relation", reference, new LatticeBuilderImpl(), indexedRelation);
+			allPassed &= check("bitset Godin, indexed relation", reference, new LatticeBuilderImpl(true),
+					indexedRelation);
+			allPassed &= check("FCbO, indexed relation", reference,
+					LatticeBuilder.newLatticeBuilder(LatticeBuilder.Algorithm.FCBO), indexedRelation);
+
+			// the rows handed over one by one, on this thread or another one
+			allPassed &= checkStreamed("Godin, streamed rows", reference, new LatticeBuilderImpl(), false, relation);
+			allPassed &= checkStreamed("bitset Godin, queued rows", reference, new LatticeBuilderImpl(true), true,
+					relation);
+			allPassed &= checkStreamed("AddIntent, queued rows", reference, new AddIntentLatticeBuilderImpl(), true,
+					relation);
+
+			// the lattice of the clarified and reduced relation, expanded
+			allPassed &= checkOrientation("Godin, reduced context", reference, referenceLattice,
+					new ContextReducingLatticeBuilderImpl(new LatticeBuilderImpl()), relation);
+			allPassed &= checkOrientation("bitset Godin, reduced context", reference, referenceLattice,
+					new ContextReducingLatticeBuilderImpl(new LatticeBuilderImpl(true)), relation);
+			allPassed &= checkOrientation("FCbO, reduced context", reference, referenceLattice,
+					new ContextReducingLatticeBuilderImpl(
+							LatticeBuilder.newLatticeBuilder(LatticeBuilder.Algorithm.FCBO)), relation);
+
+			// rows changed in place, as after an edit of the code
+			Map<Object, Set<Object>> changedRows = changeRows(relation, 5);
+			allPassed &= checkUpdated("Godin, updated rows", new LatticeBuilderImpl(), relation, changedRows);
+			allPassed &= checkUpdated("bitset Godin, updated rows", new LatticeBuilderImpl(true), relation,
+					changedRows);
+			allPassed &= checkUpdated("FCbO, updated rows",
+					LatticeBuilder.newLatticeBuilder(LatticeBuilder.Algorithm.FCBO), relation, changedRows);
+			Map<Object, Set<Object>> replacedHeaderRows = deleteHeaderType(relation);
+			allPassed &= checkUpdated("Godin, header type deleted", new LatticeBuilderImpl(), relation,
+					replacedHeaderRows);
+			allPassed &= checkUpdated("bitset Godin, header type deleted", new LatticeBuilderImpl(true), relation,
+					replacedHeaderRows);
+			allPassed &= checkRestored("Godin, header type deleted and restored", new LatticeBuilderImpl(),
+					relation, replacedHeaderRows);
+			allPassed &= checkRestored("bitset Godin, header type deleted and restored",
+					new LatticeBuilderImpl(true), relation, replacedHeaderRows);
+
+			// reduced labels, with and without a cache
+			LatticeBuilderImpl reducedGodin = new LatticeBuilderImpl();
+			reducedGodin.setReducedLabelling(16);
+			allPassed &= check("reduced Godin", reference, reducedGodin, relation);
+			LatticeBuilderImpl reducedFCbO = new FCbOLatticeBuilderImpl();
+			reducedFCbO.setReducedLabelling(0);
+			allPassed &= check("reduced FCbO, no cache", reference, reducedFCbO, relation);
+			LatticeBuilderImpl reducedDivideAndConquer = new DivideAndConquerLatticeBuilderImpl(5);
+			reducedDivideAndConquer.setReducedLabelling(1024);
+			allPassed &= check("reduced divide and conquer", reference, reducedDivideAndConquer, relation);
+
+			// iceberg lattices should yield the same candidate features
+			SortedSet<String> referenceCandidates = candidates(referenceLattice);
+			allPassed &= checkCandidates("iceberg FCbO", referenceCandidates,
+					LatticeBuilder.newLatticeBuilder(LatticeBuilder.Algorithm.FCBO, 2), relation);
+			allPassed &= checkCandidates("iceberg divide and conquer", referenceCandidates,
+					LatticeBuilder.newLatticeBuilder(LatticeBuilder.Algorithm.DIVIDE_AND_CONQUER, 2), relation);
+
+			// frozen lattices should read the same as the lattices they were
+			// made from
+			allPassed &= checkCompact("frozen Godin", reference, referenceCandidates,
+					((LatticeImpl) referenceLattice).freeze());
+			allPassed &= checkCompact("frozen bitset Godin", reference, referenceCandidates,
+					((LatticeImpl) new LatticeBuilderImpl(true).buildLattice(relation, null)).freeze());
+
+			// ... and so should lattices written to a file, and mapped back
+			File file = File.createTempFile("lattice", ".bin");
+			file.deleteOnExit();
+			MappedLattice.write(referenceLattice, file, MappedLattice.STRING_CODEC);
+			allPassed &= checkMapped("mapped Godin", reference, referenceCandidates, file);
+			MappedLattice.write(((LatticeImpl) referenceLattice).freeze(), file, MappedLattice.STRING_CODEC);
+			allPassed &= checkMapped("mapped frozen Godin", reference, referenceCandidates, file);
+
+			// ... and so should lattices spilled to a file while they are
+			// enumerated
+			new FCbOLatticeBuilderImpl().writeLattice(relation, file, MappedLattice.STRING_CODEC);
+			allPassed &= checkMapped("spilled FCbO", reference, referenceCandidates, file);
+			FCbOLatticeBuilderImpl icebergFCbO = new FCbOLatticeBuilderImpl();
+			icebergFCbO.setMinimumSupport(2);
+			icebergFCbO.writeLattice(relation, file, MappedLattice.STRING_CODEC);
+			MappedLattice icebergLattice = MappedLattice.open(file, MappedLattice.STRING_CODEC);
+			allPassed &= checkCandidates("spilled iceberg FCbO", referenceCandidates, icebergLattice);
+			icebergLattice.close();
+
+			// ... and so should the miner, without building any lattice
+			final SortedSet<String> minedCandidates = new TreeSet<String>();
+			final Set<Set<Object>> minedIntents = new HashSet<Set<Object>>(), minedChildIntents = new HashSet<Set<Object>>();
+			new CandidateFeatureMiner().mine(relation, new CandidateFeatureSink() {
+				@Override
+				public void candidateFeatureFound(Set<Object> extent, Set<Object> intent,
+						Collection<Set<Object>> childIntents) {
+					minedCandidates.add(printConcept(extent, intent));
+					minedIntents.add(intent);
+					minedChildIntents.addAll(childIntents);
+				}
+			});
+			boolean same = referenceCandidates.equals(minedCandidates) && minedIntents.containsAll(minedChildIntents);
+			System.out.println("candidate feature miner: " + minedCandidates.size() + " candidate features, expected "
+					+ referenceCandidates.size() + (same ? " -> OK" : " -> FAILED"));
+			allPassed &= same;
+		}
+
+		System.out.println(allPassed ? "All builders agree" : "SOME BUILDERS DISAGREE");
+	}
+
+	/**
+	 * builds the lattice of aRelation with aBuilder and compares its concepts
+	 * with the reference concepts
+	 *
+	 * @param name
+	 * @param reference
+	 * @param aBuilder
+	 * @param aRelation
+	 * @return
+	 */
+	protected static boolean check(String name, SortedSet<String> reference, LatticeBuilder aBuilder,
+			Relation aRelation) {
+		Lattice lattice = aBuilder.buildLattice(aRelation, null);
+		SortedSet<String> actual = concepts(lattice);
+		actual.addAll(edges(lattice));
+		boolean same = reference.equals(actual);
+		System.out.println(name + ": " + actual.size() + " concepts and edges, expected " + reference.size()
+				+ (same ? " -> OK" : " -> FAILED"));
+		return same;
+	}
+
+	/**
+	 * hands the rows of aRelation to a <code>LatticeBuildingSink</code> that
+	 * uses aBuilder, directly or through a <code>QueuedRelationSink</code>,
+	 * and compares the concepts of its lattice with the reference concepts
+	 *
+	 * @param name
+	 * @param reference
+	 * @param aBuilder
+	 * @param queued
+	 * @param aRelation
+	 * @return
+	 */
+	protected static boolean checkStreamed(String name, SortedSet<String> reference, LatticeBuilderImpl aBuilder,
+			boolean queued, Relation aRelation) {
+		LatticeBuildingSink latticeSink = new LatticeBuildingSink(aBuilder);
+		RelationSink sink = queued ? new QueuedRelationSink(latticeSink, 4) : latticeSink;
+		sink.relationStarted(null, aRelation.getAllImages());
+		for (Object object : aRelation.getDomain())
+			sink.rowCompleted(object, aRelation.getImage(object));
+		sink.relationCompleted();
+		SortedSet<String> actual = concepts(latticeSink.getLattice());
+		actual.addAll(edges(latticeSink.getLattice()));
+		boolean same = latticeSink.isCompleted() && reference.equals(actual);
+		System.out.println(name + ": " + actual.size() + " concepts and edges, expected " + reference.size()
+				+ (same ? " -> OK" : " -> FAILED"));
+		return same;
+	}
+
+	/**
+	 * returns changes to the rows of aRelation: every seventh object loses its
+	 * row, every fifth one gets another row, an attribute goes, and new
+	 * objects come, one of them with a new attribute
+	 *
+	 * @param aRelation
+	 * @param seed
+	 * @return
+	 */
+	protected static Map<Object, Set<Object>> changeRows(Relation aRelation, long seed) {
+		Random random = new Random(seed);
+		List<Object> attributes = new ArrayList<Object>(new TreeSet<Object>(aRelation.getAllImages()));
+		Object goneAttribute = attributes.get(random.nextInt(attributes.size()));
+		Map<Object, Set<Object>> changedRows = new LinkedHashMap<Object, Set<Object>>();
+		int i = 0;
+		for (Object object : new TreeSet<Object>(aRelation.getDomain())) {
+			Set<Object> row = new HashSet<Object>(aRelation.getImage(object));
+			if (i % 7 == 0)
+				row.clear();
+			else if (i % 5 == 0) {
+				for (Object attribute : attributes) {
+					if (random.nextDouble() < 0.3 && !row.remove(attribute))
+						row.add(attribute);
+				}
+			}
+			row.remove(goneAttribute);
+			if (!row.equals(aRelation.getImage(object)))
+				changedRows.put(object, row);
+			i++;
+		}
+		for (int j = 0; j < 3; j++) {
+			Set<Object> row = new HashSet<Object>();
+			for (Object attribute : attributes) {
+				if (attribute != goneAttribute && random.nextDouble() < 0.3)
+					row.add(attribute);
+			}
+			if (j == 0)
+				row.add("new");
+			changedRows.put("N" + j, row);
+		}
+		return changedRows;
+	}
+
+	/**
+	 * returns the changes to the rows of aRelation when the type that declares
+	 * the header of a method is deleted (see
+	 * <code>ReverseInheritanceRelationBuilder.forgetImplementations()</code>):
+	 * the first object that has the most shared attribute loses its row, and
+	 * the other objects that have it get a new header in its place
+	 *
+	 * @param aRelation
+	 * @return
+	 */
+	protected static Map<Object, Set<Object>> deleteHeaderType(Relation aRelation) {
+		Object header = null;
+		for (Object attribute : new TreeSet<Object>(aRelation.getAllImages())) {
+			if (header == null || aRelation.getPreimage(attribute).size() > aRelation.getPreimage(header).size())
+				header = attribute;
+		}
+		Map<Object, Set<Object>> changedRows = new LinkedHashMap<Object, Set<Object>>();
+		for (Object object : new TreeSet<Object>(aRelation.getPreimage(header))) {
+			Set<Object> row = new HashSet<Object>();
+			if (!changedRows.isEmpty()) {
+				row.addAll(aRelation.getImage(object));
+				row.remove(header);
+				row.add(header + "'");
+			}
+			changedRows.put(object, row);
+		}
+		return changedRows;
+	}
+
+	/**
+	 * builds the lattice of aRelation with aBuilder, updates it with
+	 * <code>LatticeBuilderImpl.updateRows()</code>, and compares it with the
+	 * lattice of the changed relation, built from scratch
+	 *
+	 * @param name
+	 * @param aBuilder
+	 * @param aRelation
+	 * @param changedRows
+	 * @return
+	 */
+	protected static boolean checkUpdated(String name, LatticeBuilder aBuilder, Relation aRelation,
+			Map<Object, Set<Object>> changedRows) {
+		Relation changedRelation = changedRelation(aRelation, changedRows);
+		LatticeBuilderImpl referenceBuilder = new LatticeBuilderImpl();
+		referenceBuilder.setOrientation(LatticeBuilderImpl.Orientation.OBJECTS);
+		Lattice referenceLattice = referenceBuilder.buildLattice(changedRelation, null);
+		SortedSet<String> reference = concepts(referenceLattice);
+		reference.addAll(edges(referenceLattice));
+
+		Lattice lattice = aBuilder.buildLattice(aRelation, null);
+		new LatticeBuilderImpl().updateRows(lattice, changedRows, changedRelation.getAllImages());
+		SortedSet<String> actual = concepts(lattice);
+		actual.addAll(edges(lattice));
+		boolean same = reference.equals(actual)
+				&& printConcept(lattice.getTop()).equals(printConcept(referenceLattice.getTop()))
+				&& printConcept(lattice.getBottom()).equals(printConcept(referenceLattice.getBottom()));
+		System.out.println(name + ": " + actual.size() + " concepts and edges, expected " + reference.size()
+				+ (same ? " -> OK" : " -> FAILED"));
+		return same;
+	}
+
+	/**
+	 * builds the lattice of aRelation with aBuilder, updates it with
+	 * changedRows, then updates it again with the former rows of the same
+	 * objects, as when a type is deleted and then restored, and compares it
+	 * with the lattice of aRelation, built from scratch
+	 *
+	 * @param name
+	 * @param aBuilder
+	 * @param aRelation
+	 * @param changedRows
+	 * @return
+	 */
+	protected static boolean checkRestored(String name, LatticeBuilder aBuilder, Relation aRelation,
+			Map<Object, Set<Object>> changedRows) {
+		LatticeBuilderImpl referenceBuilder = new LatticeBuilderImpl();
+		referenceBuilder.setOrientation(LatticeBuilderImpl.Orientation.OBJECTS);
+		Lattice referenceLattice = referenceBuilder.buildLattice(aRelation, null);
+		SortedSet<String> reference = concepts(referenceLattice);
+		reference.addAll(edges(referenceLattice));
+
+		Map<Object, Set<Object>> restoredRows = new LinkedHashMap<Object, Set<Object>>();
+		for (Object object : changedRows.keySet())
+			restoredRows.put(object, new HashSet<Object>(aRelation.getImage(object)));
+		Lattice lattice = aBuilder.buildLattice(aRelation, null);
+		LatticeBuilderImpl updater = new LatticeBuilderImpl();
+		updater.updateRows(lattice, changedRows, changedRelation(aRelation, changedRows).getAllImages());
+		updater.updateRows(lattice, restoredRows, aRelation.getAllImages());
+		SortedSet<String> actual = concepts(lattice);
+		actual.addAll(edges(lattice));
+		boolean same = reference.equals(actual)
+				&& printConcept(lattice.getTop()).equals(printConcept(referenceLattice.getTop()))
+				&& printConcept(lattice.getBottom()).equals(printConcept(referenceLattice.getBottom()));
+		System.out.println(name + ": " + actual.size() + " concepts and edges, expected " + reference.size()
+				+ (same ? " -> OK" : " -> FAILED"));
+		return same;
+	}
+
+	/**
+	 * returns a copy of aRelation in which the rows of the keys of
+	 * changedRows are replaced by their values
+	 *
+	 * @param aRelation
+	 * @param changedRows
+	 * @return
+	 */
+	protected static Relation changedRelation(Relation aRelation, Map<Object, Set<Object>> changedRows) {
+		// the objects whose row was empty in the first place stay
+		Relation changedRelation = new RelationImpl(null);
+		for (Object object : aRelation.getDomain()) {
+			if (!changedRows.containsKey(object)) {
+				changedRelation.addToDomain(object);
+				for (Object attribute : aRelation.getImage(object))
+					changedRelation.addRelation(object, attribute);
+			}
+		}
+		for (Map.Entry<Object, Set<Object>> row : changedRows.entrySet()) {
+			for (Object attribute : row.getValue())
+				changedRelation.addRelation(row.getKey(), attribute);
+		}
+		return changedRelation;
+	}
+
+	/**
+	 * same as check(), and also checks that the top and the bottom of the
+	 * lattice are those of the reference lattice
+	 *
+	 * @param name
+	 * @param reference
+	 * @param referenceLattice
+	 * @param aBuilder
+	 * @param aRelation
+	 * @return
+	 */
+	protected static boolean checkOrientation(String name, SortedSet<String> reference, Lattice referenceLattice,
+			LatticeBuilder aBuilder, Relation aRelation) {
+		Lattice lattice = aBuilder.buildLattice(aRelation, null);
+		SortedSet<String> actual = concepts(lattice);
+		actual.addAll(edges(lattice));
+		boolean same = reference.equals(actual)
+				&& printConcept(lattice.getTop()).equals(printConcept(referenceLattice.getTop()))
+				&& printConcept(lattice.getBottom()).equals(printConcept(referenceLattice.getBottom()));
+		System.out.println(name + ": " + actual.size() + " concepts and edges, expected " + reference.size()
+				+ (same ? " -> OK" : " -> FAILED"));
+		return same;
+	}
+
+	/**
+	 * builds the lattice of aRelation with aBuilder and compares its candidate
+	 * features with the reference ones
+	 *
+	 * @param name
+	 * @param reference
+	 * @param aBuilder
+	 * @param aRelation
+	 * @return
+	 */
+	protected static boolean checkCandidates(String name, SortedSet<String> reference, LatticeBuilder aBuilder,
+			Relation aRelation) {
+		return checkCandidates(name, reference, aBuilder.buildLattice(aRelation, null));
+	}
+
+	/**
+	 * compares the candidate features of lattice with the reference ones
+	 *
+	 * @param name
+	 * @param reference
+	 * @param lattice
+	 * @return
+	 */
+	protected static boolean checkCandidates(String name, SortedSet<String> reference, Lattice lattice) {
+		SortedSet<String> actual = candidates(lattice);
+		boolean same = reference.equals(actual);
+		System.out.println(name + ": " + concepts(lattice).size() + " concepts, " + actual.size()
+				+ " candidate features, expected " + reference.size() + (same ? " -> OK" : " -> FAILED"));
+		return same;
+	}
+
+	/**
+	 * maps aFile, written by <code>MappedLattice.write()</code>, checks its
+	 * lattice with checkCompact(), and closes it
+	 *
+	 * @param name
+	 * @param reference
+	 * @param referenceCandidates
+	 * @param aFile
+	 * @return
+	 * @throws IOException
+	 */
+	protected static boolean checkMapped(String name, SortedSet<String> reference,
+			SortedSet<String> referenceCandidates, File aFile) throws IOException {
+		MappedLattice lattice = MappedLattice.open(aFile, MappedLattice.STRING_CODEC);
+		try {
+			return checkCompact(name, reference, referenceCandidates, lattice);
+		} finally {
+			lattice.close();
+		}
+	}
+
+	/**
+	 * compares the concepts, edges and candidate features of aLattice with the
+	 * reference ones, and checks that its nodes are numbered top-down and that
+	 * its parents are the reverse of its children
+	 *
+	 * @param name
+	 * @param reference
+	 * @param referenceCandidates
+	 * @param aLattice
+	 * @return
+	 */
+	protected static boolean checkCompact(String name, SortedSet<String> reference,
+			SortedSet<String> referenceCandidates, CompactLattice aLattice) {
+		SortedSet<String> actual = concepts(aLattice);
+		actual.addAll(edges(aLattice));
+		boolean same = reference.equals(actual) && referenceCandidates.equals(candidates(aLattice));
+		int edges = 0;
+		for (int id = 0; id < aLattice.getNumberOfNodes(); id++) {
+			LatticeNode node = aLattice.getNode(id);
+			for (int position = aLattice.getChildrenStart(id); position < aLattice.getChildrenEnd(id); position++) {
+				int child = aLattice.getChildAt(position);
+				same &= child > id && aLattice.getNode(child).hasParent(node);
+				edges++;
+			}
+			same &= aLattice.getNode(id).getParents().size() == aLattice.getParentsEnd(id)
+					- aLattice.getParentsStart(id);
+		}
+		same &= aLattice.getTopId() == 0 && aLattice.getBottomId() == aLattice.getNumberOfNodes() - 1;
+		System.out.println(name + ": " + aLattice.getNumberOfNodes() + " nodes, " + edges + " edges"
+				+ (same ? " -> OK" : " -> FAILED"));
+		return same;
+	}
+
+	/**
+	 * returns the print strings of the candidate features of aLattice, i.e. the
+	 * nodes that <code>FeatureDetectorVisitor.processNode()</code> retains:
+	 * more than one object, a non empty intent, and no child with the same
+	 * number of objects
+	 *
+	 * @param aLattice
+	 * @return
+	 */
+	public static SortedSet<String> candidates(Lattice aLattice) {
+		SortedSet<String> candidates = new TreeSet<String>();
+		Set<LatticeNode> visited = new HashSet<LatticeNode>();
+		List<LatticeNode> toVisit = new ArrayList<LatticeNode>();
+		toVisit.add(aLattice.getTop());
+		while (!toVisit.isEmpty()) {
+			LatticeNode node = toVisit.remove(toVisit.size() - 1);
+			if (!visited.add(node))
+				continue;
+			toVisit.addAll(node.getChildren());
+			if (node.getExtent().size() <= 1 || node.getIntent().isEmpty())
+				continue;
+			boolean isCandidate = true;
+			for (LatticeNode child : node.getChildren()) {
+				if (child.getExtent().size() == node.getExtent().size())
+					isCandidate = false;
+			}
+			if (isCandidate)
+				candidates.add(printConcept(node));
+		}
+		return candidates;
+	}
+
+	/**
+	 * returns the print strings of the concepts of aLattice, reached from the
+	 * top through the children links
+	 *
+	 * @param aLattice
+	 * @return
+	 */
+	public static SortedSet<String> concepts(Lattice aLattice) {
+		SortedSet<String> concepts = new TreeSet<String>();
+		Set<LatticeNode> visited = new HashSet<LatticeNode>();
+		List<LatticeNode> toVisit = new ArrayList<LatticeNode>();
+		toVisit.add(aLattice.getTop());
+		while (!toVisit.isEmpty()) {
+			LatticeNode node = toVisit.remove(toVisit.size() - 1);
+			if (!visited.add(node))
+				continue;
+			concepts.add(printConcept(node));
+			toVisit.addAll(node.getChildren());
+		}
+		return concepts;
+	}
+
+	/**
+	 * returns the print strings of the edges of aLattice, reached from the top
+	 * through the children links. Edges that are not cover edges, or that are
+	 * missing from the parents of the child, are printed as such, so that they
+	 * do not match the reference
+	 *
+	 * @param aLattice
+	 * @return
+	 */
+	public static SortedSet<String> edges(Lattice aLattice) {
+		SortedSet<String> edges = new TreeSet<String>();
+		Set<LatticeNode> visited = new HashSet<LatticeNode>();
+		List<LatticeNode> toVisit = new ArrayList<LatticeNode>();
+		toVisit.add(aLattice.getTop());
+		while (!toVisit.isEmpty()) {
+			LatticeNode node = toVisit.remove(toVisit.size() - 1);
+			if (!visited.add(node))
+				continue;
+			for (LatticeNode child : node.getChildren()) {
+				boolean isCover = true;
+				for (LatticeNode otherChild : node.getChildren()) {
+					if (otherChild.getIntent().size() < child.getIntent().size()
+							&& child.getIntent().containsAll(otherChild.getIntent()))
+						isCover = false;
+				}
+				String edge = printConcept(node) + " -> " + printConcept(child);
+				if (!isCover)
+					edge += " (redundant)";
+				if (!child.hasParent(node))
+					edge += " (no parent link)";
+				edges.add(edge);
+			}
+			toVisit.addAll(node.getChildren());
+		}
+		return edges;
+	}
+
+	public static String printConcept(LatticeNode node) {
+		return printConcept(node.getExtent(), node.getIntent());
+	}
+
+	public static String printConcept(Set<Object> someObjects, Set<Object> someAttributes) {
+		SortedSet<String> extent = new TreeSet<String>(), intent = new TreeSet<String>();
+		for (Object object : someObjects)
+			extent.add(object.toString());
+		for (Object attribute : someAttributes)
+			intent.add(attribute.toString());
+		return "[" + extent + "," + intent + "]";
+	}
+
+}
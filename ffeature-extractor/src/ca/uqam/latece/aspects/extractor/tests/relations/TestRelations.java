@@ -1,15 +1,27 @@
 package ca.uqam.latece.aspects.extractor.tests.relations;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import ca.uqam.latece.aspects.extractor.lattice.model.Relation;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.IndexedRelationImpl;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.MappedLattice;
+import ca.uqam.latece.aspects.extractor.lattice.model.impl.RelationFile;
 import ca.uqam.latece.aspects.extractor.lattice.model.impl.RelationImpl;
 import ca.uqam.latece.aspects.extractor.tests.lattice.TestBuildingLattices.Attributes;
 import ca.uqam.latece.aspects.extractor.tests.lattice.TestBuildingLattices.Objects;
 
 public class TestRelations {
 
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException {
 		
 		Relation relation = buildSampleRelation();
 		
@@ -20,10 +32,107 @@ public class TestRelations {
 		for (Object anObject: relation.getDomain()){
 			System.out.println("Image of " + anObject + " is" + relation.getImage(anObject));
 		}
+
+		// the inverted index must follow the changes of the relation
+		Relation randomRelation = buildRandomRelation(50, 20, 0.3, 1);
+		Relation indexedRelation = new IndexedRelationImpl(randomRelation);
+		for (Relation aRelation : new Relation[] { randomRelation, indexedRelation }) {
+			aRelation.removeFromDomain("O3");
+			aRelation.removeRelation("O4", "a1");
+			aRelation.removeRelation("O5", "a2");
+			for (Object object : aRelation.getDomain()) {
+				if (!object.equals("O6"))
+					aRelation.removeRelation(object, "a7");
+			}
+			aRelation.addRelation("O60", "a20");
+			System.out.println(aRelation.getClass().getSimpleName() + " inverted index: "
+					+ (checkInvertedIndex(aRelation) ? "OK" : "FAILED"));
+		}
+
+		// a relation written to a file, and mapped back, with and without
+		// domain interfaces (one type without methods, one without any)
+		Relation redundantRelation = buildRedundantRelation(30, 12, 0.3, 4);
+		Map<Object, Object[]> localInterfaces = new HashMap<Object, Object[]>();
+		for (Object object : redundantRelation.getDomain())
+			localInterfaces.put(object, new Object[] { "a" + object.hashCode() % 12 });
+		localInterfaces.put("Empty", new Object[0]);
+		File file = File.createTempFile("relation", ".bin");
+		file.deleteOnExit();
+		RelationFile.write(redundantRelation, file, MappedLattice.STRING_CODEC);
+		RelationFile relationFile = RelationFile.open(file, MappedLattice.STRING_CODEC);
+		boolean same = sameRelation(redundantRelation, relationFile.getRelation(null))
+				&& !relationFile.hasDomainInterfaces();
+		RelationFile.write(redundantRelation, localInterfaces, null, file, MappedLattice.STRING_CODEC);
+		relationFile = RelationFile.open(file, MappedLattice.STRING_CODEC);
+		Map<Object, Object[]> readInterfaces = relationFile.getLocalDomainInterfaces();
+		same &= sameRelation(redundantRelation, relationFile.getRelation(null))
+				&& relationFile.getSubhierarchyDomainInterfaces() == null
+				&& readInterfaces.keySet().equals(localInterfaces.keySet());
+		for (Object type : localInterfaces.keySet())
+			same &= Arrays.equals(localInterfaces.get(type), readInterfaces.get(type));
+		System.out.println("relation file: " + (same ? "OK" : "FAILED"));
+
 		// TODO Auto-generated method stub
 		Arrays.asList(null);
 
 	}
+
+	/**
+	 * true if both relations have the same domain and the same images
+	 *
+	 * @param aRelation
+	 * @param another
+	 * @return
+	 */
+	public static boolean sameRelation(Relation aRelation, Relation another) {
+		if (!aRelation.getDomain().equals(another.getDomain()))
+			return false;
+		for (Object object : aRelation.getDomain()) {
+			if (!aRelation.getImage(object).equals(another.getImage(object)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * compares the preimages, the union of the images and the common
+	 * (pre)images of aRelation with those computed by scanning its images
+	 *
+	 * @param aRelation
+	 * @return
+	 */
+	public static boolean checkInvertedIndex(Relation aRelation) {
+		Set<Object> allImages = new HashSet<Object>();
+		for (Object object : aRelation.getDomain())
+			allImages.addAll(aRelation.getImage(object));
+		boolean same = allImages.equals(aRelation.getAllImages());
+		for (Object attribute : allImages) {
+			Set<Object> preimage = new HashSet<Object>();
+			for (Object object : aRelation.getDomain()) {
+				if (aRelation.containsRelation(object, attribute))
+					preimage.add(object);
+			}
+			same &= preimage.equals(aRelation.getPreimage(attribute));
+		}
+		same &= aRelation.getPreimage("a99").isEmpty();
+		// closures of pairs of attributes
+		List<Object> attributes = new ArrayList<Object>(allImages);
+		for (int i = 0; i + 1 < attributes.size(); i++) {
+			List<Object> pair = Arrays.asList(attributes.get(i), attributes.get(i + 1));
+			Set<Object> extent = new HashSet<Object>();
+			for (Object object : aRelation.getDomain()) {
+				if (aRelation.getImage(object).containsAll(pair))
+					extent.add(object);
+			}
+			same &= extent.equals(aRelation.getCommonPreimage(pair));
+			Set<Object> intent = new HashSet<Object>(allImages);
+			for (Object object : extent)
+				intent.retainAll(aRelation.getImage(object));
+			same &= intent.equals(aRelation.getCommonImage(extent));
+		}
+		same &= aRelation.getDomain().equals(aRelation.getCommonPreimage(new ArrayList<Object>()));
+		return same;
+	}
 	
 	/**
 	 * build the relation described in Godin et al., (1995), published in Computational Intelligence
@@ -87,4 +196,66 @@ public class TestRelations {
 		return relation;
 	}
 
+	/**
+	 * builds a random relation with <code>numberOfObjects</code> objects (named O0, O1, ...)
+	 * and <code>numberOfAttributes</code> attributes (named a0, a1, ...), where each
+	 * <object,attribute> pair belongs to the relation with probability <code>density</code>.
+	 * The same seed always gives the same relation.
+	 * @param numberOfObjects
+	 * @param numberOfAttributes
+	 * @param density
+	 * @param seed
+	 * @return
+	 */
+	public static Relation buildRandomRelation(int numberOfObjects, int numberOfAttributes, double density, long seed) {
+		Relation relation = new RelationImpl(null);
+		Random random = new Random(seed);
+		
+		for (int i = 0; i < numberOfObjects; i++) {
+			String object = "O" + i;
+			relation.addToDomain(object);
+			for (int j = 0; j < numberOfAttributes; j++) {
+				if (random.nextDouble() < density)
+					relation.addRelation(object, "a" + j);
+			}
+		}
+		
+		return relation;
+	}
+
+	/**
+	 * builds a random relation with <code>numberOfObjects</code> objects and
+	 * <code>numberOfAttributes</code> attributes, as buildRandomRelation(), and adds
+	 * redundant elements to it: a twin (Tn) of every third object, a twin (tn) of
+	 * every fourth attribute, an attribute (in) shared by the objects that have
+	 * both an and an+1, and an attribute (all) shared by all the objects
+	 * @param numberOfObjects
+	 * @param numberOfAttributes
+	 * @param density
+	 * @param seed
+	 * @return
+	 */
+	public static Relation buildRedundantRelation(int numberOfObjects, int numberOfAttributes, double density,
+			long seed) {
+		Relation relation = buildRandomRelation(numberOfObjects, numberOfAttributes, density, seed);
+		
+		for (int i = 0; i < numberOfObjects; i += 3) {
+			relation.addToDomain("T" + i);
+			for (Object attribute : relation.getImage("O" + i))
+				relation.addRelation("T" + i, attribute);
+		}
+		for (Object object : new ArrayList<Object>(relation.getDomain())) {
+			Set<Object> image = new HashSet<Object>(relation.getImage(object));
+			for (int j = 0; j < numberOfAttributes; j++) {
+				if (j % 4 == 0 && image.contains("a" + j))
+					relation.addRelation(object, "t" + j);
+				if (j + 1 < numberOfAttributes && image.contains("a" + j) && image.contains("a" + (j + 1)))
+					relation.addRelation(object, "i" + j);
+			}
+			relation.addRelation(object, "all");
+		}
+		
+		return relation;
+	}
+
 }